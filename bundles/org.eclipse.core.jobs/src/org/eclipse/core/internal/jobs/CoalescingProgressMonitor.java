@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.internal.jobs;
+
+import org.eclipse.core.runtime.*;
+
+/**
+ * A progress monitor that accumulates work and sub task updates and forwards
+ * them to the wrapped monitor at a bounded rate. The wrapped monitor is usually
+ * supplied by the progress provider and often updates the UI, so jobs that
+ * report progress in tight loops would otherwise flood it with notifications.
+ *
+ * Updates are forwarded immediately if the wrapped monitor has not been
+ * updated for the flush interval, and are otherwise deferred until the first
+ * call on this monitor after the interval has elapsed. There is no timer, so
+ * pending updates are not forwarded while the job does not use its monitor.
+ * Pending updates are always flushed before state changes such as beginTask,
+ * setTaskName, setBlocked, clearBlocked and done.
+ *
+ * Like other progress monitors, the pending updates are only meant to be
+ * modified by the thread running the job. Cancelation may be requested from
+ * any thread, and is tracked in a volatile flag so that isCanceled remains
+ * cheap. The wrapped monitor is polled for cancelation at most once per interval.
+ */
+public class CoalescingProgressMonitor extends ProgressMonitorWrapper {
+	/**
+	 * The minimum time in milliseconds between two updates of the wrapped monitor.
+	 */
+	private final long interval;
+
+	/**
+	 * The earliest time at which pending updates may be forwarded.
+	 */
+	private long nextFlush = 0;
+
+	/**
+	 * The earliest time at which the wrapped monitor is polled for cancelation.
+	 */
+	private long nextCancelPoll = 0;
+
+	private volatile boolean canceled = false;
+
+	private int pendingWork = 0;
+
+	private double pendingInternalWork = 0;
+
+	private boolean hasPendingSubTask = false;
+
+	private String pendingSubTask;
+
+	/**
+	 * Creates a new coalescing monitor.
+	 * @param monitor The monitor to forward updates to
+	 * @param interval The minimum time in milliseconds between two updates
+	 * of the wrapped monitor
+	 */
+	public CoalescingProgressMonitor(IProgressMonitor monitor, long interval) {
+		super(monitor);
+		this.interval = interval;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.core.runtime.ProgressMonitorWrapper#beginTask(java.lang.String, int)
+	 */
+	public void beginTask(String name, int totalWork) {
+		flush();
+		super.beginTask(name, totalWork);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.core.runtime.ProgressMonitorWrapper#clearBlocked()
+	 */
+	public void clearBlocked() {
+		flush();
+		super.clearBlocked();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.core.runtime.ProgressMonitorWrapper#done()
+	 */
+	public void done() {
+		flush();
+		super.done();
+	}
+
+	/**
+	 * Forwards all pending updates to the wrapped monitor.
+	 */
+	private void flush() {
+		if (hasPendingSubTask) {
+			hasPendingSubTask = false;
+			String name = pendingSubTask;
+			pendingSubTask = null;
+			super.subTask(name);
+		}
+		if (pendingWork != 0) {
+			int work = pendingWork;
+			pendingWork = 0;
+			super.worked(work);
+		}
+		if (pendingInternalWork != 0) {
+			double work = pendingInternalWork;
+			pendingInternalWork = 0;
+			super.internalWorked(work);
+		}
+		nextFlush = System.currentTimeMillis() + interval;
+	}
+
+	/**
+	 * Forwards the pending updates if the flush interval has elapsed.
+	 */
+	private void flushIfDue() {
+		if (System.currentTimeMillis() >= nextFlush)
+			flush();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.core.runtime.ProgressMonitorWrapper#internalWorked(double)
+	 */
+	public void internalWorked(double work) {
+		pendingInternalWork += work;
+		flushIfDue();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.core.runtime.ProgressMonitorWrapper#isCanceled()
+	 */
+	public boolean isCanceled() {
+		if (canceled)
+			return true;
+		long now = System.currentTimeMillis();
+		if (now < nextCancelPoll)
+			return false;
+		nextCancelPoll = now + interval;
+		//jobs polling for cancelation are a good opportunity to catch up on progress
+		if (now >= nextFlush)
+			flush();
+		if (super.isCanceled())
+			canceled = true;
+		return canceled;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.core.runtime.ProgressMonitorWrapper#setBlocked(org.eclipse.core.runtime.IStatus)
+	 */
+	public void setBlocked(IStatus reason) {
+		flush();
+		super.setBlocked(reason);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.core.runtime.ProgressMonitorWrapper#setCanceled(boolean)
+	 */
+	public void setCanceled(boolean value) {
+		canceled = value;
+		super.setCanceled(value);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.core.runtime.ProgressMonitorWrapper#setTaskName(java.lang.String)
+	 */
+	public void setTaskName(String name) {
+		flush();
+		super.setTaskName(name);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.core.runtime.ProgressMonitorWrapper#subTask(java.lang.String)
+	 */
+	public void subTask(String name) {
+		hasPendingSubTask = true;
+		pendingSubTask = name;
+		flushIfDue();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.core.runtime.ProgressMonitorWrapper#worked(int)
+	 */
+	public void worked(int work) {
+		//avoid overflowing the pending work
+		if (work > 0 && pendingWork > Integer.MAX_VALUE - work)
+			flush();
+		pendingWork += work;
+		flushIfDue();
+	}
+}
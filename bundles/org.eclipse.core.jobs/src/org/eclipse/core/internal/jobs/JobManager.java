@@ -62,6 +62,32 @@ public class JobManager implements IJobManager {
 	private static final String OPTION_LOCKS = PI_JOBS + "/jobs/locks"; //$NON-NLS-1$
 	private static final String OPTION_SHUTDOWN = PI_JOBS + "/jobs/shutdown"; //$NON-NLS-1$
 
+	/**
+	 * Framework property specifying the half-life in milliseconds of the wait
+	 * queue aging policy. Aging is disabled if the property is absent or not
+	 * greater than zero.
+	 */
+	static final String PROP_AGING_HALF_LIFE = "eclipse.jobs.agingHalfLife"; //$NON-NLS-1$
+
+	/**
+	 * Framework property specifying the minimum time in milliseconds between two
+	 * progress updates forwarded to the monitors of the progress provider. Progress
+	 * reported by jobs is forwarded immediately if the value is not greater than zero,
+	 * which is the default.
+	 * <p>
+	 * When coalescing is enabled, jobs are given a wrapper around the monitor of the
+	 * progress provider, and deferred updates are only forwarded when the job next
+	 * reports progress, polls for cancelation or changes the state of its monitor.
+	 * A job that sets a sub task and then blocks keeps showing its previous progress
+	 * until then.
+	 */
+	static final String PROP_PROGRESS_INTERVAL = "eclipse.jobs.progressInterval"; //$NON-NLS-1$
+
+	/**
+	 * The wait queue is aged at most this many times per half-life.
+	 */
+	private static final int AGING_PASSES_PER_HALF_LIFE = 4;
+
 	static boolean DEBUG = false;
 	static boolean DEBUG_BEGIN_END = false;
 	static boolean DEBUG_YIELDING = false;
@@ -120,6 +146,12 @@ public class JobManager implements IJobManager {
 	 * @GuardedBy("lock")
 	 */
 	private ProgressProvider progressProvider = null;
+
+	/**
+	 * The minimum time in milliseconds between two progress updates forwarded
+	 * to the monitors of the progress provider, or zero if updates are not coalesced.
+	 */
+	private final long progressInterval;
 	/**
 	 * Jobs that are currently running. Should only be modified from changeState
 	 * @GuardedBy("lock")
@@ -166,6 +198,19 @@ public class JobManager implements IJobManager {
 	 */
 	Counter waitQueueCounter = new Counter();
 
+	/**
+	 * The half-life in milliseconds of the wait queue aging policy, or zero
+	 * if waiting jobs are not aged.
+	 * @GuardedBy("lock")
+	 */
+	private long agingHalfLife = 0;
+
+	/**
+	 * The time at which the wait queue was last aged.
+	 * @GuardedBy("lock")
+	 */
+	private long lastAgingTime = 0;
+
 	/**
 	 * A set of progress monitors we must track cancellation requests for.
 	 * @GuardedBy("itself")
@@ -265,7 +310,10 @@ public class JobManager implements IJobManager {
 			yielding = new HashSet(10);
 			pool = new WorkerPool(this);
 		}
+		setAgingHalfLife(JobOSGiUtils.getDefault().getLongProperty(PROP_AGING_HALF_LIFE, 0L));
+		progressInterval = Math.max(0L, JobOSGiUtils.getDefault().getLongProperty(PROP_PROGRESS_INTERVAL, 0L));
 		pool.setDaemon(JobOSGiUtils.getDefault().useDaemonThreads());
+		pool.setPolicy(WorkerPoolPolicy.fromProperties());
 		internalWorker = new InternalWorker(this);
 		internalWorker.setDaemon(JobOSGiUtils.getDefault().useDaemonThreads());
 		internalWorker.start();
@@ -437,7 +485,7 @@ public class JobManager implements IJobManager {
 				return null;
 			IProgressMonitor monitor = null;
 			if (progressProvider != null)
-				monitor = progressProvider.createMonitor((Job) job, group, ticks);
+				monitor = coalesce(progressProvider.createMonitor((Job) job, group, ticks));
 			if (monitor == null)
 				monitor = new NullProgressMonitor();
 			return monitor;
@@ -451,12 +499,23 @@ public class JobManager implements IJobManager {
 	private IProgressMonitor createMonitor(Job job) {
 		IProgressMonitor monitor = null;
 		if (progressProvider != null)
-			monitor = progressProvider.createMonitor(job);
+			monitor = coalesce(progressProvider.createMonitor(job));
 		if (monitor == null)
 			monitor = new NullProgressMonitor();
 		return monitor;
 	}
 
+	/**
+	 * Wraps a job monitor supplied by the progress provider so that progress
+	 * updates are forwarded to it at a bounded rate. Returns the monitor
+	 * unchanged if there is nothing to gain from coalescing.
+	 */
+	private IProgressMonitor coalesce(IProgressMonitor monitor) {
+		if (progressInterval <= 0 || monitor == null || monitor instanceof NullProgressMonitor)
+			return monitor;
+		return new CoalescingProgressMonitor(monitor, progressInterval);
+	}
+
 	/* (non-Javadoc)
 	 * @see org.eclipse.core.runtime.jobs.IJobManager#createProgressGroup()
 	 */
@@ -980,6 +1039,15 @@ public class JobManager implements IJobManager {
 				changeState(job, Job.WAITING);
 				job = sleeping.peek();
 			}
+			//age the wait queue so that low priority jobs are not starved
+			if (agingHalfLife > 0) {
+				if (waiting.isEmpty()) {
+					lastAgingTime = now;
+				} else if (now - lastAgingTime >= agingHalfLife / AGING_PASSES_PER_HALF_LIFE) {
+					waiting.age(now, now - lastAgingTime, agingHalfLife);
+					lastAgingTime = now;
+				}
+			}
 			//process the wait queue until we find a job whose rules are satisfied.
 			while ((job = waiting.peek()) != null) {
 				InternalJob blocker = findBlockingJob(job);
@@ -1173,6 +1241,60 @@ public class JobManager implements IJobManager {
 		return members;
 	}
 
+	/**
+	 * Returns the number of worker threads created since the job manager
+	 * was started.
+	 */
+	public int getCreatedWorkerCount() {
+		return pool.getCreatedThreads();
+	}
+
+	/**
+	 * Returns the number of worker threads that expired because they were idle
+	 * for longer than the keep alive time of the worker pool policy.
+	 */
+	public int getExpiredWorkerCount() {
+		return pool.getExpiredThreads();
+	}
+
+	/**
+	 * Returns the number of living worker threads.
+	 */
+	public int getWorkerCount() {
+		return pool.getThreadCount();
+	}
+
+	/**
+	 * Returns the sizing policy of the worker pool.
+	 */
+	public WorkerPoolPolicy getWorkerPoolPolicy() {
+		return pool.getPolicy();
+	}
+
+	/**
+	 * Sets the half-life of the wait queue aging policy. While a job is waiting
+	 * to run, the delay it tolerates because of its priority decays with the
+	 * given half-life, so that DECORATE and LONG jobs eventually run ahead of
+	 * a sustained stream of INTERACTIVE and SHORT jobs.
+	 * @param halfLife The half-life in milliseconds, or zero to disable aging
+	 */
+	public void setAgingHalfLife(long halfLife) {
+		synchronized (lock) {
+			agingHalfLife = Math.max(0L, halfLife);
+			lastAgingTime = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Sets the sizing policy of the worker pool. Workers above the maximum of
+	 * the new policy are not stopped, but expire once they become idle.
+	 * @param policy The new policy, or <code>null</code> to restore the policy
+	 * configured by framework properties
+	 */
+	public void setWorkerPoolPolicy(WorkerPoolPolicy policy) {
+		pool.setPolicy(policy == null ? WorkerPoolPolicy.fromProperties() : policy);
+	}
+
 	/* (non-Javadoc)
 	 * @see IJobManager#setLockListener(LockListener)
 	 */
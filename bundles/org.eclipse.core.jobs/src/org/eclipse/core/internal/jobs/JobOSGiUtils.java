@@ -89,6 +89,23 @@ class JobOSGiUtils {
 		return defaultValue;
 	}
 
+	/**
+	 * Returns the value of the given framework property as a long, or the
+	 * default value if the property is absent or malformed.  When running
+	 * stand-alone, the system property of the same name is consulted instead.
+	 */
+	long getLongProperty(String key, long defaultValue) {
+		BundleContext context = JobActivator.getContext();
+		String value = context == null ? System.getProperty(key) : context.getProperty(key);
+		if (value == null)
+			return defaultValue;
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
 	/**
 	 * Returns the bundle id of the bundle that contains the provided object, or
 	 * <code>null</code> if the bundle could not be determined.
@@ -85,11 +85,39 @@ public final class JobQueue {
 		while (canOvertake(newEntry, tail))
 			tail = tail.next();
 		//new entry is smaller than tail
-		final InternalJob tailPrevious = tail.previous();
-		newEntry.setNext(tail);
-		newEntry.setPrevious(tailPrevious);
-		tailPrevious.setNext(newEntry);
-		tail.setPrevious(newEntry);
+		insertBehind(newEntry, tail);
+	}
+
+	/**
+	 * Ages the entries of the queue. The time each entry is still willing to
+	 * wait (its start time minus the current time) decays exponentially with
+	 * the given half-life, so that entries of low priority gradually overtake
+	 * newer entries of higher priority instead of waiting indefinitely. Aged
+	 * entries only ever move towards the head of the queue, and never overtake
+	 * entries they are not allowed to overtake on insertion.
+	 * @param now The current time in milliseconds
+	 * @param elapsed The time in milliseconds since the queue was last aged
+	 * @param halfLife The aging half-life in milliseconds
+	 */
+	public void age(long now, long elapsed, long halfLife) {
+		double decay = Math.pow(0.5, (double) elapsed / halfLife);
+		//walk from the head to the tail, so entries ahead are already aged
+		InternalJob entry = dummy.previous();
+		while (entry != dummy) {
+			InternalJob behind = entry.previous();
+			long slack = entry.getStartTime() - now;
+			if (slack > 0) {
+				entry.setStartTime(now + (long) (slack * decay));
+				InternalJob ahead = entry.next();
+				while (ahead != dummy && canOvertakeByPriority(entry, ahead))
+					ahead = ahead.next();
+				if (ahead != entry.next()) {
+					entry.remove();
+					insertBehind(entry, ahead);
+				}
+			}
+			entry = behind;
+		}
 	}
 
 	/**
@@ -104,6 +132,16 @@ public final class JobQueue {
 		//if the new entry was already in the wait queue, ensure it is re-inserted in correct position (bug 211799)
 		if (newEntry.getWaitQueueStamp() > 0 && newEntry.getWaitQueueStamp() < queueEntry.getWaitQueueStamp())
 			return true;
+		return canOvertakeByPriority(newEntry, queueEntry);
+	}
+
+	/**
+	 * Returns whether an entry is allowed to overtake the existing queue entry
+	 * based on priority and conflicts alone.
+	 * @param newEntry The entry to be moved ahead
+	 * @param queueEntry The existing queue entry
+	 */
+	private boolean canOvertakeByPriority(InternalJob newEntry, InternalJob queueEntry) {
 		//if the new entry has lower priority, there is no need to overtake the existing entry
 		if (allowPriorityOvertaking && queueEntry.compareTo(newEntry) >= 0)
 			return false;
@@ -111,6 +149,17 @@ public final class JobQueue {
 		return allowConflictOvertaking || !newEntry.isConflicting(queueEntry);
 	}
 
+	/**
+	 * Links the given entry into the queue directly behind the given queue entry.
+	 */
+	private void insertBehind(InternalJob newEntry, InternalJob queueEntry) {
+		final InternalJob queueEntryPrevious = queueEntry.previous();
+		newEntry.setNext(queueEntry);
+		newEntry.setPrevious(queueEntryPrevious);
+		queueEntryPrevious.setNext(newEntry);
+		queueEntry.setPrevious(newEntry);
+	}
+
 	/**
 	 * Removes the given element from the queue. 
 	 */
@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.internal.jobs;
+
+import java.util.*;
+import org.eclipse.core.runtime.jobs.IKeyedSchedulingRule;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+
+/**
+ * An immutable index over the children of a compound scheduling rule. The keys
+ * of keyed children are kept in one sorted array per domain, so that whether
+ * some child contains or conflicts with a keyed rule can be answered with a few
+ * binary searches instead of asking every child. Children that are not keyed
+ * are kept aside and are still asked one by one.
+ *
+ * @see IKeyedSchedulingRule
+ */
+public final class RuleIndex {
+	/**
+	 * Compound rules with fewer children are not worth indexing.
+	 */
+	public static final int MIN_INDEXED_RULES = 8;
+
+	private static final char SEPARATOR = '/';
+
+	/**
+	 * The distinct domains of the keyed children.
+	 */
+	private final Object[] domains;
+
+	/**
+	 * The sorted keys of the keyed children, parallel to the domains array.
+	 */
+	private final String[][] keys;
+
+	/**
+	 * The children that are not keyed.
+	 */
+	private final ISchedulingRule[] others;
+
+	/**
+	 * Returns an index over the given rules, or <code>null</code> if there are
+	 * too few keyed rules for an index to pay off.
+	 */
+	public static RuleIndex create(ISchedulingRule[] rules) {
+		if (rules.length < MIN_INDEXED_RULES)
+			return null;
+		//use a linked map to keep the order of domains stable
+		Map keysByDomain = new LinkedHashMap();
+		List others = new ArrayList();
+		int keyed = 0;
+		for (int i = 0; i < rules.length; i++) {
+			if (!(rules[i] instanceof IKeyedSchedulingRule)) {
+				others.add(rules[i]);
+				continue;
+			}
+			IKeyedSchedulingRule rule = (IKeyedSchedulingRule) rules[i];
+			List domainKeys = (List) keysByDomain.get(rule.getRuleDomain());
+			if (domainKeys == null) {
+				domainKeys = new ArrayList();
+				keysByDomain.put(rule.getRuleDomain(), domainKeys);
+			}
+			domainKeys.add(rule.getRuleKey());
+			keyed++;
+		}
+		if (keyed < MIN_INDEXED_RULES)
+			return null;
+		return new RuleIndex(keysByDomain, others);
+	}
+
+	private RuleIndex(Map keysByDomain, List otherRules) {
+		int size = keysByDomain.size();
+		domains = new Object[size];
+		keys = new String[size][];
+		int i = 0;
+		for (Iterator it = keysByDomain.entrySet().iterator(); it.hasNext(); i++) {
+			Map.Entry entry = (Map.Entry) it.next();
+			List domainKeys = (List) entry.getValue();
+			domains[i] = entry.getKey();
+			keys[i] = (String[]) domainKeys.toArray(new String[domainKeys.size()]);
+			Arrays.sort(keys[i]);
+		}
+		others = (ISchedulingRule[]) otherRules.toArray(new ISchedulingRule[otherRules.size()]);
+	}
+
+	/**
+	 * Returns whether some indexed child contains the given rule.
+	 */
+	public boolean contains(IKeyedSchedulingRule rule) {
+		String[] domainKeys = keysFor(rule.getRuleDomain());
+		if (domainKeys != null) {
+			String key = rule.getRuleKey();
+			if (Arrays.binarySearch(domainKeys, key) >= 0 || hasAncestor(domainKeys, key))
+				return true;
+		}
+		for (int i = 0; i < others.length; i++)
+			if (others[i].contains(rule))
+				return true;
+		return false;
+	}
+
+	/**
+	 * Returns whether some indexed child conflicts with the given rule.
+	 */
+	public boolean isConflicting(IKeyedSchedulingRule rule) {
+		String[] domainKeys = keysFor(rule.getRuleDomain());
+		if (domainKeys != null) {
+			String key = rule.getRuleKey();
+			if (Arrays.binarySearch(domainKeys, key) >= 0 || hasAncestor(domainKeys, key) || hasDescendant(domainKeys, key))
+				return true;
+		}
+		for (int i = 0; i < others.length; i++)
+			if (others[i].isConflicting(rule))
+				return true;
+		return false;
+	}
+
+	/**
+	 * Returns whether the sorted keys contain a proper ancestor of the given key.
+	 */
+	private static boolean hasAncestor(String[] sortedKeys, String key) {
+		for (int i = key.indexOf(SEPARATOR); i >= 0; i = key.indexOf(SEPARATOR, i + 1))
+			if (Arrays.binarySearch(sortedKeys, key.substring(0, i)) >= 0)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Returns whether the sorted keys contain a proper descendant of the given key.
+	 * All descendants start with the same prefix, so they are adjacent in sort order.
+	 */
+	private static boolean hasDescendant(String[] sortedKeys, String key) {
+		String prefix = key + SEPARATOR;
+		int index = Arrays.binarySearch(sortedKeys, prefix);
+		if (index < 0)
+			index = -index - 1;
+		return index < sortedKeys.length && sortedKeys[index].startsWith(prefix);
+	}
+
+	/**
+	 * Returns the sorted keys of the given domain, or <code>null</code> if no
+	 * child belongs to the domain.
+	 */
+	private String[] keysFor(Object domain) {
+		for (int i = 0; i < domains.length; i++)
+			if (domains[i] == domain || domains[i].equals(domain))
+				return keys[i];
+		return null;
+	}
+}
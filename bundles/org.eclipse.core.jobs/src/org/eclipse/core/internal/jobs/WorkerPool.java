@@ -10,6 +10,8 @@
  *******************************************************************************/
 package org.eclipse.core.internal.jobs;
 
+import java.util.Timer;
+import java.util.TimerTask;
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.jobs.Job;
@@ -25,20 +27,17 @@ import org.eclipse.core.runtime.jobs.Job;
  * turn use locks.
  */
 class WorkerPool {
-	/**
-	 * Threads not used by their best before timestamp are destroyed. 
-	 */
-	private static final int BEST_BEFORE = 60000;
-	/**
-	 * There will always be at least MIN_THREADS workers in the pool.
-	 */
-	private static final int MIN_THREADS = 1;
 	/**
 	 * Use the busy thread count to avoid starting new threads when a living
 	 * thread is just doing house cleaning (notifying listeners, etc).
 	 */
 	private int busyThreads = 0;
 
+	/**
+	 * The number of workers created since the pool was created.
+	 */
+	private int createdThreads = 0;
+
 	/**
 	 * The default context class loader to use when creating worker threads.
 	 */
@@ -49,11 +48,38 @@ class WorkerPool {
 	 */
 	private boolean isDaemon = false;
 
+	/**
+	 * The number of workers that expired after being idle for the keep alive time.
+	 */
+	private int expiredThreads = 0;
+
+	/**
+	 * Whether a deferred attempt to create a worker is pending.
+	 */
+	private boolean growthPending = false;
+
+	/**
+	 * Timer used to create workers that were deferred by the growth interval,
+	 * or null if no worker has been deferred yet.
+	 */
+	private Timer growthTimer;
+
+	/**
+	 * The time at which the last worker was created.
+	 */
+	private long lastCreation = 0;
+
 	private JobManager manager;
 	/**
 	 * The number of workers in the threads array
 	 */
 	private int numThreads = 0;
+
+	/**
+	 * The sizing policy of this pool.
+	 */
+	private WorkerPoolPolicy policy = WorkerPoolPolicy.DEFAULT;
+
 	/**
 	 * The number of threads that are currently sleeping 
 	 */
@@ -138,16 +164,74 @@ class WorkerPool {
 			notify();
 			return;
 		}
-		//create a thread if all threads are busy
-		if (busyThreads >= numThreads) {
-			Worker worker = new Worker(this);
-			worker.setDaemon(isDaemon);
-			add(worker);
-			if (JobManager.DEBUG)
-				JobManager.debug("worker added to pool: " + worker); //$NON-NLS-1$
-			worker.start();
+		//create a thread if all threads are busy and the pool may still grow
+		if (busyThreads < numThreads || numThreads >= policy.getMaxThreads())
+			return;
+		//above the core size, limit the rate at which workers are created
+		long growthInterval = policy.getGrowthInterval();
+		long now = growthInterval > 0 ? System.currentTimeMillis() : 0L;
+		if (growthInterval > 0 && numThreads >= policy.getCoreThreads() && now - lastCreation < growthInterval) {
+			deferGrowth(lastCreation + growthInterval - now);
 			return;
 		}
+		Worker worker = new Worker(this);
+		worker.setDaemon(isDaemon);
+		add(worker);
+		createdThreads++;
+		lastCreation = now;
+		if (JobManager.DEBUG)
+			JobManager.debug("worker added to pool: " + worker); //$NON-NLS-1$
+		worker.start();
+	}
+
+	/**
+	 * Tries again to create a worker once the given delay has elapsed, unless
+	 * such an attempt is already pending.
+	 */
+	private synchronized void deferGrowth(long delay) {
+		if (growthPending)
+			return;
+		growthPending = true;
+		if (growthTimer == null)
+			growthTimer = new Timer(true);
+		growthTimer.schedule(new TimerTask() {
+			public void run() {
+				synchronized (WorkerPool.this) {
+					growthPending = false;
+				}
+				//only grow if jobs are still waiting to run
+				if (manager.isActive() && manager.sleepHint() <= 0)
+					jobQueued();
+			}
+		}, delay);
+	}
+
+	/**
+	 * Returns the number of workers created since this pool was created.
+	 */
+	synchronized int getCreatedThreads() {
+		return createdThreads;
+	}
+
+	/**
+	 * Returns the number of workers that expired after being idle for the keep alive time.
+	 */
+	synchronized int getExpiredThreads() {
+		return expiredThreads;
+	}
+
+	/**
+	 * Returns the sizing policy of this pool.
+	 */
+	synchronized WorkerPoolPolicy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Returns the number of living workers in this pool.
+	 */
+	synchronized int getThreadCount() {
+		return numThreads;
 	}
 
 	/**
@@ -172,7 +256,23 @@ class WorkerPool {
 		this.isDaemon = value;
 	}
 
+	/**
+	 * Sets the sizing policy of this pool. Existing workers above the new
+	 * maximum are not stopped, but expire once they become idle.
+	 */
+	synchronized void setPolicy(WorkerPoolPolicy policy) {
+		this.policy = policy;
+		if (JobManager.DEBUG)
+			JobManager.debug("worker pool policy: " + policy); //$NON-NLS-1$
+		//wake idle workers so that they observe the new keep alive time
+		notifyAll();
+	}
+
 	protected synchronized void shutdown() {
+		if (growthTimer != null) {
+			growthTimer.cancel();
+			growthTimer = null;
+		}
 		notifyAll();
 	}
 
@@ -217,13 +317,14 @@ class WorkerPool {
 			while (manager.isActive() && job == null) {
 				long hint = manager.sleepHint();
 				if (hint > 0)
-					sleep(Math.min(hint, BEST_BEFORE));
+					sleep(Math.min(hint, getPolicy().getKeepAlive()));
 				job = manager.startJob(worker);
 				//if we were already idle, and there are still no new jobs, then
 				// the thread can expire
 				synchronized (this) {
-					if (job == null && (System.currentTimeMillis() - idleStart > BEST_BEFORE) && (numThreads - busyThreads) > MIN_THREADS) {
+					if (job == null && (System.currentTimeMillis() - idleStart > policy.getKeepAlive()) && (numThreads - busyThreads) > policy.getCoreThreads()) {
 						//must remove the worker immediately to prevent all threads from expiring
+						expiredThreads++;
 						endWorker(worker);
 						return null;
 					}
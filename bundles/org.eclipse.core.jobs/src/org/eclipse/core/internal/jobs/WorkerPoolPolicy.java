@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.internal.jobs;
+
+/**
+ * The sizing policy of the worker pool. A worker that has been idle for the
+ * keep alive time expires, unless no more than the core number of other
+ * workers are idle. New workers are created on demand up to the
+ * maximum number of workers, but above the core size at most one worker is
+ * created per growth interval.
+ *
+ * The default policy matches the historical behavior of the pool: one core
+ * worker, a one minute keep alive time, and unlimited immediate growth.
+ * Limiting the number of workers can delay or even stall jobs that wait for
+ * other jobs to complete, so a maximum should leave room for such jobs.
+ *
+ * The policy is read from the following framework or system properties:
+ * <ul>
+ * <li>eclipse.jobs.worker.coreThreads - the number of idle workers kept alive</li>
+ * <li>eclipse.jobs.worker.maxThreads - the maximum number of workers</li>
+ * <li>eclipse.jobs.worker.maxThreadsPerCpu - the maximum number of workers per
+ * available processor, used if no absolute maximum is set</li>
+ * <li>eclipse.jobs.worker.keepAlive - the time in milliseconds idle workers
+ * above the core size are kept alive</li>
+ * <li>eclipse.jobs.worker.growthInterval - the minimum time in milliseconds
+ * between the creation of two workers above the core size</li>
+ * </ul>
+ */
+public class WorkerPoolPolicy {
+	static final String PROP_CORE_THREADS = "eclipse.jobs.worker.coreThreads"; //$NON-NLS-1$
+	static final String PROP_MAX_THREADS = "eclipse.jobs.worker.maxThreads"; //$NON-NLS-1$
+	static final String PROP_MAX_THREADS_PER_CPU = "eclipse.jobs.worker.maxThreadsPerCpu"; //$NON-NLS-1$
+	static final String PROP_KEEP_ALIVE = "eclipse.jobs.worker.keepAlive"; //$NON-NLS-1$
+	static final String PROP_GROWTH_INTERVAL = "eclipse.jobs.worker.growthInterval"; //$NON-NLS-1$
+
+	private static final int DEFAULT_CORE_THREADS = 1;
+	private static final long DEFAULT_KEEP_ALIVE = 60000L;
+
+	/**
+	 * The policy used if no properties are set.
+	 */
+	public static final WorkerPoolPolicy DEFAULT = new WorkerPoolPolicy(DEFAULT_CORE_THREADS, Integer.MAX_VALUE, DEFAULT_KEEP_ALIVE, 0L);
+
+	private final int coreThreads;
+	private final long growthInterval;
+	private final long keepAlive;
+	private final int maxThreads;
+
+	/**
+	 * Returns the policy configured by framework or system properties.
+	 */
+	static WorkerPoolPolicy fromProperties() {
+		JobOSGiUtils utils = JobOSGiUtils.getDefault();
+		int core = (int) utils.getLongProperty(PROP_CORE_THREADS, DEFAULT_CORE_THREADS);
+		long max = utils.getLongProperty(PROP_MAX_THREADS, 0L);
+		if (max <= 0) {
+			long perCpu = utils.getLongProperty(PROP_MAX_THREADS_PER_CPU, 0L);
+			max = perCpu > 0 ? perCpu * Runtime.getRuntime().availableProcessors() : Integer.MAX_VALUE;
+		}
+		long keepAlive = utils.getLongProperty(PROP_KEEP_ALIVE, DEFAULT_KEEP_ALIVE);
+		long growthInterval = utils.getLongProperty(PROP_GROWTH_INTERVAL, 0L);
+		return new WorkerPoolPolicy(core, (int) Math.min(max, Integer.MAX_VALUE), keepAlive, growthInterval);
+	}
+
+	/**
+	 * Creates a new policy. Invalid values are replaced by the nearest valid value.
+	 * @param coreThreads The number of idle workers that are kept alive
+	 * @param maxThreads The maximum number of workers, at least the core number
+	 * @param keepAlive The time in milliseconds idle workers above the core size are kept alive
+	 * @param growthInterval The minimum time in milliseconds between the creation
+	 * of two workers above the core size, or zero to create workers immediately
+	 */
+	public WorkerPoolPolicy(int coreThreads, int maxThreads, long keepAlive, long growthInterval) {
+		this.coreThreads = Math.max(1, coreThreads);
+		this.maxThreads = Math.max(this.coreThreads, maxThreads);
+		this.keepAlive = Math.max(1L, keepAlive);
+		this.growthInterval = Math.max(0L, growthInterval);
+	}
+
+	/**
+	 * Returns the number of idle workers that are kept alive.
+	 */
+	public int getCoreThreads() {
+		return coreThreads;
+	}
+
+	/**
+	 * Returns the minimum time in milliseconds between the creation of two
+	 * workers above the core size.
+	 */
+	public long getGrowthInterval() {
+		return growthInterval;
+	}
+
+	/**
+	 * Returns the time in milliseconds idle workers above the core size are kept alive.
+	 */
+	public long getKeepAlive() {
+		return keepAlive;
+	}
+
+	/**
+	 * Returns the maximum number of workers.
+	 */
+	public int getMaxThreads() {
+		return maxThreads;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return "WorkerPoolPolicy(core=" + coreThreads + ", max=" + maxThreads + ", keepAlive=" + keepAlive + ", growthInterval=" + growthInterval + ')'; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	}
+}
@@ -0,0 +1,58 @@
+/*******************************************************************************
+ *  Copyright (c) 2012 IBM Corporation and others.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  Contributors:
+ *     IBM - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.runtime.jobs;
+
+/**
+ * A scheduling rule whose <code>contains</code> and <code>isConflicting</code>
+ * relations can be derived from a hierarchical key. This allows a {@link MultiRule}
+ * with many children to index its children by key, so that conflict checks between
+ * large compound rules no longer need to compare every pair of children.
+ * <p>
+ * Keys are sequences of segments separated by <code>'/'</code>. A key contains
+ * another key if both keys are equal, or if the other key starts with the key
+ * followed by <code>'/'</code>. The empty key contains all keys that start
+ * with <code>'/'</code>. For example, the key <code>"/a"</code> contains the
+ * keys <code>"/a"</code> and <code>"/a/b"</code>, but not <code>"/ab"</code>.
+ * </p>
+ * <p>
+ * Implementations must ensure that for any two keyed rules <code>a</code> and
+ * <code>b</code> with equal domains:
+ * <ul>
+ * <li><code>a.contains(b)</code> if and only if the key of <code>a</code>
+ * contains the key of <code>b</code>, and</li>
+ * <li><code>a.isConflicting(b)</code> if and only if either key contains the other.</li>
+ * </ul>
+ * Keyed rules with different domains must never contain or conflict with each other.
+ * </p>
+ * <p>
+ * Clients may implement this interface.
+ * </p>
+ *
+ * @see MultiRule
+ * @since 3.6
+ */
+public interface IKeyedSchedulingRule extends ISchedulingRule {
+	/**
+	 * Returns the domain of this rule. Only keys of rules with equal domains
+	 * are compared with each other. Typically all rules of one kind of resource
+	 * share a single domain object.
+	 *
+	 * @return the domain of this rule, never <code>null</code>
+	 */
+	public Object getRuleDomain();
+
+	/**
+	 * Returns the key of this rule within its domain.
+	 *
+	 * @return the key of this rule, never <code>null</code>
+	 */
+	public String getRuleKey();
+}
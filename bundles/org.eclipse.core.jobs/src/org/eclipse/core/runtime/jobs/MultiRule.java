@@ -11,6 +11,7 @@
 package org.eclipse.core.runtime.jobs;
 
 import java.util.ArrayList;
+import org.eclipse.core.internal.jobs.RuleIndex;
 
 /**
  * A MultiRule is a compound scheduling rule that represents a fixed group of child 
@@ -22,13 +23,36 @@ import java.util.ArrayList;
  * A MultiRule will never contain other MultiRules as children.  If a MultiRule is provided
  * as a child, its children will be added instead.
  * </p>
- * 
+ * <p>
+ * A MultiRule with many children that implement {@link IKeyedSchedulingRule}
+ * indexes those children by key, so that conflict checks against it do not
+ * need to ask every child.
+ * </p>
+ *
  * @since 3.0
  * @noextend This class is not intended to be subclassed by clients.
  */
 public class MultiRule implements ISchedulingRule {
 	private ISchedulingRule[] rules;
 
+	/**
+	 * Whether the children of this rule may be indexed. Intermediate rules
+	 * created while combining an array of rules are never indexed.
+	 */
+	private boolean indexable = true;
+
+	/**
+	 * Whether the index has been computed. The index is computed lazily on
+	 * the first query, and may be computed more than once by racing threads.
+	 */
+	private volatile boolean indexed = false;
+
+	/**
+	 * The index over the children of this rule, or <code>null</code> if the
+	 * children are not indexed. Only valid once <code>indexed</code> is set.
+	 */
+	private RuleIndex index;
+
 	/**
 	 * Returns a scheduling rule that encompasses all provided rules.  The resulting
 	 * rule may or may not be an instance of <code>MultiRule</code>.  If all
@@ -48,8 +72,11 @@ public class MultiRule implements ISchedulingRule {
 				result = ruleArray[i];
 				continue;
 			}
-			result = combine(result, ruleArray[i]);
+			result = combine(result, ruleArray[i], false);
 		}
+		//intermediate results are not indexed, but the final result may be
+		if (result instanceof MultiRule)
+			((MultiRule) result).indexable = true;
 		return result;
 	}
 
@@ -64,6 +91,10 @@ public class MultiRule implements ISchedulingRule {
 	 * @return a combined scheduling rule, or <code>null</code>
 	 */
 	public static ISchedulingRule combine(ISchedulingRule rule1, ISchedulingRule rule2) {
+		return combine(rule1, rule2, true);
+	}
+
+	private static ISchedulingRule combine(ISchedulingRule rule1, ISchedulingRule rule2, boolean indexable) {
 		if (rule1 == rule2)
 			return rule1;
 		if (rule1 == null)
@@ -75,6 +106,7 @@ public class MultiRule implements ISchedulingRule {
 		if (rule2.contains(rule1))
 			return rule2;
 		MultiRule result = new MultiRule();
+		result.indexable = indexable;
 		result.rules = new ISchedulingRule[] {rule1, rule2};
 		//make sure we don't end up with nested multi-rules
 		if (rule1 instanceof MultiRule || rule2 instanceof MultiRule)
@@ -132,23 +164,58 @@ public class MultiRule implements ISchedulingRule {
 		if (this == rule)
 			return true;
 		if (rule instanceof MultiRule) {
-			ISchedulingRule[] otherRules = ((MultiRule) rule).getChildren();
+			ISchedulingRule[] otherRules = ((MultiRule) rule).rules;
 			//for each child of the target, there must be some child in this rule that contains it.
-			for (int other = 0; other < otherRules.length; other++) {
-				boolean found = false;
-				for (int mine = 0; !found && mine < rules.length; mine++)
-					found = rules[mine].contains(otherRules[other]);
-				if (!found)
+			for (int other = 0; other < otherRules.length; other++)
+				if (!childContains(otherRules[other]))
 					return false;
-			}
 			return true;
 		}
+		return childContains(rule);
+	}
+
+	/*
+	 * Returns whether some child of this rule contains the given rule,
+	 * which must not be a MultiRule.
+	 */
+	private boolean childContains(ISchedulingRule rule) {
+		RuleIndex ruleIndex = getIndex();
+		if (ruleIndex != null && rule instanceof IKeyedSchedulingRule)
+			return ruleIndex.contains((IKeyedSchedulingRule) rule);
 		for (int i = 0; i < rules.length; i++)
 			if (rules[i].contains(rule))
 				return true;
 		return false;
 	}
 
+	/*
+	 * Returns whether some child of this rule conflicts with the given rule,
+	 * which must not be a MultiRule.
+	 */
+	private boolean childConflicts(ISchedulingRule rule) {
+		RuleIndex ruleIndex = getIndex();
+		if (ruleIndex != null && rule instanceof IKeyedSchedulingRule)
+			return ruleIndex.isConflicting((IKeyedSchedulingRule) rule);
+		for (int i = 0; i < rules.length; i++)
+			if (rules[i].isConflicting(rule))
+				return true;
+		return false;
+	}
+
+	/*
+	 * Returns the index over the children of this rule, or null if the
+	 * children are not worth indexing.
+	 */
+	private RuleIndex getIndex() {
+		if (!indexed) {
+			if (!indexable || rules.length < RuleIndex.MIN_INDEXED_RULES)
+				return null;
+			index = RuleIndex.create(rules);
+			indexed = true;
+		}
+		return index;
+	}
+
 	/* (non-Javadoc)
 	 * @see org.eclipse.core.runtime.jobs.ISchedulingRule#isConflicting(org.eclipse.core.runtime.jobs.ISchedulingRule)
 	 */
@@ -156,17 +223,16 @@ public class MultiRule implements ISchedulingRule {
 		if (this == rule)
 			return true;
 		if (rule instanceof MultiRule) {
-			ISchedulingRule[] otherRules = ((MultiRule) rule).getChildren();
-			for (int j = 0; j < otherRules.length; j++)
-				for (int i = 0; i < rules.length; i++)
-					if (rules[i].isConflicting(otherRules[j]))
-						return true;
-		} else {
-			for (int i = 0; i < rules.length; i++)
-				if (rules[i].isConflicting(rule))
+			MultiRule other = (MultiRule) rule;
+			//probe the rule with more children, which is the one most likely to be indexed
+			MultiRule probed = rules.length >= other.rules.length ? this : other;
+			ISchedulingRule[] probes = probed == this ? other.rules : rules;
+			for (int i = 0; i < probes.length; i++)
+				if (probed.childConflicts(probes[i]))
 					return true;
+			return false;
 		}
-		return false;
+		return childConflicts(rule);
 	}
 
 	/*
@@ -0,0 +1,244 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.tools.runtime;
+
+import java.util.*;
+import org.eclipse.core.tools.*;
+import org.eclipse.e4.core.internal.contexts.ContextReaper;
+import org.eclipse.e4.core.internal.contexts.ContextStatistics;
+import org.eclipse.e4.core.internal.contexts.ContextStatistics.KeyStatistics;
+import org.eclipse.jface.action.*;
+import org.eclipse.jface.text.*;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Menu;
+import org.eclipse.ui.IActionBars;
+
+/**
+ * Text view that shows the statistics collected about the use of the
+ * Eclipse contexts: the most used names, the deepest lookups, the most
+ * expensive context functions, the invalidations that reach the most
+ * listeners and the most frequently run RunAndTrack runnables. The number of
+ * listeners and computations of collected objects removed by the reaper is
+ * shown as well.
+ */
+public class ContextStatisticsView extends SpyView {
+
+	// the number of entries shown in each section
+	private static final int TOP_COUNT = 25;
+
+	protected TextViewer viewer;
+
+	private IAction updateAction;
+
+	/**
+	 * Orders names by one of the values of their statistics, highest first.
+	 */
+	abstract class KeyComparator implements Comparator {
+		private final Map statistics;
+
+		KeyComparator(Map statistics) {
+			this.statistics = statistics;
+		}
+
+		public int compare(Object o1, Object o2) {
+			long value1 = getValue((KeyStatistics) statistics.get(o1));
+			long value2 = getValue((KeyStatistics) statistics.get(o2));
+			if (value1 != value2)
+				return value1 > value2 ? -1 : 1;
+			return ((String) o1).compareTo((String) o2);
+		}
+
+		abstract long getValue(KeyStatistics key);
+	}
+
+	class UpdateAction extends Action {
+
+		UpdateAction() {
+			super("Update view"); //$NON-NLS-1$
+			this.setToolTipText("Update"); //$NON-NLS-1$
+			this.setImageDescriptor(CoreToolsPlugin.createImageDescriptor("refresh.gif")); //$NON-NLS-1$
+		}
+
+		public void run() {
+			super.run();
+			updateTextView(getText(ContextStatistics.getSnapshot()));
+		}
+	}
+
+	class ResetAction extends Action {
+
+		ResetAction() {
+			super("Reset statistics"); //$NON-NLS-1$
+			this.setToolTipText("Reset"); //$NON-NLS-1$
+			this.setImageDescriptor(CoreToolsPlugin.createImageDescriptor("reset.gif")); //$NON-NLS-1$
+		}
+
+		public void run() {
+			super.run();
+			ContextStatistics.reset();
+			updateAction.run();
+		}
+	}
+
+	class EnableAction extends Action {
+
+		EnableAction() {
+			super("Collect statistics", IAction.AS_CHECK_BOX); //$NON-NLS-1$
+			this.setToolTipText("Collect statistics"); //$NON-NLS-1$
+			this.setChecked(ContextStatistics.isEnabled());
+		}
+
+		public void run() {
+			super.run();
+			ContextStatistics.setEnabled(isChecked());
+			updateAction.run();
+		}
+	}
+
+	String getText(ContextStatistics.Snapshot snapshot) {
+		final Map keys = snapshot.getKeyStatistics();
+		StringBuffer buffer = new StringBuffer();
+		if (!ContextStatistics.isEnabled())
+			buffer.append("Statistics are not being collected.\n\n"); //$NON-NLS-1$
+		buffer.append("Reclaimed listeners: " + ContextReaper.getReclaimedListeners() + "\n"); //$NON-NLS-1$ //$NON-NLS-2$
+		buffer.append("Reclaimed computations: " + ContextReaper.getReclaimedComputations() + "\n\n"); //$NON-NLS-1$ //$NON-NLS-2$
+
+		appendSection(buffer, "Lookups (count, average depth, cache hits)", keys, new KeyComparator(keys) { //$NON-NLS-1$
+			long getValue(KeyStatistics key) {
+				return key.getLookups();
+			}
+		}, 0);
+		appendSection(buffer, "Deepest lookups (max depth, count)", keys, new KeyComparator(keys) { //$NON-NLS-1$
+			long getValue(KeyStatistics key) {
+				return key.getMaxDepth();
+			}
+		}, 1);
+		appendSection(buffer, "Context functions (time in ms, computations)", keys, new KeyComparator(keys) { //$NON-NLS-1$
+			long getValue(KeyStatistics key) {
+				return key.getComputeTime();
+			}
+		}, 2);
+		appendSection(buffer, "Invalidations (listeners notified, invalidations)", keys, new KeyComparator(keys) { //$NON-NLS-1$
+			long getValue(KeyStatistics key) {
+				return key.getNotifications();
+			}
+		}, 3);
+
+		final Map runAndTracks = snapshot.getRunAndTrackExecutions();
+		List runnables = new ArrayList(runAndTracks.keySet());
+		Collections.sort(runnables, new Comparator() {
+			public int compare(Object o1, Object o2) {
+				long value1 = ((Long) runAndTracks.get(o1)).longValue();
+				long value2 = ((Long) runAndTracks.get(o2)).longValue();
+				if (value1 != value2)
+					return value1 > value2 ? -1 : 1;
+				return ((String) o1).compareTo((String) o2);
+			}
+		});
+		buffer.append("RunAndTrack executions:\n"); //$NON-NLS-1$
+		for (int i = 0; i < runnables.size() && i < TOP_COUNT; i++) {
+			Object runnable = runnables.get(i);
+			buffer.append("\t" + runAndTracks.get(runnable) + "\t" + runnable + "\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+		return buffer.toString();
+	}
+
+	private void appendSection(StringBuffer buffer, String title, Map keys, KeyComparator comparator, int kind) {
+		List names = new ArrayList(keys.keySet());
+		Collections.sort(names, comparator);
+		buffer.append(title + ":\n"); //$NON-NLS-1$
+		for (int i = 0; i < names.size() && i < TOP_COUNT; i++) {
+			String name = (String) names.get(i);
+			KeyStatistics key = (KeyStatistics) keys.get(name);
+			if (comparator.getValue(key) == 0)
+				break;
+			buffer.append('\t');
+			switch (kind) {
+				case 0 :
+					buffer.append(key.getLookups() + "\t" + (key.getTotalDepth() / key.getLookups()) + "\t" + key.getCacheHits()); //$NON-NLS-1$ //$NON-NLS-2$
+					break;
+				case 1 :
+					buffer.append(key.getMaxDepth() + "\t" + key.getLookups()); //$NON-NLS-1$
+					break;
+				case 2 :
+					buffer.append((key.getComputeTime() / 1000000) + "\t" + key.getComputations()); //$NON-NLS-1$
+					break;
+				default :
+					buffer.append(key.getNotifications() + "\t" + key.getInvalidations()); //$NON-NLS-1$
+			}
+			buffer.append('\t' + name + '\n');
+		}
+		buffer.append('\n');
+	}
+
+	void updateTextView(final String text) {
+		//post changes to UI thread
+		viewer.getControl().getDisplay().asyncExec(new Runnable() {
+			public void run() {
+				if (!viewer.getControl().isDisposed()) {
+					IDocument doc = viewer.getDocument();
+					doc.set(text);
+					viewer.setDocument(doc);
+				}
+			}
+		});
+	}
+
+	/**
+	 * @see org.eclipse.ui.IWorkbenchPart#createPartControl(org.eclipse.swt.widgets.Composite)
+	 */
+	public void createPartControl(Composite parent) {
+
+		viewer = new TextViewer(parent, SWT.V_SCROLL | SWT.H_SCROLL | SWT.READ_ONLY);
+		viewer.setDocument(new Document());
+
+		IActionBars bars = getViewSite().getActionBars();
+
+		final GlobalAction selectAllAction = new SelectAllAction(viewer);
+		selectAllAction.registerAsGlobalAction(bars);
+
+		updateAction = new UpdateAction();
+		IAction resetAction = new ResetAction();
+		IAction enableAction = new EnableAction();
+
+		IMenuManager barMenuManager = bars.getMenuManager();
+		barMenuManager.add(enableAction);
+		barMenuManager.add(updateAction);
+		barMenuManager.add(resetAction);
+
+		GlobalAction copyAction = new CopyTextSelectionAction(viewer);
+		copyAction.registerAsGlobalAction(bars);
+
+		bars.getToolBarManager().add(updateAction);
+		bars.getToolBarManager().add(resetAction);
+
+		bars.updateActionBars();
+
+		// creates a context menu with actions and adds it to the viewer control
+		MenuManager menuMgr = new MenuManager();
+		menuMgr.add(copyAction);
+		Menu menu = menuMgr.createContextMenu(viewer.getControl());
+		viewer.getControl().setMenu(menu);
+
+		// populate the view with the initial data
+		updateAction.run();
+	}
+
+	/**
+	 * @see org.eclipse.ui.IWorkbenchPart#dispose()
+	 */
+	public void dispose() {
+		super.dispose();
+		updateAction = null;
+	}
+
+}
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.core.contexts;
+
+/**
+ * A handle on the name that values are stored under in a context. The name of
+ * a key is interned, so contexts look values up by key comparing names by
+ * identity only, where lookups by name or class compare the names they pass on
+ * the way up the context tree.
+ * <p>
+ * Keys are meant to be created once and kept, typically in a constant:
+ * </p>
+ * <pre>
+ * static final ContextKey&lt;IFoo&gt; FOO = ContextKey.forClass(IFoo.class);
+ * ...
+ * IFoo foo = context.get(FOO);
+ * </pre>
+ * <p>
+ * Keys for the same name are equal, and a value stored under a key can be
+ * accessed by name as well.
+ * </p>
+ * @param <T> the type of the values stored under the key
+ * @see IEclipseContext#get(ContextKey)
+ * @since 1.3
+ */
+public final class ContextKey<T> {
+
+	/**
+	 * Returns a key for values stored under the name of the given class.
+	 * @param clazz the class
+	 * @return a key for the name of the class
+	 */
+	public static <T> ContextKey<T> forClass(Class<T> clazz) {
+		return new ContextKey<T>(clazz.getName(), clazz);
+	}
+
+	/**
+	 * Returns a key for values stored under the given name.
+	 * @param name the name
+	 * @return a key for the name
+	 */
+	public static ContextKey<Object> forName(String name) {
+		return new ContextKey<Object>(name, Object.class);
+	}
+
+	final private String name;
+	final private Class<T> type;
+
+	private ContextKey(String name, Class<T> type) {
+		this.name = name.intern();
+		this.type = type;
+	}
+
+	/**
+	 * Returns the name of this key. The name is interned.
+	 * @return the name of this key
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the type of the values stored under this key.
+	 * @return the class this key was created for, or <code>Object</code> for
+	 *         keys created for a name
+	 */
+	public Class<T> getType() {
+		return type;
+	}
+
+	public boolean equals(Object obj) {
+		// names are interned
+		return obj instanceof ContextKey<?> && ((ContextKey<?>) obj).name == name;
+	}
+
+	public int hashCode() {
+		return name.hashCode();
+	}
+
+	public String toString() {
+		return name;
+	}
+}
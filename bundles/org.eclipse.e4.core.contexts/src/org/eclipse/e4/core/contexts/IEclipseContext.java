@@ -11,6 +11,9 @@
 
 package org.eclipse.e4.core.contexts;
 
+import java.util.Map;
+import java.util.concurrent.Executor;
+
 /**
  * A context is used to isolate application code from its dependencies on an application framework
  * or container. This helps avoid building in dependencies on a specific framework that inhibit
@@ -38,6 +41,10 @@ package org.eclipse.e4.core.contexts;
  * the class name, so the value stored for the class {@link java.lang.String} can be retrieved 
  * using the key value of "java.lang.String". 
  * </p>
+ * <p>
+ * Code that performs the same lookups many times can use a {@link ContextKey} kept for the name
+ * or class instead, which saves comparing names on the way up the context tree.
+ * </p>
  * @noimplement This interface is not intended to be implemented by clients.
  * @noextend This interface is not intended to be extended by clients.
  */
@@ -60,6 +67,16 @@ public interface IEclipseContext {
 	 */
 	public boolean containsKey(Class<?> clazz);
 
+	/**
+	 * Returns whether this context or a parent has a value stored for the given key.
+	 * @param key the key being queried
+	 * @return <code>true</code> if this context has a value for the given key, and
+	 *         <code>false</code> otherwise.
+	 * @see #containsKey(String)
+	 * @since 1.3
+	 */
+	public boolean containsKey(ContextKey<?> key);
+
 	/**
 	 * Returns the context value associated with the given name. Returns <code>null</code> if no
 	 * such value is defined or computable by this context, or if the assigned value is
@@ -81,6 +98,15 @@ public interface IEclipseContext {
 	 */
 	public <T> T get(Class<T> clazz);
 
+	/**
+	 * Returns the context value associated with the given key.
+	 * @param key the key of the value to return
+	 * @return an object corresponding to the given key, or <code>null</code>
+	 * @see #get(String)
+	 * @since 1.3
+	 */
+	public <T> T get(ContextKey<T> key);
+
 	/**
 	 * Returns the context value associated with the given name in this context, or <code>null</code> if 
 	 * no such value is defined in this context.
@@ -157,6 +183,31 @@ public interface IEclipseContext {
 	 */
 	public void runAndTrack(final RunAndTrack runnable);
 
+	/**
+	 * Executes a runnable within this context, and then runs it again on the given executor
+	 * whenever a value it accessed changes.
+	 * <p>
+	 * The first execution happens synchronously on the calling thread, like in
+	 * {@link #runAndTrack(RunAndTrack)}. Later executions caused by changes are handed to the
+	 * executor, for example one that runs tasks on the user interface thread or in a job.
+	 * Changes that happen before the executor gets to run the runnable are coalesced, so the
+	 * runnable executes once and sees the latest state of the context. This keeps high
+	 * frequency updates from background threads from flooding the executing thread.
+	 * </p>
+	 * <p>
+	 * The runnable is unregistered in the same way as runnables passed to
+	 * {@link #runAndTrack(RunAndTrack)}.
+	 * </p>
+	 * 
+	 * @param runnable
+	 *            The runnable to execute and register for change tracking
+	 * @param executor
+	 *            The executor for the executions caused by changes
+	 * @see #runAndTrack(RunAndTrack)
+	 * @since 1.3
+	 */
+	public void runAndTrack(RunAndTrack runnable, Executor executor);
+
 	/**
 	 * Sets a value to be associated with a given name in this context. The value may be an
 	 * arbitrary object, or it may be an {@link ContextFunction}. In the case of a function,
@@ -182,6 +233,15 @@ public interface IEclipseContext {
 	 */
 	public <T> void set(Class<T> clazz, T value);
 
+	/**
+	 * Sets a value to be associated with a given key in this context. 
+	 * @param key The key to store a value for
+	 * @param value The value to be stored
+	 * @see #set(String, Object)
+	 * @since 1.3
+	 */
+	public <T> void set(ContextKey<T> key, T value);
+
 	/**
 	 * Modifies the value to be associated with the given name.
 	 * <p>
@@ -327,4 +387,41 @@ public interface IEclipseContext {
 	 */
 	public Object getActive(final String name);
 
+	/**
+	 * Runs the given runnable as a batch of changes to this context and to any
+	 * other context changed by the runnable on the calling thread.
+	 * <p>
+	 * Values set, modified or removed in the batch are visible immediately, but
+	 * the {@link RunAndTrack} computations and injected objects that depend on them
+	 * are only updated once the batch completes. Each of them is updated once, no
+	 * matter how many of its dependencies changed. Batches that are started inside
+	 * a batch become part of the enclosing batch.
+	 * </p>
+	 * @param runnable the runnable making the changes
+	 * @since 1.3
+	 */
+	public void batch(Runnable runnable);
+
+	/**
+	 * Returns the values visible from this context at this point in time.
+	 * <p>
+	 * The returned map is unmodifiable and does not change when this context
+	 * or its parents change. It can be read from any thread without locking,
+	 * and reading from it does not establish dependencies of {@link RunAndTrack}
+	 * computations or injected objects. Taking a snapshot is cheap, and snapshots
+	 * share the values of the contexts that have not changed in between.
+	 * </p>
+	 * <p>
+	 * Only the values stored in the contexts are included. Names bound to a
+	 * context function have no value in the snapshot, and neither do values
+	 * that a context would only provide once they are asked for, such as
+	 * OSGi services that have not been looked up yet. The values of each
+	 * context are captured atomically, but a change that moves a value from
+	 * one context to another while the snapshot is taken may be seen in part.
+	 * </p>
+	 * @return an unmodifiable map from names to values
+	 * @since 1.3
+	 */
+	public Map<String, Object> snapshot();
+
 }
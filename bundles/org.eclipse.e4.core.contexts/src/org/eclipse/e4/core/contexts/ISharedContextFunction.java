@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.core.contexts;
+
+/**
+ * A context function whose value is computed once, in the context the function
+ * is set in, and shared by all descendants of that context.
+ * <p>
+ * The values of ordinary context functions are computed separately in each
+ * context they are asked for, so that a function set in a parent context is
+ * computed, and its value kept, once per child context. Functions that provide
+ * the same value to all descendants, such as a service that is expensive to
+ * create, can implement this interface to avoid that. The function is then
+ * always given the context it is set in, and the shared value is computed
+ * again whenever a value the function used changes.
+ * </p>
+ * <p>
+ * Implementations must subclass {@link ContextFunction} and implement this
+ * interface.
+ * </p>
+ * 
+ * @see IContextFunction
+ * @noextend This interface is not intended to be extended by clients.
+ * @since 1.3
+ */
+public interface ISharedContextFunction extends IContextFunction {
+	// marker interface
+}
@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.core.internal.contexts;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread safe map from names to non-null values that is compact while it
+ * holds few entries. Up to {@link #MAX_INLINE} entries are kept in a single
+ * array that is replaced on every change, so that reads need no locking. Larger
+ * maps are kept in a {@link ConcurrentHashMap}.
+ * <p>
+ * Most contexts hold only a handful of values, so this keeps empty and leaf
+ * contexts small.
+ * </p>
+ */
+public final class CompactMap<V> {
+
+	/**
+	 * The maximum number of entries kept in the array.
+	 */
+	static final int MAX_INLINE = 8;
+
+	final static private Object[] EMPTY = new Object[0];
+
+	/**
+	 * The names and values in alternating slots. The array is never modified
+	 * once published. Empty once the entries have moved to the map.
+	 */
+	private volatile Object[] inline = EMPTY;
+
+	/**
+	 * The array if all of its names are interned, or <code>null</code>. Adding
+	 * a name does not intern it; the next lookup by interned name does.
+	 */
+	private volatile Object[] internedInline = EMPTY;
+
+	/**
+	 * The entries of large maps, or <code>null</code>.
+	 */
+	private volatile ConcurrentHashMap<String, V> map;
+
+	/**
+	 * An unmodifiable copy of the entries, or <code>null</code> if the map has
+	 * changed since the last copy was made. Guarded by this map.
+	 */
+	private Map<String, V> frozen;
+
+	public V get(String name) {
+		return get(name, false);
+	}
+
+	/**
+	 * Returns the value of the given name. An interned name is compared by
+	 * identity only, once the names of this map have been interned as well. The
+	 * first lookup by interned name after a name is added interns them.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(String name, boolean interned) {
+		// read the array first; it is only cleared after the map is set
+		Object[] entries = inline;
+		ConcurrentHashMap<String, V> large = map;
+		if (large != null)
+			return large.get(name);
+		if (interned && entries == internedInline) {
+			for (int i = 0; i < entries.length; i += 2) {
+				if (entries[i] == name)
+					return (V) entries[i + 1];
+			}
+			return null;
+		}
+		if (interned)
+			internNames();
+		for (int i = 0; i < entries.length; i += 2) {
+			if (name.equals(entries[i]))
+				return (V) entries[i + 1];
+		}
+		return null;
+	}
+
+	synchronized private void internNames() {
+		Object[] entries = inline;
+		if (map != null || entries == internedInline)
+			return;
+		Object[] newEntries = entries.clone();
+		for (int i = 0; i < newEntries.length; i += 2)
+			newEntries[i] = ((String) newEntries[i]).intern();
+		inline = newEntries;
+		internedInline = newEntries;
+	}
+
+	public boolean containsKey(String name) {
+		return get(name) != null;
+	}
+
+	synchronized public V put(String name, V value) {
+		return put(name, value, false);
+	}
+
+	synchronized public V putIfAbsent(String name, V value) {
+		return put(name, value, true);
+	}
+
+	@SuppressWarnings("unchecked")
+	private V put(String name, V value, boolean ifAbsent) {
+		if (value == null)
+			throw new NullPointerException();
+		frozen = null;
+		if (map != null)
+			return ifAbsent ? map.putIfAbsent(name, value) : map.put(name, value);
+		Object[] entries = inline;
+		int index = indexOf(entries, name);
+		if (index >= 0) {
+			V oldValue = (V) entries[index + 1];
+			if (!ifAbsent) {
+				Object[] newEntries = entries.clone();
+				newEntries[index + 1] = value;
+				inline = newEntries;
+				// same names
+				internedInline = entries == internedInline ? newEntries : null;
+			}
+			return oldValue;
+		}
+		if (entries.length < 2 * MAX_INLINE) {
+			Object[] newEntries = new Object[entries.length + 2];
+			System.arraycopy(entries, 0, newEntries, 0, entries.length);
+			newEntries[entries.length] = name;
+			newEntries[entries.length + 1] = value;
+			inline = newEntries;
+			internedInline = null;
+			return null;
+		}
+		ConcurrentHashMap<String, V> large = new ConcurrentHashMap<String, V>(4 * MAX_INLINE, 0.75f, 1);
+		for (int i = 0; i < entries.length; i += 2)
+			large.put((String) entries[i], (V) entries[i + 1]);
+		large.put(name, value);
+		map = large;
+		inline = EMPTY;
+		internedInline = null;
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	synchronized public V remove(String name) {
+		frozen = null;
+		if (map != null)
+			return map.remove(name);
+		Object[] entries = inline;
+		int index = indexOf(entries, name);
+		if (index < 0)
+			return null;
+		Object[] newEntries = EMPTY;
+		if (entries.length > 2) {
+			newEntries = new Object[entries.length - 2];
+			System.arraycopy(entries, 0, newEntries, 0, index);
+			System.arraycopy(entries, index + 2, newEntries, index, entries.length - index - 2);
+		}
+		inline = newEntries;
+		// fewer names
+		internedInline = entries == internedInline ? newEntries : null;
+		return (V) entries[index + 1];
+	}
+
+	synchronized public void clear() {
+		frozen = null;
+		inline = EMPTY;
+		internedInline = EMPTY;
+		map = null;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public int size() {
+		Object[] entries = inline;
+		ConcurrentHashMap<String, V> large = map;
+		return large != null ? large.size() : entries.length / 2;
+	}
+
+	/**
+	 * Returns a copy of the entries of this map.
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<String, V> toMap() {
+		Object[] entries = inline;
+		ConcurrentHashMap<String, V> large = map;
+		if (large != null)
+			return new HashMap<String, V>(large);
+		Map<String, V> result = new HashMap<String, V>(entries.length);
+		for (int i = 0; i < entries.length; i += 2)
+			result.put((String) entries[i], (V) entries[i + 1]);
+		return result;
+	}
+
+	/**
+	 * Returns an unmodifiable copy of the entries of this map. The same copy is
+	 * returned until the map changes.
+	 */
+	synchronized public Map<String, V> freeze() {
+		if (frozen == null)
+			frozen = Collections.unmodifiableMap(toMap());
+		return frozen;
+	}
+
+	private static int indexOf(Object[] entries, String name) {
+		for (int i = 0; i < entries.length; i += 2) {
+			if (name.equals(entries[i]))
+				return i;
+		}
+		return -1;
+	}
+}
@@ -17,27 +17,35 @@ import java.lang.reflect.Type;
 import java.util.Stack;
 import javax.inject.Named;
 import org.eclipse.e4.core.contexts.Active;
+import org.eclipse.e4.core.contexts.ContextKey;
 import org.eclipse.e4.core.contexts.IEclipseContext;
 import org.eclipse.e4.core.contexts.RunAndTrack;
 import org.eclipse.e4.core.di.IInjector;
 import org.eclipse.e4.core.di.suppliers.IObjectDescriptor;
 import org.eclipse.e4.core.di.suppliers.IRequestor;
 import org.eclipse.e4.core.di.suppliers.PrimaryObjectSupplier;
+import org.eclipse.e4.core.internal.di.ObjectDescriptor;
 import org.eclipse.e4.core.internal.di.Requestor;
 
 public class ContextObjectSupplier extends PrimaryObjectSupplier {
 
 	final static protected String ECLIPSE_CONTEXT_NAME = IEclipseContext.class.getName();
 
+	/**
+	 * The key of the context itself. Injected descriptors get this instance for
+	 * the context, so they can be told apart by identity.
+	 */
+	final static private ContextKey<Object> ECLIPSE_CONTEXT_KEY = ContextKey.forName(ECLIPSE_CONTEXT_NAME);
+
 	public static class ContextInjectionListener extends RunAndTrackExt {
 
 		final private Object[] result;
-		final private String[] keys;
+		final private ContextKey<?>[] keys;
 		final private boolean[] active;
 		final private IRequestor requestor;
 		final private IEclipseContext context;
 
-		public ContextInjectionListener(IEclipseContext context, Object[] result, String[] keys, boolean[] active, IRequestor requestor, boolean group) {
+		public ContextInjectionListener(IEclipseContext context, Object[] result, ContextKey<?>[] keys, boolean[] active, IRequestor requestor, boolean group) {
 			super(group);
 			this.result = result;
 			this.keys = keys;
@@ -55,17 +63,23 @@ public class ContextObjectSupplier extends PrimaryObjectSupplier {
 		public boolean update(IEclipseContext eventsContext, int eventType, Object[] extraArguments) {
 			if (eventType == ContextChangeEvent.INITIAL) {
 				// needs to be done inside runnable to establish dependencies
+				IEclipseContext activeLeaf = null;
 				for (int i = 0; i < keys.length; i++) {
 					if (keys[i] == null)
 						continue;
-					IEclipseContext targetContext = (active[i]) ? context.getActiveLeaf() : context;
-					if (ECLIPSE_CONTEXT_NAME.equals(keys[i])) {
+					IEclipseContext targetContext = context;
+					if (active[i]) {
+						if (activeLeaf == null)
+							activeLeaf = context.getActiveLeaf();
+						targetContext = activeLeaf;
+					}
+					if (keys[i] == ECLIPSE_CONTEXT_KEY) {
 						result[i] = targetContext;
 						IEclipseContext parent = targetContext.getParent(); // creates pseudo-link
 						if (parent == null)
-							targetContext.get(ECLIPSE_CONTEXT_NAME); // pseudo-link in case there is no parent
-					} else if (targetContext.containsKey(keys[i]))
-						result[i] = targetContext.get(keys[i]);
+							targetContext.get(ECLIPSE_CONTEXT_KEY); // pseudo-link in case there is no parent
+					} else
+						resolve(targetContext, keys[i], result, i);
 				}
 				return true;
 			}
@@ -144,15 +158,15 @@ public class ContextObjectSupplier extends PrimaryObjectSupplier {
 
 	@Override
 	public void get(IObjectDescriptor[] descriptors, Object[] actualArgs, final IRequestor requestor, boolean initial, boolean track, boolean group) {
-		final String[] keys = new String[descriptors.length];
+		final ContextKey<?>[] keys = new ContextKey<?>[descriptors.length];
 		final boolean[] active = new boolean[descriptors.length];
 
 		for (int i = 0; i < descriptors.length; i++) {
-			String key = getKey(descriptors[i]);
+			ContextKey<?> key = getKey(descriptors[i]);
 			if ((actualArgs[i] == IInjector.NOT_A_VALUE))
 				keys[i] = key;
-			else if (ECLIPSE_CONTEXT_NAME.equals(key)) // allow provider to override IEclipseContext
-				keys[i] = ECLIPSE_CONTEXT_NAME;
+			else if (key == ECLIPSE_CONTEXT_KEY) // allow provider to override IEclipseContext
+				keys[i] = ECLIPSE_CONTEXT_KEY;
 			else
 				keys[i] = null;
 			if (descriptors[i] == null)
@@ -180,25 +194,61 @@ public class ContextObjectSupplier extends PrimaryObjectSupplier {
 		}
 	}
 
-	private void fillArgs(Object[] actualArgs, String[] keys, boolean[] active) {
+	private void fillArgs(Object[] actualArgs, ContextKey<?>[] keys, boolean[] active) {
+		IEclipseContext activeLeaf = null; // the same for all arguments
 		for (int i = 0; i < keys.length; i++) {
 			if (keys[i] == null)
 				continue;
-			IEclipseContext targetContext = (active[i]) ? context.getActiveLeaf() : context;
-			if (ECLIPSE_CONTEXT_NAME.equals(keys[i]))
+			IEclipseContext targetContext = context;
+			if (active[i]) {
+				if (activeLeaf == null)
+					activeLeaf = context.getActiveLeaf();
+				targetContext = activeLeaf;
+			}
+			if (keys[i] == ECLIPSE_CONTEXT_KEY)
 				actualArgs[i] = targetContext;
-			else if (targetContext.containsKey(keys[i]))
-				actualArgs[i] = targetContext.get(keys[i]);
+			else
+				resolve(targetContext, keys[i], actualArgs, i);
 		}
 	}
 
-	private String getKey(IObjectDescriptor descriptor) {
+	/**
+	 * Stores the value of the given key in the given argument, unless the
+	 * context has no value for the key. Only walks the parent chain once.
+	 */
+	static void resolve(IEclipseContext targetContext, ContextKey<?> key, Object[] args, int index) {
+		Object value;
+		if (targetContext instanceof EclipseContext)
+			value = ((EclipseContext) targetContext).resolve(key);
+		else
+			value = targetContext.containsKey(key) ? targetContext.get(key) : IInjector.NOT_A_VALUE;
+		if (value != IInjector.NOT_A_VALUE)
+			args[index] = value;
+	}
+
+	/**
+	 * Returns the key of the given descriptor, computing it only once for
+	 * descriptors shared by the injections of a class.
+	 */
+	private ContextKey<?> getKey(IObjectDescriptor descriptor) {
+		ObjectDescriptor shared = descriptor instanceof ObjectDescriptor ? (ObjectDescriptor) descriptor : null;
+		if (shared != null) {
+			Object key = shared.getKey();
+			if (key instanceof ContextKey<?>)
+				return (ContextKey<?>) key;
+		}
+		String name;
 		if (descriptor.hasQualifier(Named.class)) {
 			Named namedAnnotation = descriptor.getQualifier(Named.class);
-			return namedAnnotation.value();
-		}
-		Type elementType = descriptor.getDesiredType();
-		return typeToString(elementType);
+			name = namedAnnotation.value();
+		} else
+			name = typeToString(descriptor.getDesiredType());
+		if (name == null)
+			return null;
+		ContextKey<?> key = ECLIPSE_CONTEXT_NAME.equals(name) ? ECLIPSE_CONTEXT_KEY : ContextKey.forName(name);
+		if (shared != null)
+			shared.setKey(key);
+		return key;
 	}
 
 	private String typeToString(Type type) {
@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.core.internal.contexts;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.e4.core.internal.di.shared.CoreLogger;
+
+/**
+ * Removes the listeners and computations of objects collected by the garbage
+ * collector. The weak references held by contexts are registered with a single
+ * queue that is drained by a low priority background thread, so that contexts
+ * which are mostly read from do not accumulate dead listeners.
+ * <p>
+ * The reaper does not run client code: the computations of collected injected
+ * objects are handed over to their context, which updates them on its next
+ * modification. The thread is started when the first reference is registered
+ * after the bundle is started, and is stopped with the bundle. While it is
+ * stopped, contexts drain the queue themselves when they are modified.
+ * </p>
+ */
+public final class ContextReaper extends Thread {
+
+	/**
+	 * A reference that knows how to remove itself from its owner once its
+	 * referent has been collected.
+	 */
+	interface Reapable {
+		/**
+		 * Removes the reference from its owner, or hands it over to its owner.
+		 * Must not run client code, as it may be called on the reaper thread.
+		 *
+		 * @return <code>true</code> if the reference was still registered,
+		 * <code>false</code> if its owner had already removed it
+		 */
+		boolean reap();
+	}
+
+	static final private ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+
+	static final private AtomicLong reclaimedListeners = new AtomicLong();
+	static final private AtomicLong reclaimedComputations = new AtomicLong();
+
+	static private ContextReaper reaper; // guarded by ContextReaper.class
+
+	static private boolean stopped = false; // guarded by ContextReaper.class
+
+	/**
+	 * Set when this thread is asked to stop. A reaper started afterwards
+	 * uses a new thread.
+	 */
+	private volatile boolean done = false;
+
+	private ContextReaper() {
+		super("Eclipse Context Reaper"); //$NON-NLS-1$
+		setDaemon(true);
+		setPriority(Thread.MIN_PRIORITY);
+	}
+
+	/**
+	 * Returns the queue to register weak references with, starting the
+	 * reaper if it is not running and the bundle is not stopped.
+	 */
+	static ReferenceQueue<Object> getQueue() {
+		synchronized (ContextReaper.class) {
+			if (reaper == null && !stopped) {
+				reaper = new ContextReaper();
+				reaper.start();
+			}
+		}
+		return queue;
+	}
+
+	/**
+	 * Lets the reaper run again once the bundle is started. The thread itself
+	 * is started when the next reference is registered.
+	 */
+	public static void startReaper() {
+		synchronized (ContextReaper.class) {
+			stopped = false;
+		}
+	}
+
+	/**
+	 * Stops the reaper and waits for its thread to end, so that it does not
+	 * outlive the bundle. References collected while it is stopped are reaped
+	 * by {@link #reapPending()}, or by the reaper of the next start.
+	 */
+	public static void stopReaper() {
+		ContextReaper current;
+		synchronized (ContextReaper.class) {
+			stopped = true;
+			current = reaper;
+			reaper = null;
+		}
+		if (current == null)
+			return;
+		current.done = true;
+		current.interrupt();
+		try {
+			current.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Reaps the references collected so far on the calling thread. This only
+	 * finds references while the reaper is stopped or lagging behind, and is
+	 * cheap otherwise.
+	 */
+	static void reapPending() {
+		for (Reference<?> ref = queue.poll(); ref != null; ref = queue.poll())
+			reap(ref);
+	}
+
+	private static void reap(Reference<?> ref) {
+		try {
+			if (!((Reapable) ref).reap())
+				return;
+			if (ref instanceof WeakGroupedListenerList.WeakComputationReference)
+				reclaimedListeners.incrementAndGet();
+			else
+				reclaimedComputations.incrementAndGet();
+		} catch (RuntimeException e) {
+			// keep reaping the other references
+			CoreLogger.logError("Unable to remove the listeners of a collected object", e); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Returns the number of listeners of collected computations removed by
+	 * the reaper.
+	 */
+	public static long getReclaimedListeners() {
+		return reclaimedListeners.get();
+	}
+
+	/**
+	 * Returns the number of computations of collected injected objects handed
+	 * over to their contexts by the reaper.
+	 */
+	public static long getReclaimedComputations() {
+		return reclaimedComputations.get();
+	}
+
+	public void run() {
+		while (!done) {
+			Reference<?> ref;
+			try {
+				ref = queue.remove();
+			} catch (InterruptedException e) {
+				continue; // check if we have been stopped
+			}
+			reap(ref);
+		}
+	}
+}
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.core.internal.contexts;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.eclipse.e4.core.contexts.IContextFunction;
+
+/**
+ * An unmodifiable view of the values visible from a context when the snapshot
+ * was taken. The values of each context of the parent chain are kept in a
+ * separate layer, starting with the context itself. Layers are shared with the
+ * other snapshots taken until the context changes, so taking a snapshot only
+ * costs a probe per context.
+ * <p>
+ * Names that are bound to a context function hide the values of the parents
+ * but have no value in the snapshot. The parent of each context is only used
+ * to find the next layer and is not a value of the snapshot.
+ * </p>
+ */
+final class ContextSnapshot extends AbstractMap<String, Object> {
+
+	final private List<Map<String, Object>> layers;
+
+	/**
+	 * The entries of all layers, only computed if asked for.
+	 */
+	private volatile Set<Map.Entry<String, Object>> entries;
+
+	ContextSnapshot(List<Map<String, Object>> layers) {
+		this.layers = layers;
+	}
+
+	public Object get(Object name) {
+		if (EclipseContext.PARENT.equals(name))
+			return null;
+		for (Map<String, Object> layer : layers) {
+			Object value = layer.get(name);
+			if (value != null)
+				return (value instanceof IContextFunction) ? null : EclipseContext.unmaskNull(value);
+		}
+		return null;
+	}
+
+	public boolean containsKey(Object name) {
+		if (EclipseContext.PARENT.equals(name))
+			return false;
+		for (Map<String, Object> layer : layers) {
+			Object value = layer.get(name);
+			if (value != null)
+				return !(value instanceof IContextFunction);
+		}
+		return false;
+	}
+
+	public Set<Map.Entry<String, Object>> entrySet() {
+		Set<Map.Entry<String, Object>> result = entries;
+		if (result == null) {
+			Map<String, Object> flattened = new HashMap<String, Object>();
+			// the values of children override the values of their parents
+			for (int i = layers.size() - 1; i >= 0; i--) {
+				for (Map.Entry<String, Object> entry : layers.get(i).entrySet()) {
+					if (entry.getValue() instanceof IContextFunction || EclipseContext.PARENT.equals(entry.getKey()))
+						flattened.remove(entry.getKey());
+					else
+						flattened.put(entry.getKey(), EclipseContext.unmaskNull(entry.getValue()));
+				}
+			}
+			result = Collections.unmodifiableMap(flattened).entrySet();
+			entries = result;
+		}
+		return result;
+	}
+}
@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.core.internal.contexts;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects statistics about how contexts are used: lookups per name and how
+ * far up the parent chain they go, lookup cache hits, context function
+ * computations, invalidations and the number of listeners they reach, and
+ * how often each {@link org.eclipse.e4.core.contexts.RunAndTrack} runs.
+ * <p>
+ * Collection is off unless the <code>org.eclipse.e4.core.contexts/debug/statistics</code>
+ * option is set or {@link #setEnabled(boolean)} is called. When it is off,
+ * contexts only pay for reading a static field.
+ * </p>
+ */
+public final class ContextStatistics {
+
+	/**
+	 * The statistics collected for a single name.
+	 */
+	public static final class KeyStatistics {
+		final AtomicLong lookups = new AtomicLong();
+		final AtomicLong totalDepth = new AtomicLong();
+		final AtomicLong maxDepth = new AtomicLong();
+		final AtomicLong cacheHits = new AtomicLong();
+		final AtomicLong computations = new AtomicLong();
+		final AtomicLong computeTime = new AtomicLong();
+		final AtomicLong invalidations = new AtomicLong();
+		final AtomicLong notifications = new AtomicLong();
+
+		KeyStatistics() {
+			// created by the collector
+		}
+
+		KeyStatistics(KeyStatistics source) {
+			lookups.set(source.lookups.get());
+			totalDepth.set(source.totalDepth.get());
+			maxDepth.set(source.maxDepth.get());
+			cacheHits.set(source.cacheHits.get());
+			computations.set(source.computations.get());
+			computeTime.set(source.computeTime.get());
+			invalidations.set(source.invalidations.get());
+			notifications.set(source.notifications.get());
+		}
+
+		/**
+		 * Returns the number of times the name was looked up.
+		 */
+		public long getLookups() {
+			return lookups.get();
+		}
+
+		/**
+		 * Returns the sum of the number of parents visited by all lookups.
+		 */
+		public long getTotalDepth() {
+			return totalDepth.get();
+		}
+
+		/**
+		 * Returns the largest number of parents visited by a single lookup.
+		 */
+		public long getMaxDepth() {
+			return maxDepth.get();
+		}
+
+		/**
+		 * Returns the number of lookups answered by a lookup cache.
+		 */
+		public long getCacheHits() {
+			return cacheHits.get();
+		}
+
+		/**
+		 * Returns the number of times a context function computed a value for the name.
+		 */
+		public long getComputations() {
+			return computations.get();
+		}
+
+		/**
+		 * Returns the time spent computing values for the name, in nanoseconds.
+		 */
+		public long getComputeTime() {
+			return computeTime.get();
+		}
+
+		/**
+		 * Returns the number of times the name was invalidated in a context.
+		 */
+		public long getInvalidations() {
+			return invalidations.get();
+		}
+
+		/**
+		 * Returns the number of computations and listeners notified by all
+		 * invalidations of the name.
+		 */
+		public long getNotifications() {
+			return notifications.get();
+		}
+	}
+
+	/**
+	 * A copy of the statistics collected up to a point in time.
+	 */
+	public static final class Snapshot {
+		private final Map<String, KeyStatistics> keys;
+		private final Map<String, Long> runAndTracks;
+
+		Snapshot(Map<String, KeyStatistics> keys, Map<String, Long> runAndTracks) {
+			this.keys = keys;
+			this.runAndTracks = runAndTracks;
+		}
+
+		/**
+		 * Returns the statistics of each name that was used.
+		 */
+		public Map<String, KeyStatistics> getKeyStatistics() {
+			return keys;
+		}
+
+		/**
+		 * Returns the number of times each {@link org.eclipse.e4.core.contexts.RunAndTrack}
+		 * ran, keyed by the description of the runnable.
+		 */
+		public Map<String, Long> getRunAndTrackExecutions() {
+			return runAndTracks;
+		}
+	}
+
+	/**
+	 * The active collector, or <code>null</code> if statistics are not collected.
+	 */
+	static volatile ContextStatistics collector = DebugHelper.DEBUG_STATISTICS ? new ContextStatistics() : null;
+
+	private final ConcurrentHashMap<String, KeyStatistics> keys = new ConcurrentHashMap<String, KeyStatistics>();
+	private final ConcurrentHashMap<String, AtomicLong> runAndTracks = new ConcurrentHashMap<String, AtomicLong>();
+
+	private ContextStatistics() {
+		// use setEnabled()
+	}
+
+	/**
+	 * Turns collection on or off. Turning collection off discards the statistics
+	 * collected so far.
+	 */
+	public static synchronized void setEnabled(boolean enabled) {
+		if (enabled && collector == null)
+			collector = new ContextStatistics();
+		else if (!enabled)
+			collector = null;
+	}
+
+	public static boolean isEnabled() {
+		return collector != null;
+	}
+
+	/**
+	 * Discards the statistics collected so far.
+	 */
+	public static synchronized void reset() {
+		if (collector != null)
+			collector = new ContextStatistics();
+	}
+
+	/**
+	 * Returns a copy of the statistics collected so far. The snapshot is empty if
+	 * collection is off.
+	 */
+	public static Snapshot getSnapshot() {
+		ContextStatistics current = collector;
+		Map<String, KeyStatistics> keyCopy = new HashMap<String, KeyStatistics>();
+		Map<String, Long> runAndTrackCopy = new HashMap<String, Long>();
+		if (current != null) {
+			for (Map.Entry<String, KeyStatistics> entry : current.keys.entrySet())
+				keyCopy.put(entry.getKey(), new KeyStatistics(entry.getValue()));
+			for (Map.Entry<String, AtomicLong> entry : current.runAndTracks.entrySet())
+				runAndTrackCopy.put(entry.getKey(), Long.valueOf(entry.getValue().get()));
+		}
+		return new Snapshot(keyCopy, runAndTrackCopy);
+	}
+
+	private KeyStatistics getKey(String name) {
+		KeyStatistics result = keys.get(name);
+		if (result == null) {
+			KeyStatistics newResult = new KeyStatistics();
+			result = keys.putIfAbsent(name, newResult);
+			if (result == null)
+				result = newResult;
+		}
+		return result;
+	}
+
+	void lookup(String name, int depth) {
+		KeyStatistics key = getKey(name);
+		key.lookups.incrementAndGet();
+		key.totalDepth.addAndGet(depth);
+		long max;
+		while (depth > (max = key.maxDepth.get())) {
+			if (key.maxDepth.compareAndSet(max, depth))
+				break;
+		}
+	}
+
+	void cacheHit(String name) {
+		getKey(name).cacheHits.incrementAndGet();
+	}
+
+	void computed(String name, long nanos) {
+		KeyStatistics key = getKey(name);
+		key.computations.incrementAndGet();
+		key.computeTime.addAndGet(nanos);
+	}
+
+	void invalidated(String name, int notified) {
+		KeyStatistics key = getKey(name);
+		key.invalidations.incrementAndGet();
+		key.notifications.addAndGet(notified);
+	}
+
+	void ranAndTracked(Object runnable) {
+		String description = String.valueOf(runnable);
+		AtomicLong count = runAndTracks.get(description);
+		if (count == null) {
+			AtomicLong newCount = new AtomicLong();
+			count = runAndTracks.putIfAbsent(description, newCount);
+			if (count == null)
+				count = newCount;
+		}
+		count.incrementAndGet();
+	}
+}
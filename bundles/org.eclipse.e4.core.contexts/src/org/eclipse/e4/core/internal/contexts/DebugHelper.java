@@ -16,10 +16,12 @@ public final class DebugHelper {
 	private static final String OPTION_DEBUG = PLUGIN_NAME + "/debug"; //$NON-NLS-1$
 	private static final String OPTION_DEBUG_NAMES = OPTION_DEBUG + "/names"; //$NON-NLS-1$
 	private static final String OPTION_DEBUG_LISTENERS = OPTION_DEBUG + "/listeners"; //$NON-NLS-1$
+	private static final String OPTION_DEBUG_STATISTICS = OPTION_DEBUG + "/statistics"; //$NON-NLS-1$
 
 	public static boolean DEBUG = false;
 	public static boolean DEBUG_NAMES = false;
 	public static boolean DEBUG_LISTENERS = false;
+	public static boolean DEBUG_STATISTICS = false;
 
 	static {
 		try {
@@ -27,6 +29,7 @@ public final class DebugHelper {
 			DEBUG = org.eclipse.e4.core.internal.contexts.osgi.ContextsActivator.getBooleanDebugOption(OPTION_DEBUG, false);
 			DEBUG_NAMES = org.eclipse.e4.core.internal.contexts.osgi.ContextsActivator.getBooleanDebugOption(OPTION_DEBUG_NAMES, false);
 			DEBUG_LISTENERS = org.eclipse.e4.core.internal.contexts.osgi.ContextsActivator.getBooleanDebugOption(OPTION_DEBUG_LISTENERS, false);
+			DEBUG_STATISTICS = org.eclipse.e4.core.internal.contexts.osgi.ContextsActivator.getBooleanDebugOption(OPTION_DEBUG_STATISTICS, false);
 		} catch (NoClassDefFoundError noClass) {
 			// no OSGi - OK
 		}
@@ -11,22 +11,30 @@
 package org.eclipse.e4.core.internal.contexts;
 
 import java.lang.ref.Reference;
-import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.e4.core.contexts.ContextKey;
 import org.eclipse.e4.core.contexts.IContextFunction;
 import org.eclipse.e4.core.contexts.IEclipseContext;
+import org.eclipse.e4.core.contexts.ISharedContextFunction;
 import org.eclipse.e4.core.contexts.RunAndTrack;
 import org.eclipse.e4.core.di.IInjector;
+import org.eclipse.e4.core.internal.contexts.WeakGroupedListenerList.WeakComputationReference;
 import org.eclipse.e4.core.internal.contexts.osgi.ContextDebugHelper;
 
 /**
@@ -74,29 +82,148 @@ public class EclipseContext implements IEclipseContext {
 		}
 	}
 
-	private WeakGroupedListenerList weakListeners = new WeakGroupedListenerList();
-	private Map<String, ValueComputation> localValueComputations = Collections.synchronizedMap(new HashMap<String, ValueComputation>());
+	/**
+	 * The contexts on the chain of active children starting at a context, as of
+	 * a given number of active child changes. The last context is the active leaf.
+	 */
+	static final class ActiveLeaf {
+
+		final EclipseContext[] chain;
+		final int changes;
 
-	final protected Map<String, Object> localValues = Collections.synchronizedMap(new HashMap<String, Object>());
+		ActiveLeaf(EclipseContext[] chain, int changes) {
+			this.chain = chain;
+			this.changes = changes;
+		}
+	}
+
+	/**
+	 * Stands for names that are set to <code>null</code> in the local values, as
+	 * concurrent maps cannot hold <code>null</code>. A single probe of the local
+	 * values thus tells apart names set to <code>null</code> from names not set.
+	 */
+	static final Object NULL_VALUE = new Object() {
+		public String toString() {
+			return "null"; //$NON-NLS-1$
+		}
+	};
+
+	/**
+	 * Contexts are mostly modified by a single thread, so the concurrent maps
+	 * below are created with a single segment. Reads never lock.
+	 */
+	private static final int CONCURRENCY_LEVEL = 1;
+
+	/*
+	 * Large trees consist mostly of leaf contexts with few values, so the
+	 * structures that many contexts never use are only allocated on demand,
+	 * guarded by the context itself, and values are kept in compact maps.
+	 */
+
+	private WeakGroupedListenerList weakListeners = new WeakGroupedListenerList(this);
+	final private CompactMap<ValueComputation> localValueComputations = new CompactMap<ValueComputation>();
+
+	/**
+	 * The values set in this context. Names set to <code>null</code> map to {@link #NULL_VALUE}.
+	 */
+	final protected CompactMap<Object> localValues = new CompactMap<Object>();
 
 	private ArrayList<String> modifiable;
 
 	private List<Computation> waiting; // list of Computations; null for all non-root entries
 
-	private Set<WeakReference<EclipseContext>> children = new HashSet<WeakReference<EclipseContext>>();
+	private List<WeakReference<EclipseContext>> children; // created on demand
+
+	/**
+	 * Whether this context is being disposed, or has been disposed, as part of
+	 * a subtree.
+	 */
+	private boolean disposing = false;
 
-	private Set<IContextDisposalListener> notifyOnDisposal = new HashSet<IContextDisposalListener>();
+	private Set<IContextDisposalListener> notifyOnDisposal; // created on demand
 
 	static private ThreadLocal<Stack<Computation>> currentComputation = new ThreadLocal<Stack<Computation>>();
 
-	// I don't think we need to sync referenceQueue access
-	private ReferenceQueue<Object> referenceQueue = new ReferenceQueue<Object>();
+	/**
+	 * The computations scheduled on this thread while a batch is open, keyed by
+	 * computation so that each one is updated only once; <code>null</code>
+	 * outside of batches.
+	 */
+	static private ThreadLocal<Map<TrackableComputationExt, Scheduled>> batchedComputations = new ThreadLocal<Map<TrackableComputationExt, Scheduled>>();
+
+	private volatile Map<Reference<?>, TrackableComputationExt> activeComputations; // created on demand
+
+	/**
+	 * The references of collected injected objects whose computations are
+	 * still to be removed, handed over by the reaper; created on demand.
+	 */
+	private volatile Queue<Reference<?>> reapedReferences;
+	private volatile Set<TrackableComputationExt> activeRATs; // created on demand
+
+	/**
+	 * The number of times the active child changed in any context. Cached active
+	 * leaves computed before the latest change are stale.
+	 */
+	static private final AtomicInteger activeChildChanges = new AtomicInteger();
+
+	/**
+	 * The cached active leaf of this context, or <code>null</code> if not known.
+	 * Cleared when the active child changes in this context or a descendant.
+	 */
+	private volatile ActiveLeaf activeLeaf;
 
-	private Map<Reference<?>, TrackableComputationExt> activeComputations = Collections.synchronizedMap(new HashMap<Reference<?>, TrackableComputationExt>());
-	private Set<TrackableComputationExt> activeRATs = Collections.synchronizedSet(new HashSet<TrackableComputationExt>());
+	/**
+	 * The trackers that keep the active variables of this context up to date,
+	 * keyed by name; created on demand.
+	 */
+	private volatile CompactMap<RunAndTrack> activeTrackers;
 
 	private final static Object[] nullArgs = new Object[] {null};
 
+	/**
+	 * Remembers the ancestors holding inherited values, or <code>null</code>
+	 * if lookups in this context always walk the parent chain.
+	 */
+	private volatile LookupCache lookupCache;
+
+	/**
+	 * Whether any context ever had a lookup cache. Otherwise there is no need
+	 * to walk descendants to flush their caches.
+	 */
+	private static volatile boolean lookupCachesUsed = false;
+
+	/**
+	 * For each name this context depends on, the number of reasons: listeners
+	 * of the name and a computed value of the name. Only modified while holding
+	 * the lock of this context.
+	 */
+	private final CompactMap<Integer> localDependencies = new CompactMap<Integer>();
+
+	/**
+	 * For each name, the number of children with a descendant that depends on
+	 * it. Together with the local dependencies this summarizes the names the
+	 * subtree of this context depends on, so that invalidation can skip
+	 * subtrees that do not depend on the changed name. Only modified while
+	 * holding the lock of this context. Changes are propagated to the parent
+	 * after the lock is released, so a count can be briefly negative when two
+	 * changes of a child reach this context out of order.
+	 */
+	private final CompactMap<Integer> childDependencies = new CompactMap<Integer>();
+
+	/**
+	 * The number of children with a lookup cache in their subtree. Such
+	 * subtrees depend on every name. Like {@link #childDependencies}, it can
+	 * be briefly negative.
+	 */
+	private volatile int cachingChildren = 0;
+
+	/**
+	 * The context the dependency summary of this context is counted in, or
+	 * <code>null</code> if this context is not attached to a parent. Guarded
+	 * by the lock of this context.
+	 */
+	private EclipseContext summaryParent;
+
 	/**
 	 * A context key (value "activeChildContext") that identifies another {@link IEclipseContext}
 	 * that is a child of the context. The meaning of active is up to the application.
@@ -107,6 +234,9 @@ public class EclipseContext implements IEclipseContext {
 
 	public EclipseContext(IEclipseContext parent) {
 		setParent(parent);
+		// children of contexts with a lookup cache have one as well
+		if (parent instanceof EclipseContext && ((EclipseContext) parent).lookupCache != null)
+			setLookupCacheEnabled(true);
 		if (parent == null)
 			waiting = Collections.synchronizedList(new ArrayList<Computation>());
 		if (debugAddOn != null)
@@ -117,8 +247,8 @@ public class EclipseContext implements IEclipseContext {
 
 	public Set<EclipseContext> getChildren() {
 		Set<EclipseContext> result;
-		synchronized (children) {
-			if (children.size() == 0)
+		synchronized (this) {
+			if (children == null || children.size() == 0)
 				return noChildren;
 			result = new HashSet<EclipseContext>(children.size());
 			for (Iterator<WeakReference<EclipseContext>> i = children.iterator(); i.hasNext();) {
@@ -155,13 +285,49 @@ public class EclipseContext implements IEclipseContext {
 	 * @see org.eclipse.e4.core.services.context.IEclipseContext#dispose()
 	 */
 	public void dispose() {
+		if (disposing)
+			return;
 		// dispose of child contexts first
+		final List<EclipseContext> subtree = new ArrayList<EclipseContext>();
+		collectSubtree(subtree);
+		for (EclipseContext context : subtree) {
+			context.disposing = true;
+			// values computed in the subtree go away with it, so they are not recomputed
+			for (ValueComputation computation : context.localValueComputations.toMap().values())
+				computation.dipose();
+		}
+		EclipseContext rootContext = (getParent() == null) ? null : getRoot();
+		batch(new Runnable() {
+			public void run() {
+				for (EclipseContext context : subtree)
+					context.disposeContext();
+			}
+		});
+		// computations of the subtree may also listen to other contexts of the tree
+		if (rootContext != null)
+			rootContext.cleanup();
+	}
+
+	/**
+	 * Adds the contexts of the subtree of this context that are not being
+	 * disposed yet to the given list, children before their parents.
+	 */
+	private void collectSubtree(List<EclipseContext> result) {
 		for (EclipseContext childContext : getChildren()) {
-			childContext.dispose();
+			if (!childContext.disposing)
+				childContext.collectSubtree(result);
 		}
+		result.add(this);
+	}
 
-		activeComputations.clear();
-		activeRATs.clear();
+	/**
+	 * Disposes of this context once its children have been disposed of. The
+	 * parent is only updated if it is not disposed of with this context.
+	 */
+	private void disposeContext() {
+		activeComputations = null;
+		reapedReferences = null;
+		activeRATs = null;
 
 		ContextChangeEvent event = new ContextChangeEvent(this, ContextChangeEvent.DISPOSE, null, null, null);
 		Set<Scheduled> scheduled = new LinkedHashSet<Scheduled>();
@@ -172,32 +338,42 @@ public class EclipseContext implements IEclipseContext {
 		}
 		processScheduled(scheduled);
 
-		synchronized (notifyOnDisposal) {
-			for (IContextDisposalListener listener : notifyOnDisposal) {
+		IContextDisposalListener[] disposalListeners = null;
+		synchronized (this) {
+			if (notifyOnDisposal != null)
+				disposalListeners = notifyOnDisposal.toArray(new IContextDisposalListener[notifyOnDisposal.size()]);
+		}
+		if (disposalListeners != null) {
+			for (IContextDisposalListener listener : disposalListeners) {
 				listener.disposed(this);
 			}
 		}
 
-		for (ValueComputation computation : localValueComputations.values()) {
-			computation.dipose();
+		for (Map.Entry<String, ValueComputation> entry : localValueComputations.toMap().entrySet()) {
+			entry.getValue().dipose();
+			dependencyRemoved(entry.getKey());
 		}
 		localValueComputations.clear();
 
 		// if this was the parent's active child, deactivate it
 		EclipseContext parent = getParent();
-		EclipseContext rootContext = null;
-		if (parent != null) {
-			rootContext = getRoot();
+		if (parent != null && !parent.disposing) {
 			if (this == parent.getActiveChild())
 				parent.set(ACTIVE_CHILD, null);
 		}
 
 		localValues.clear();
+		if (lookupCache != null)
+			lookupCache.clear();
 
 		if (parent != null) {
-			parent.removeChild(this);
-			if (rootContext != null)
-				rootContext.cleanup();
+			if (parent.disposing)
+				parent.detachSummary(this); // the parent drops all of its children at once
+			else
+				parent.removeChild(this);
+		}
+		synchronized (this) {
+			children = null;
 		}
 
 		if (debugAddOn != null)
@@ -206,48 +382,212 @@ public class EclipseContext implements IEclipseContext {
 
 	public Object get(String name) {
 		trackAccess(name);
+		ContextStatistics statistics = ContextStatistics.collector;
+		if (statistics != null)
+			statistics.lookup(name, lookupDepth(name));
 		return internalGet(this, name, false);
 	}
 
+	/**
+	 * Returns the value of the given name, or {@link IInjector#NOT_A_VALUE} if
+	 * neither this context nor its ancestors have a value for it. This is the
+	 * same as calling {@link #containsKey(String)} followed by {@link #get(String)},
+	 * but only walks the parent chain once.
+	 */
+	public Object resolve(String name) {
+		trackAccess(name);
+		ContextStatistics statistics = ContextStatistics.collector;
+		if (statistics != null)
+			statistics.lookup(name, lookupDepth(name));
+		return internalGet(this, name, false, IInjector.NOT_A_VALUE, false);
+	}
+
+	/**
+	 * Same as {@link #resolve(String)}, for the name of the given key.
+	 */
+	public Object resolve(ContextKey<?> key) {
+		String name = key.getName();
+		trackAccess(name);
+		ContextStatistics statistics = ContextStatistics.collector;
+		if (statistics != null)
+			statistics.lookup(name, lookupDepth(name));
+		return internalGet(this, name, false, IInjector.NOT_A_VALUE, true);
+	}
+
+	/**
+	 * Returns the number of parents visited to find the given name, for statistics
+	 * only. Values provided by {@link #lookup(String, EclipseContext)} are not
+	 * taken into account.
+	 */
+	private int lookupDepth(String name) {
+		int depth = 0;
+		for (EclipseContext current = this; current != null; current = current.getParent()) {
+			if (current.localValues.containsKey(name) || (current == this && localValueComputations.containsKey(name)))
+				return depth;
+			depth++;
+		}
+		return depth - 1;
+	}
+
 	public Object getLocal(String name) {
 		trackAccess(name);
 		return internalGet(this, name, true);
 	}
 
 	public Object internalGet(EclipseContext originatingContext, String name, boolean local) {
+		return internalGet(originatingContext, name, local, null, false);
+	}
+
+	/**
+	 * Returns the value of the given name, or the given marker if there is no
+	 * value for it. Interned names are only compared by identity.
+	 */
+	private Object internalGet(EclipseContext originatingContext, String name, boolean local, Object absent, boolean interned) {
 		if (this == originatingContext) {
-			ValueComputation valueComputation = localValueComputations.get(name);
+			ValueComputation valueComputation = localValueComputations.get(name, interned);
 			if (valueComputation != null)
 				return valueComputation.get();
+			if (!local && lookupCache != null)
+				return cachedGet(name, absent, interned);
 		}
 
-		Object result = null;
 		// 1. try for local value
-		if (localValues.containsKey(name)) {
-			result = localValues.get(name);
-			if (result == null)
-				return null;
-		} else
+		Object result = localValues.get(name, interned);
+		if (result == null)
 			result = lookup(name, originatingContext);
 
 		// if we found something, compute the concrete value and return
-		if (result != null) {
-			if (result instanceof IContextFunction) {
-				ValueComputation valueComputation = new ValueComputation(name, originatingContext, ((IContextFunction) result));
-				// do calculations before adding listeners
-				result = valueComputation.get();
-				originatingContext.localValueComputations.put(name, valueComputation);
-			}
-			return result;
-		}
+		if (result != null)
+			return originatingContext.computeValue(this, name, result);
 		// 3. delegate to parent
 		if (!local) {
-			IEclipseContext parent = (IEclipseContext) localValues.get(PARENT);
+			EclipseContext parent = getParent();
 			if (parent != null) {
-				return ((EclipseContext) parent).internalGet(originatingContext, name, local);
+				return parent.internalGet(originatingContext, name, local, absent, interned);
 			}
 		}
-		return null;
+		return absent;
+	}
+
+	/**
+	 * Looks up the given name in this context and its ancestors, using and
+	 * updating the lookup cache of this context. Returns the given marker if
+	 * there is no value for the name.
+	 */
+	private Object cachedGet(String name, Object absent, boolean interned) {
+		LookupCache cache = lookupCache;
+		if (cache == null)
+			return internalGet(this, name, false, absent, interned);
+		Object owner = cache.get(name);
+		if (owner == LookupCache.NOT_FOUND) {
+			cacheHit(cache, name);
+			return absent;
+		}
+		if (owner != null) {
+			Object result = ((EclipseContext) owner).localValues.get(name, interned);
+			if (result != null) {
+				cacheHit(cache, name);
+				return computeValue((EclipseContext) owner, name, result);
+			}
+			// the owner no longer holds the value
+			cache.remove(name);
+		}
+		cache.miss();
+		// not cached if the name is invalidated while walking the parent chain
+		int stamp = cache.stamp();
+		for (EclipseContext current = this; current != null; current = current.getParent()) {
+			Object result = current.localValues.get(name, interned);
+			if (result == null)
+				result = current.lookup(name, this);
+			if (result != null) {
+				// local values are only a single probe away
+				if (current != this)
+					cache.put(name, current, stamp);
+				return computeValue(current, name, result);
+			}
+		}
+		cache.put(name, LookupCache.NOT_FOUND, stamp);
+		return absent;
+	}
+
+	private static void cacheHit(LookupCache cache, String name) {
+		cache.hit();
+		ContextStatistics statistics = ContextStatistics.collector;
+		if (statistics != null)
+			statistics.cacheHit(name);
+	}
+
+	/**
+	 * Returns the value of the given name in this context, given the raw value
+	 * found in this context or one of its ancestors. Context functions are
+	 * computed and cached in this context, unless they are shared, in which case
+	 * they are computed and cached in the context defining them.
+	 */
+	private Object computeValue(EclipseContext definingContext, String name, Object rawValue) {
+		if (rawValue == NULL_VALUE)
+			return null;
+		if (rawValue instanceof IContextFunction) {
+			if (rawValue instanceof ISharedContextFunction && definingContext != this) {
+				ValueComputation shared = definingContext.localValueComputations.get(name);
+				if (shared != null)
+					return shared.get();
+				return definingContext.computeValue(definingContext, name, rawValue);
+			}
+			ValueComputation valueComputation = new ValueComputation(name, this, ((IContextFunction) rawValue));
+			// do calculations before adding listeners
+			Object result = valueComputation.get();
+			if (localValueComputations.put(name, valueComputation) == null)
+				dependencyAdded(name);
+			return result;
+		}
+		return rawValue;
+	}
+
+	/**
+	 * Enables or disables the lookup cache of this context. Contexts created
+	 * as children of a context with a lookup cache have one as well.
+	 */
+	public void setLookupCacheEnabled(boolean enabled) {
+		EclipseContext parent;
+		int parentDelta;
+		synchronized (this) {
+			boolean caching = isCachingSubtree();
+			if (!enabled)
+				lookupCache = null;
+			else if (lookupCache == null) {
+				lookupCachesUsed = true;
+				lookupCache = new LookupCache();
+			}
+			parentDelta = delta(caching, isCachingSubtree());
+			parent = summaryParent;
+		}
+		if (parentDelta != 0 && parent != null)
+			parent.cachingChildrenChanged(parentDelta);
+	}
+
+	/**
+	 * Returns the lookup cache of this context, or <code>null</code> if it is disabled.
+	 */
+	public LookupCache getLookupCache() {
+		return lookupCache;
+	}
+
+	/**
+	 * Removes the given name, or all names if <code>null</code>, from the lookup
+	 * caches of this context and its descendants.
+	 */
+	private void flushLookupCaches(String name) {
+		if (!lookupCachesUsed)
+			return;
+		LookupCache cache = lookupCache;
+		if (cache != null) {
+			if (name == null)
+				cache.clear();
+			else
+				cache.remove(name);
+		}
+		for (EclipseContext childContext : getChildren())
+			childContext.flushLookupCaches(name);
 	}
 
 	/**
@@ -255,28 +595,47 @@ public class EclipseContext implements IEclipseContext {
 	 * computations and listeners that depend on this name.
 	 */
 	public void invalidate(String name, int eventType, Object oldValue, Object newValue, Set<Scheduled> scheduled) {
+		LookupCache cache = lookupCache;
+		if (cache != null)
+			cache.remove(name);
+		if (ACTIVE_CHILD.equals(name))
+			activeChildChanged();
 		ContextChangeEvent event = null;
+		int notified = 0;
 		ValueComputation computation = localValueComputations.get(name);
 		if (computation != null) {
 			event = new ContextChangeEvent(this, eventType, null, name, oldValue);
 			if (computation.shouldRemove(event)) {
-				localValueComputations.remove(name);
+				if (localValueComputations.remove(name) != null)
+					dependencyRemoved(name);
 				weakListeners.remove(computation);
 			}
 			computation.handleInvalid(event, scheduled);
+			notified++;
 		}
-		Set<Computation> namedComputations = weakListeners.getListeners(name);
-		if (namedComputations != null && namedComputations.size() > 0) {
+		// the shared array is not affected by listeners added or removed while we notify
+		for (WeakComputationReference ref : weakListeners.getReferences(name)) {
+			Computation listener = ref.get();
+			if (listener == null || !listener.isValid()) {
+				weakListeners.prune(ref);
+				continue;
+			}
 			if (event == null) {
 				event = new ContextChangeEvent(this, eventType, null, name, oldValue);
 			}
-			for (Computation listener : namedComputations) {
-				listener.handleInvalid(event, scheduled);
-			}
+			listener.handleInvalid(event, scheduled);
+			notified++;
 		}
+		ContextStatistics statistics = ContextStatistics.collector;
+		if (statistics != null)
+			statistics.invalidated(name, notified);
 
-		// invalidate this name in child contexts
+		// invalidate this name in child contexts whose subtree depends on it
+		if (cachingChildren == 0 && !childDependencies.containsKey(name))
+			return;
 		for (EclipseContext childContext : getChildren()) {
+			if (!childContext.isSubtreeDependent(name))
+				continue;
 			// unless it is already set to the same value
 			if (eventType == ContextChangeEvent.ADDED && childContext.isLocalEquals(name, newValue))
 				continue;
@@ -285,9 +644,10 @@ public class EclipseContext implements IEclipseContext {
 	}
 
 	protected boolean isLocalEquals(String name, Object newValue) {
-		if (!localValues.containsKey(name))
+		Object localValue = localValues.get(name);
+		if (localValue == null)
 			return false;
-		return (localValues.get(name) == newValue);
+		return (unmaskNull(localValue) == newValue);
 	}
 
 	private boolean isSetLocally(String name) {
@@ -295,38 +655,123 @@ public class EclipseContext implements IEclipseContext {
 	}
 
 	public void remove(String name) {
-		if (isSetLocally(name)) {
-			Object oldValue = localValues.remove(name);
+		Object oldValue = localValues.remove(name);
+		if (oldValue != null) {
+			oldValue = unmaskNull(oldValue);
 			Set<Scheduled> scheduled = new LinkedHashSet<Scheduled>();
 			invalidate(name, ContextChangeEvent.REMOVED, oldValue, IInjector.NOT_A_VALUE, scheduled);
 			processScheduled(scheduled);
 		}
+		processReaped();
 	}
 
 	public void runAndTrack(final RunAndTrack runnable) {
-		TrackableComputationExt computation = new TrackableComputationExt(runnable, this);
+		runAndTrack(new TrackableComputationExt(runnable, this));
+	}
+
+	public void runAndTrack(RunAndTrack runnable, Executor executor) {
+		if (executor == null)
+			throw new NullPointerException();
+		runAndTrack(new TrackableComputationExt(runnable, this, executor));
+	}
+
+	private void runAndTrack(TrackableComputationExt computation) {
+		processReaped();
 		ContextChangeEvent event = new ContextChangeEvent(this, ContextChangeEvent.INITIAL, null, null, null);
 		boolean result = computation.update(event);
 		if (result) {
 			Reference<Object> ref = computation.getReference();
 			if (ref != null)
-				activeComputations.put(ref, computation);
+				getActiveComputations().put(ref, computation);
 			else
-				activeRATs.add(computation);
+				getActiveRATs().add(computation);
 		}
 	}
 
+	private Map<Reference<?>, TrackableComputationExt> getActiveComputations() {
+		Map<Reference<?>, TrackableComputationExt> result = activeComputations;
+		if (result == null) {
+			synchronized (this) {
+				if (activeComputations == null)
+					activeComputations = new ConcurrentHashMap<Reference<?>, TrackableComputationExt>(4, 0.75f, CONCURRENCY_LEVEL);
+				result = activeComputations;
+			}
+		}
+		return result;
+	}
+
+	private Set<TrackableComputationExt> getActiveRATs() {
+		Set<TrackableComputationExt> result = activeRATs;
+		if (result == null) {
+			synchronized (this) {
+				if (activeRATs == null)
+					activeRATs = Collections.synchronizedSet(new HashSet<TrackableComputationExt>(4));
+				result = activeRATs;
+			}
+		}
+		return result;
+	}
+
 	public void removeRAT(Computation computation) {
 		// remove from listeners
 		weakListeners.remove(computation);
-		activeRATs.remove(computation);
+		Set<TrackableComputationExt> rats = activeRATs;
+		if (rats != null)
+			rats.remove(computation);
 	}
 
 	protected void processScheduled(Set<Scheduled> scheduledList) {
+		Map<TrackableComputationExt, Scheduled> batched = batchedComputations.get();
 		for (Iterator<Scheduled> i = scheduledList.iterator(); i.hasNext();) {
 			Scheduled scheduled = i.next();
-			scheduled.runnable.update(scheduled.event);
+			if (batched == null)
+				scheduled.runnable.update(scheduled.event);
+			else {
+				// the latest event wins, but a disposal or uninjection is never replaced
+				Scheduled previous = batched.get(scheduled.runnable);
+				if (previous == null || !isStructural(previous.event))
+					batched.put(scheduled.runnable, scheduled);
+			}
+		}
+	}
+
+	private static boolean isStructural(ContextChangeEvent event) {
+		int eventType = event.getEventType();
+		return eventType == ContextChangeEvent.DISPOSE || eventType == ContextChangeEvent.UNINJECTED;
+	}
+
+	public void batch(Runnable runnable) {
+		if (batchedComputations.get() != null) {
+			// nested batches are part of the outermost one
+			runnable.run();
+			return;
 		}
+		Map<TrackableComputationExt, Scheduled> batched = new LinkedHashMap<TrackableComputationExt, Scheduled>();
+		batchedComputations.set(batched);
+		try {
+			runnable.run();
+		} finally {
+			batchedComputations.set(null);
+			// the changes are made even if the batch failed, so update the computations anyway
+			for (Iterator<Scheduled> i = batched.values().iterator(); i.hasNext();) {
+				Scheduled scheduled = i.next();
+				scheduled.runnable.update(scheduled.event);
+			}
+		}
+	}
+
+	public Map<String, Object> snapshot() {
+		List<Map<String, Object>> layers = new ArrayList<Map<String, Object>>(8);
+		Map<String, Object> layer = localValues.freeze();
+		while (true) {
+			layers.add(layer);
+			// follow the parent each layer was taken with
+			EclipseContext parent = (EclipseContext) unmaskNull(layer.get(PARENT));
+			if (parent == null)
+				break;
+			layer = parent.localValues.freeze();
+		}
+		return new ContextSnapshot(layers);
 	}
 
 	public void set(String name, Object value) {
@@ -334,25 +779,13 @@ public class EclipseContext implements IEclipseContext {
 			setParent((IEclipseContext) value);
 			return;
 		}
-		boolean containsKey = localValues.containsKey(name);
-		Object oldValue = localValues.put(name, value);
-		if (!containsKey || value != oldValue) {
+		Object oldValue = localValues.put(name, maskNull(value));
+		if (oldValue == null || value != unmaskNull(oldValue)) {
 			Set<Scheduled> scheduled = new LinkedHashSet<Scheduled>();
-			invalidate(name, ContextChangeEvent.ADDED, oldValue, value, scheduled);
+			invalidate(name, ContextChangeEvent.ADDED, unmaskNull(oldValue), value, scheduled);
 			processScheduled(scheduled);
 		}
-
-		// cleanup unused computation listeners
-		Reference<?> ref = referenceQueue.poll();
-		if (ref != null) {
-			ContextChangeEvent event = new ContextChangeEvent(this, ContextChangeEvent.UNINJECTED, nullArgs, null, null);
-			for (; ref != null; ref = referenceQueue.poll()) {
-				TrackableComputationExt obsoleteComputation = activeComputations.remove(ref);
-				if (obsoleteComputation == null)
-					continue;
-				obsoleteComputation.update(event);
-			}
-		}
+		processReaped();
 	}
 
 	public void modify(String name, Object value) {
@@ -363,13 +796,12 @@ public class EclipseContext implements IEclipseContext {
 	}
 
 	public boolean internalModify(String name, Object value, Set<Scheduled> scheduled) {
-		boolean containsKey = localValues.containsKey(name);
-		if (containsKey) {
+		if (isSetLocally(name)) {
 			if (!checkModifiable(name)) {
 				String tmp = "Variable " + name + " is not modifiable in the context " + toString(); //$NON-NLS-1$ //$NON-NLS-2$
 				throw new IllegalArgumentException(tmp);
 			}
-			Object oldValue = localValues.put(name, value);
+			Object oldValue = unmaskNull(localValues.put(name, maskNull(value)));
 			if (value != oldValue)
 				invalidate(name, ContextChangeEvent.ADDED, oldValue, value, scheduled);
 			return true;
@@ -382,18 +814,20 @@ public class EclipseContext implements IEclipseContext {
 	}
 
 	public EclipseContext getParent() {
-		return (EclipseContext) localValues.get(PARENT);
+		return (EclipseContext) unmaskNull(localValues.get(PARENT));
 	}
 
 	public void setParent(IEclipseContext parent) {
-		EclipseContext parentContext = (EclipseContext) localValues.get(PARENT);
+		EclipseContext parentContext = getParent();
 		if (parent == parentContext)
 			return; // no-op
 		if (parentContext != null)
 			parentContext.removeChild(this);
 		Set<Scheduled> scheduled = new LinkedHashSet<Scheduled>();
 		handleReparent((EclipseContext) parent, scheduled);
-		localValues.put(PARENT, parent);
+		localValues.put(PARENT, maskNull(parent));
+		// values inherited by this context and its descendants may now come from elsewhere
+		flushLookupCaches(null);
 		if (parent != null)
 			((EclipseContext) parent).addChild(this);
 		processScheduled(scheduled);
@@ -428,9 +862,9 @@ public class EclipseContext implements IEclipseContext {
 		if (modifiable == null)
 			modifiable = new ArrayList<String>(3);
 		modifiable.add(name);
-		if (localValues.containsKey(name))
-			return;
-		localValues.put(name, null);
+		// descendants no longer inherit the value of a name that is now declared here
+		if (localValues.putIfAbsent(name, NULL_VALUE) == null)
+			flushLookupCaches(name);
 	}
 
 	private boolean checkModifiable(String name) {
@@ -479,9 +913,11 @@ public class EclipseContext implements IEclipseContext {
 		}
 
 		ContextChangeEvent event = new ContextChangeEvent(this, ContextChangeEvent.ADDED, null, null, null);
-		for (Computation computation : localValueComputations.values()) {
+		for (Map.Entry<String, ValueComputation> entry : localValueComputations.toMap().entrySet()) {
+			Computation computation = entry.getValue();
 			weakListeners.remove(computation);
 			computation.handleInvalid(event, scheduled);
+			dependencyRemoved(entry.getKey());
 		}
 		localValueComputations.clear();
 	}
@@ -536,13 +972,32 @@ public class EclipseContext implements IEclipseContext {
 	}
 
 	public void addChild(EclipseContext childContext) {
-		synchronized (children) {
+		synchronized (this) {
+			if (children == null)
+				children = new ArrayList<WeakReference<EclipseContext>>(4);
 			children.add(new WeakReference<EclipseContext>(childContext));
 		}
+		Set<String> names;
+		boolean caching;
+		synchronized (childContext) {
+			if (childContext.summaryParent != null)
+				return;
+			childContext.summaryParent = this;
+			names = childContext.getSubtreeDependencies();
+			caching = childContext.isCachingSubtree();
+		}
+		// changes of the child made from now on are propagated to this context
+		for (String name : names)
+			changeDependency(childDependencies, name, 1);
+		if (caching)
+			cachingChildrenChanged(1);
 	}
 
 	public void removeChild(EclipseContext childContext) {
-		synchronized (children) {
+		detachSummary(childContext);
+		synchronized (this) {
+			if (children == null)
+				return;
 			for (Iterator<WeakReference<EclipseContext>> i = children.iterator(); i.hasNext();) {
 				EclipseContext referredContext = i.next().get();
 				if (referredContext == null) {
@@ -557,6 +1012,119 @@ public class EclipseContext implements IEclipseContext {
 		}
 	}
 
+	/**
+	 * Stops taking the dependencies of the given child into account.
+	 */
+	private void detachSummary(EclipseContext childContext) {
+		Set<String> names;
+		boolean caching;
+		synchronized (childContext) {
+			if (childContext.summaryParent != this)
+				return;
+			childContext.summaryParent = null;
+			names = childContext.getSubtreeDependencies();
+			caching = childContext.isCachingSubtree();
+		}
+		for (String name : names)
+			changeDependency(childDependencies, name, -1);
+		if (caching)
+			cachingChildrenChanged(-1);
+	}
+
+	/**
+	 * Records that this context started depending on the given name, either
+	 * by a listener or by a computed value.
+	 */
+	void dependencyAdded(String name) {
+		changeDependency(localDependencies, name, 1);
+	}
+
+	/**
+	 * Records that one reason for this context to depend on the given name
+	 * has gone away.
+	 */
+	void dependencyRemoved(String name) {
+		changeDependency(localDependencies, name, -1);
+	}
+
+	/**
+	 * Adds the delta to the count of the given name in the given summary of
+	 * this context. If the subtree started or stopped depending on the name,
+	 * the summary of the parent is changed as well, once the lock of this
+	 * context is released.
+	 */
+	private void changeDependency(CompactMap<Integer> counts, String name, int delta) {
+		EclipseContext parent;
+		int parentDelta;
+		synchronized (this) {
+			boolean dependent = isDependent(name);
+			Integer count = counts.get(name);
+			int newCount = (count == null ? 0 : count) + delta;
+			if (newCount < 0 && counts == localDependencies)
+				return; // the reason was never recorded
+			if (newCount == 0)
+				counts.remove(name);
+			else
+				counts.put(name, newCount);
+			parentDelta = delta(dependent, isDependent(name));
+			parent = summaryParent;
+		}
+		if (parentDelta != 0 && parent != null)
+			parent.changeDependency(parent.childDependencies, name, parentDelta);
+	}
+
+	private void cachingChildrenChanged(int delta) {
+		EclipseContext parent;
+		int parentDelta;
+		synchronized (this) {
+			boolean caching = isCachingSubtree();
+			cachingChildren += delta;
+			parentDelta = delta(caching, isCachingSubtree());
+			parent = summaryParent;
+		}
+		if (parentDelta != 0 && parent != null)
+			parent.cachingChildrenChanged(parentDelta);
+	}
+
+	/**
+	 * Returns the change to apply to the parent summary when a state goes
+	 * from the first to the second value.
+	 */
+	private static int delta(boolean before, boolean after) {
+		return before == after ? 0 : (after ? 1 : -1);
+	}
+
+	/**
+	 * Returns whether this context or one of its descendants depends on the
+	 * given name. A briefly negative count, see {@link #childDependencies},
+	 * also counts as a dependency.
+	 */
+	private boolean isDependent(String name) {
+		return localDependencies.containsKey(name) || childDependencies.containsKey(name);
+	}
+
+	private boolean isCachingSubtree() {
+		return lookupCache != null || cachingChildren != 0;
+	}
+
+	/**
+	 * Returns whether this context or one of its descendants needs to be
+	 * invalidated when the given name changes.
+	 */
+	private boolean isSubtreeDependent(String name) {
+		return isCachingSubtree() || isDependent(name);
+	}
+
+	/**
+	 * Returns the names this context or one of its descendants depends on.
+	 * Must be called while holding the lock of this context.
+	 */
+	private Set<String> getSubtreeDependencies() {
+		Set<String> names = new HashSet<String>(localDependencies.toMap().keySet());
+		names.addAll(childDependencies.toMap().keySet());
+		return names;
+	}
+
 	public <T> T get(Class<T> clazz) {
 		return clazz.cast(get(clazz.getName()));
 	}
@@ -569,6 +1137,29 @@ public class EclipseContext implements IEclipseContext {
 		set(clazz.getName(), value);
 	}
 
+	public <T> T get(ContextKey<T> key) {
+		String name = key.getName();
+		trackAccess(name);
+		ContextStatistics statistics = ContextStatistics.collector;
+		if (statistics != null)
+			statistics.lookup(name, lookupDepth(name));
+		return key.getType().cast(internalGet(this, name, false, null, true));
+	}
+
+	public boolean containsKey(ContextKey<?> key) {
+		String name = key.getName();
+		trackAccess(name);
+		for (EclipseContext current = this; current != null; current = current.getParent()) {
+			if (current.localValues.get(name, true) != null)
+				return true;
+		}
+		return false;
+	}
+
+	public <T> void set(ContextKey<T> key, T value) {
+		set(key.getName(), value);
+	}
+
 	public void remove(Class<?> clazz) {
 		remove(clazz.getName());
 	}
@@ -596,7 +1187,9 @@ public class EclipseContext implements IEclipseContext {
 	}
 
 	public void notifyOnDisposal(IContextDisposalListener listener) {
-		synchronized (notifyOnDisposal) {
+		synchronized (this) {
+			if (notifyOnDisposal == null)
+				notifyOnDisposal = new HashSet<IContextDisposalListener>(4);
 			notifyOnDisposal.add(listener);
 		}
 	}
@@ -607,13 +1200,33 @@ public class EclipseContext implements IEclipseContext {
 	}
 
 	public IEclipseContext getActiveLeaf() {
-		IEclipseContext activeContext = this;
-		IEclipseContext child = getActiveChild();
-		while (child != null) {
-			activeContext = child;
-			child = child.getActiveChild();
+		ActiveLeaf cached = activeLeaf;
+		if (cached == null || cached.changes != activeChildChanges.get()) {
+			// read the count first so that changes made during the walk make the result stale
+			int changes = activeChildChanges.get();
+			List<EclipseContext> chain = new ArrayList<EclipseContext>(4);
+			for (EclipseContext current = this; current != null; current = (EclipseContext) current.internalGet(current, ACTIVE_CHILD, true))
+				chain.add(current);
+			cached = new ActiveLeaf(chain.toArray(new EclipseContext[chain.size()]), changes);
+			activeLeaf = cached;
 		}
-		return activeContext;
+		// computations depend on the active child of every context on the chain
+		if (!getCalculatedComputations().isEmpty()) {
+			for (EclipseContext context : cached.chain)
+				context.trackAccess(ACTIVE_CHILD);
+		}
+		return cached.chain[cached.chain.length - 1];
+	}
+
+	/**
+	 * The active child of this context changed, which changes the active leaf
+	 * of this context and possibly of its ancestors.
+	 */
+	private void activeChildChanged() {
+		activeChildChanges.incrementAndGet();
+		// don't hold on to contexts that are no longer active
+		for (EclipseContext current = this; current != null; current = current.getParent())
+			current.activeLeaf = null;
 	}
 
 	public void activate() {
@@ -643,11 +1256,11 @@ public class EclipseContext implements IEclipseContext {
 	// This method is for debug only, do not use externally
 	public Map<String, Object> localData() {
 		Map<String, Object> result = new HashMap<String, Object>(localValues.size());
-		for (String string : localValues.keySet()) {
-			Object value = localValues.get(string);
+		for (Map.Entry<String, Object> entry : localValues.toMap().entrySet()) {
+			Object value = entry.getValue();
 			if (value instanceof IContextFunction)
 				continue;
-			result.put(string, value);
+			result.put(entry.getKey(), unmaskNull(value));
 		}
 		return result;
 	}
@@ -655,10 +1268,10 @@ public class EclipseContext implements IEclipseContext {
 	// This method is for debug only, do not use externally
 	public Map<String, Object> localContextFunction() {
 		Map<String, Object> result = new HashMap<String, Object>(localValues.size());
-		for (String string : localValues.keySet()) {
-			Object value = localValues.get(string);
+		for (Map.Entry<String, Object> entry : localValues.toMap().entrySet()) {
+			Object value = entry.getValue();
 			if (value instanceof IContextFunction)
-				result.put(string, value);
+				result.put(entry.getKey(), value);
 		}
 		return result;
 	}
@@ -666,11 +1279,8 @@ public class EclipseContext implements IEclipseContext {
 	// This method is for debug only, do not use externally
 	public Map<String, Object> cachedCachedContextFunctions() {
 		Map<String, Object> result = new HashMap<String, Object>(localValueComputations.size());
-		for (String string : localValueComputations.keySet()) {
-			ValueComputation vc = localValueComputations.get(string);
-			if (vc != null)
-				result.put(string, vc.get());
-		}
+		for (Map.Entry<String, ValueComputation> entry : localValueComputations.toMap().entrySet())
+			result.put(entry.getKey(), entry.getValue().get());
 		return result;
 	}
 
@@ -724,27 +1334,119 @@ public class EclipseContext implements IEclipseContext {
 
 	public Object getActive(final String name) {
 		final String internalName = ACTIVE_VARIABLE + name;
-		if (containsKey(internalName, true)) {
+		if (isSetLocally(internalName)) {
 			trackAccess(internalName);
 			return internalGet(this, internalName, true);
 		}
 
+		CompactMap<RunAndTrack> trackers = activeTrackers;
+		if (trackers == null) {
+			synchronized (this) {
+				if (activeTrackers == null)
+					activeTrackers = new CompactMap<RunAndTrack>();
+				trackers = activeTrackers;
+			}
+		}
 		final EclipseContext originatingContext = this;
-
-		runAndTrack(new RunAndTrack() {
+		RunAndTrack tracker = new RunAndTrack() {
 			public boolean changed(IEclipseContext context) {
 				IEclipseContext activeContext = getActiveLeaf();
 				Object result = activeContext.get(name);
 				originatingContext.set(internalName, result);
 				return true;
 			}
-		});
+		};
+		// a single tracker per name keeps the variable up to date
+		if (trackers.putIfAbsent(name, tracker) == null)
+			runAndTrack(tracker);
+		// track the variable only once it is set, so that setting it does not notify the caller
 		trackAccess(internalName);
-		return internalGet(this, internalName, true);
+		if (isSetLocally(internalName))
+			return internalGet(this, internalName, true);
+		// the tracker is being started on another thread, or the variable was removed
+		return getActiveLeaf().get(name);
+	}
+
+	/**
+	 * Sets a local value without notifying listeners. Subclasses use this to cache
+	 * values they look up.
+	 */
+	protected void putLocalValue(String name, Object value) {
+		localValues.put(name, maskNull(value));
+	}
+
+	static Object maskNull(Object value) {
+		return value == null ? NULL_VALUE : value;
+	}
+
+	static Object unmaskNull(Object value) {
+		return value == NULL_VALUE ? null : value;
+	}
+
+	/**
+	 * A weak reference to an object injected from this context. Once the object
+	 * is collected, the computation that injects it is removed by the next
+	 * modification of the context.
+	 */
+	static final private class TrackedReference extends WeakReference<Object> implements ContextReaper.Reapable {
+
+		final private EclipseContext context;
+
+		TrackedReference(Object object, EclipseContext context) {
+			super(object, ContextReaper.getQueue());
+			this.context = context;
+		}
+
+		public boolean reap() {
+			return context.reap(this);
+		}
 	}
 
 	public WeakReference<Object> trackedWeakReference(Object object) {
-		return new WeakReference<Object>(object, referenceQueue);
+		return new TrackedReference(object, this);
+	}
+
+	/**
+	 * Schedules the removal of the computation of a collected injected object.
+	 * Usually called on the reaper thread, so the computation is only updated
+	 * by {@link #processReaped()}.
+	 */
+	boolean reap(Reference<?> ref) {
+		Map<Reference<?>, TrackableComputationExt> computations = activeComputations;
+		if (computations == null || !computations.containsKey(ref))
+			return false; // disposed or uninjected already
+		Queue<Reference<?>> result = reapedReferences;
+		if (result == null) {
+			synchronized (this) {
+				if (reapedReferences == null)
+					reapedReferences = new ConcurrentLinkedQueue<Reference<?>>();
+				result = reapedReferences;
+			}
+		}
+		result.add(ref);
+		return true;
+	}
+
+	/**
+	 * Removes the computations of the collected injected objects. Called by
+	 * the operations that modify this context, as the computations may run
+	 * client code.
+	 */
+	private void processReaped() {
+		ContextReaper.reapPending();
+		Queue<Reference<?>> refs = reapedReferences;
+		if (refs == null)
+			return;
+		Reference<?> ref = refs.poll();
+		if (ref == null)
+			return;
+		ContextChangeEvent event = new ContextChangeEvent(this, ContextChangeEvent.UNINJECTED, nullArgs, null, null);
+		for (; ref != null; ref = refs.poll()) {
+			Map<Reference<?>, TrackableComputationExt> computations = activeComputations;
+			TrackableComputationExt obsoleteComputation = computations == null ? null : computations.remove(ref);
+			if (obsoleteComputation != null)
+				obsoleteComputation.update(event);
+		}
 	}
 
 	public void cleanup() {
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.core.internal.contexts;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Remembers for each name looked up in a context which ancestor context holds
+ * its value, so that repeated lookups of inherited names do not need to walk
+ * the parent chain. Entries are removed when the name is invalidated in the
+ * context, which happens whenever the name is set or removed in the context
+ * or in one of its ancestors.
+ */
+public final class LookupCache {
+
+	/**
+	 * Marks names that are not set in any ancestor.
+	 */
+	static final Object NOT_FOUND = new Object();
+
+	private final ConcurrentHashMap<String, Object> owners = new ConcurrentHashMap<String, Object>(16, 0.75f, 1);
+
+	/**
+	 * Incremented before names are removed, so that lookups that raced with
+	 * the removal do not cache what they found.
+	 */
+	private final AtomicInteger invalidations = new AtomicInteger();
+
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+
+	/**
+	 * Returns the context holding the value of the given name, {@link #NOT_FOUND}
+	 * if no ancestor holds a value, or <code>null</code> if the name is not cached.
+	 */
+	Object get(String name) {
+		return owners.get(name);
+	}
+
+	/**
+	 * Returns the stamp to pass to {@link #put(String, Object, int)}, read
+	 * before looking for the owner of a name.
+	 */
+	int stamp() {
+		return invalidations.get();
+	}
+
+	/**
+	 * Caches the owner of the given name, unless names were invalidated since
+	 * the given stamp was read.
+	 */
+	void put(String name, Object owner, int stamp) {
+		owners.put(name, owner);
+		// a removal after the put removes the entry itself, so only those
+		// before it need to be checked
+		if (invalidations.get() != stamp)
+			owners.remove(name, owner);
+	}
+
+	void remove(String name) {
+		invalidations.incrementAndGet();
+		owners.remove(name);
+	}
+
+	void clear() {
+		invalidations.incrementAndGet();
+		owners.clear();
+	}
+
+	void hit() {
+		hits.incrementAndGet();
+	}
+
+	void miss() {
+		misses.incrementAndGet();
+	}
+
+	/**
+	 * Returns the number of lookups answered by this cache.
+	 */
+	public int getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of lookups that had to walk the parent chain.
+	 */
+	public int getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Returns the number of cached names.
+	 */
+	public int size() {
+		return owners.size();
+	}
+}
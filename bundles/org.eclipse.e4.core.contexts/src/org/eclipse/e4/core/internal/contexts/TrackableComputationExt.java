@@ -12,6 +12,7 @@ package org.eclipse.e4.core.internal.contexts;
 
 import java.lang.ref.Reference;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import org.eclipse.e4.core.contexts.IEclipseContext;
 import org.eclipse.e4.core.contexts.RunAndTrack;
 import org.eclipse.e4.core.internal.contexts.EclipseContext.Scheduled;
@@ -23,9 +24,32 @@ public class TrackableComputationExt extends Computation {
 
 	private ContextChangeEvent cachedEvent;
 
+	/**
+	 * The executor that runs the updates caused by changes, or <code>null</code>
+	 * to run them on the thread that made the change.
+	 */
+	final private Executor executor;
+
+	/**
+	 * The latest change not yet processed by the executor, or <code>null</code>
+	 * if no update is scheduled. Guarded by this computation.
+	 */
+	private ContextChangeEvent pendingEvent;
+
+	/**
+	 * Whether this computation no longer tracks changes, so that scheduled
+	 * updates must be dropped.
+	 */
+	private volatile boolean removed = false;
+
 	public TrackableComputationExt(RunAndTrack runnable, IEclipseContext originatingContext) {
+		this(runnable, originatingContext, null);
+	}
+
+	public TrackableComputationExt(RunAndTrack runnable, IEclipseContext originatingContext, Executor executor) {
 		this.runnable = runnable;
 		this.originatingContext = originatingContext;
+		this.executor = executor;
 		init();
 	}
 
@@ -75,6 +99,41 @@ public class TrackableComputationExt extends Computation {
 	}
 
 	public boolean update(ContextChangeEvent event) {
+		if (removed)
+			return false; // disposed or uninjected since the update was scheduled
+		int eventType = event.getEventType();
+		if (executor != null && (eventType == ContextChangeEvent.ADDED || eventType == ContextChangeEvent.REMOVED || eventType == ContextChangeEvent.RECALC)) {
+			schedule(event);
+			return true;
+		}
+		return updateNow(event);
+	}
+
+	/**
+	 * Hands the given change to the executor. Changes that arrive before the
+	 * executor gets to the update are coalesced into a single update.
+	 */
+	private void schedule(ContextChangeEvent event) {
+		synchronized (this) {
+			boolean scheduled = pendingEvent != null;
+			pendingEvent = event;
+			if (scheduled)
+				return;
+		}
+		executor.execute(new Runnable() {
+			public void run() {
+				ContextChangeEvent latestEvent;
+				synchronized (TrackableComputationExt.this) {
+					latestEvent = pendingEvent;
+					pendingEvent = null;
+				}
+				if (latestEvent != null && !removed)
+					updateNow(latestEvent);
+			}
+		});
+	}
+
+	private boolean updateNow(ContextChangeEvent event) {
 		// is this a structural event?
 		// structural changes: INITIAL, DISPOSE, UNINJECTED are always processed right away
 		int eventType = event.getEventType();
@@ -87,6 +146,9 @@ public class TrackableComputationExt extends Computation {
 			}
 		}
 
+		ContextStatistics statistics = ContextStatistics.collector;
+		if (statistics != null && (cachedEvent != null || eventType != ContextChangeEvent.UPDATE))
+			statistics.ranAndTracked(runnable);
 		((EclipseContext) originatingContext).pushComputation(this);
 		boolean result = true;
 		try {
@@ -117,11 +179,13 @@ public class TrackableComputationExt extends Computation {
 
 		if (eventType == ContextChangeEvent.DISPOSE) {
 			if (originatingContext.equals(eventsContext)) {
+				removed = true;
 				((EclipseContext) originatingContext).removeRAT(this);
 				return false;
 			}
 		}
 		if (!result) {
+			removed = true;
 			((EclipseContext) originatingContext).removeRAT(this);
 		}
 		return result;
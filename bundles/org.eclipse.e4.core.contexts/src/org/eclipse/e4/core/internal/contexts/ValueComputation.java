@@ -57,9 +57,13 @@ public class ValueComputation extends Computation {
 
 		originatingContext.pushComputation(this);
 		computing = true;
+		ContextStatistics statistics = ContextStatistics.collector;
+		long start = statistics == null ? 0 : System.nanoTime();
 		try {
 			cachedValue = function.compute(originatingContext, name);
 		} finally {
+			if (statistics != null)
+				statistics.computed(name, System.nanoTime() - start);
 			computing = false;
 			originatingContext.popComputation(this);
 		}
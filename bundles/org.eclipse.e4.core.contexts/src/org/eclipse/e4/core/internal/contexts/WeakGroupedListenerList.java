@@ -12,27 +12,61 @@
 package org.eclipse.e4.core.internal.contexts;
 
 import java.lang.ref.WeakReference;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 /**
  * Listeners are held wrapped in weak references and are removed if no other [strong] reference 
  * exists.
+ * <p>
+ * Each computation is held by a single reference that also records the names
+ * the computation is listening to, so that a computation can be removed without
+ * visiting every name. References cleared by the garbage collector are removed
+ * by the {@link ContextReaper} as they are enqueued, rather than by scanning
+ * all names.
+ * </p>
+ * <p>
+ * The owning context, if any, is told when the first listener of a name is
+ * added and when the last one is removed.
+ * </p>
  */
 public class WeakGroupedListenerList {
 
-	public static class WeakComputationReference extends WeakReference<Computation> {
+	public static class WeakComputationReference extends WeakReference<Computation> implements ContextReaper.Reapable {
 
 		final private int hashCode;
 
+		/**
+		 * The names this computation listens to, only maintained for the
+		 * references held by the list.
+		 */
+		final Set<String> names;
+
+		/**
+		 * The list holding this reference, only set for the references held by
+		 * the list.
+		 */
+		final private WeakGroupedListenerList list;
+
 		public WeakComputationReference(Computation computation) {
 			super(computation);
 			hashCode = computation.hashCode();
+			names = null;
+			list = null;
+		}
+
+		WeakComputationReference(Computation computation, WeakGroupedListenerList list) {
+			super(computation, ContextReaper.getQueue());
+			hashCode = computation.hashCode();
+			names = new HashSet<String>(4);
+			this.list = list;
+		}
+
+		public boolean reap() {
+			return list.prune(this);
 		}
 
 		public int hashCode() {
@@ -40,41 +74,102 @@ public class WeakGroupedListenerList {
 		}
 
 		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
 			if (obj == null)
 				return false;
 			if (!WeakComputationReference.class.equals(obj.getClass()))
 				return super.equals(obj);
 			Computation computation = get();
 			Computation otherComputation = ((WeakComputationReference) obj).get();
-			if (computation == null && otherComputation == null)
-				return true;
+			// cleared references are only equal to themselves
 			if (computation == null || otherComputation == null)
 				return false;
 			return computation.equals(otherComputation);
 		}
 	}
 
-	private Map<String, HashSet<WeakComputationReference>> listeners = new HashMap<String, HashSet<WeakComputationReference>>(10, 0.8f);
+	/**
+	 * The references listening to one name.
+	 */
+	static private class Group {
+		final HashSet<WeakComputationReference> references = new HashSet<WeakComputationReference>(30, 0.75f);
+		// the references as an array, or null if the set has changed since it was last computed
+		WeakComputationReference[] snapshot;
+	}
+
+	final static private WeakComputationReference[] noReferences = new WeakComputationReference[0];
+
+	// the maps are only created once the first listener is added
+
+	private Map<String, Group> listeners;
+
+	/**
+	 * The reference held for each computation, keyed by itself.
+	 */
+	private Map<WeakComputationReference, WeakComputationReference> references;
+
+	final private EclipseContext owner;
+
+	public WeakGroupedListenerList() {
+		this(null);
+	}
+
+	public WeakGroupedListenerList(EclipseContext owner) {
+		this.owner = owner;
+	}
 
 	synchronized public void add(String groupName, Computation computation) {
-		HashSet<WeakComputationReference> nameListeners = listeners.get(groupName);
-		if (nameListeners == null) {
-			nameListeners = new HashSet<WeakComputationReference>(30, 0.75f);
-			nameListeners.add(new WeakComputationReference(computation));
-			listeners.put(groupName, nameListeners);
+		if (references == null) {
+			listeners = new HashMap<String, Group>(10, 0.8f);
+			references = new HashMap<WeakComputationReference, WeakComputationReference>(10, 0.8f);
+		}
+		WeakComputationReference ref = references.get(new WeakComputationReference(computation));
+		if (ref == null) {
+			ref = new WeakComputationReference(computation, this);
+			references.put(ref, ref);
+		}
+		if (!ref.names.add(groupName))
+			return; // already listening
+		Group group = listeners.get(groupName);
+		if (group == null) {
+			group = new Group();
+			listeners.put(groupName, group);
+			if (owner != null)
+				owner.dependencyAdded(groupName);
 		}
-		nameListeners.add(new WeakComputationReference(computation));
+		group.references.add(ref);
+		group.snapshot = null;
 	}
 
 	synchronized public void remove(Computation computation) {
-		WeakComputationReference ref = new WeakComputationReference(computation);
-		Collection<HashSet<WeakComputationReference>> allListeners = listeners.values();
-		for (HashSet<WeakComputationReference> group : allListeners) {
-			group.remove(ref);
+		if (references == null)
+			return;
+		WeakComputationReference ref = references.remove(new WeakComputationReference(computation));
+		if (ref != null)
+			detach(ref);
+	}
+
+	/**
+	 * Removes the given reference from the groups of all names it listens to.
+	 */
+	private void detach(WeakComputationReference ref) {
+		for (String name : ref.names) {
+			Group group = listeners.get(name);
+			if (group == null || !group.references.remove(ref))
+				continue;
+			if (group.references.isEmpty()) {
+				listeners.remove(name);
+				if (owner != null)
+					owner.dependencyRemoved(name);
+			} else
+				group.snapshot = null;
 		}
 	}
 
 	synchronized public Set<String> getNames() {
+		if (listeners == null)
+			return new HashSet<String>(0);
 		Set<String> tmp = listeners.keySet(); // clone internal name list
 		Set<String> usedNames = new HashSet<String>(tmp.size());
 		usedNames.addAll(tmp);
@@ -82,61 +177,91 @@ public class WeakGroupedListenerList {
 	}
 
 	synchronized public void clear() {
-		listeners.clear();
+		if (listeners == null)
+			return;
+		if (owner != null) {
+			for (String name : listeners.keySet())
+				owner.dependencyRemoved(name);
+		}
+		listeners = null;
+		references = null;
 	}
 
 	synchronized public Set<Computation> getListeners() {
-		Collection<HashSet<WeakComputationReference>> collection = listeners.values();
-		Set<Computation> result = new HashSet<Computation>();
-		for (HashSet<WeakComputationReference> set : collection) {
-			for (Iterator<WeakComputationReference> i = set.iterator(); i.hasNext();) {
-				WeakComputationReference ref = i.next();
-				Computation computation = ref.get();
-				if (computation == null || !computation.isValid()) {
-					i.remove(); // do a clean-up while we are here
-				} else
-					result.add(computation);
-			}
+		if (references == null)
+			return new HashSet<Computation>(0);
+		Set<Computation> result = new HashSet<Computation>(references.size());
+		for (Iterator<WeakComputationReference> i = references.keySet().iterator(); i.hasNext();) {
+			WeakComputationReference ref = i.next();
+			Computation computation = ref.get();
+			if (computation == null || !computation.isValid()) {
+				i.remove(); // do a clean-up while we are here
+				detach(ref);
+			} else
+				result.add(computation);
 		}
 		return result;
 	}
 
+	/**
+	 * Returns the references to the computations listening to the given name.
+	 * The array is shared until the listeners of the name change and must not
+	 * be modified. Its references may have been cleared, and the computations
+	 * may no longer be valid.
+	 * 
+	 * @param groupName the name
+	 * @return the references, possibly empty
+	 */
+	synchronized public WeakComputationReference[] getReferences(String groupName) {
+		if (references == null)
+			return noReferences;
+		Group group = listeners.get(groupName);
+		if (group == null)
+			return noReferences;
+		if (group.snapshot == null)
+			group.snapshot = group.references.toArray(new WeakComputationReference[group.references.size()]);
+		return group.snapshot;
+	}
+
 	synchronized public Set<Computation> getListeners(String groupName) {
-		HashSet<WeakComputationReference> tmp = listeners.get(groupName);
-		if (tmp == null)
+		WeakComputationReference[] refs = getReferences(groupName);
+		if (refs == noReferences)
 			return null;
-		Set<Computation> result = new HashSet<Computation>(tmp.size());
-
-		for (Iterator<WeakComputationReference> i = tmp.iterator(); i.hasNext();) {
-			WeakComputationReference ref = i.next();
+		Set<Computation> result = new HashSet<Computation>(refs.length);
+		for (WeakComputationReference ref : refs) {
 			Computation computation = ref.get();
-			if (computation == null || !computation.isValid()) {
-				i.remove(); // do a clean-up while we are here
-			} else
+			if (computation == null || !computation.isValid())
+				prune(ref);
+			else
 				result.add(computation);
 		}
 		return result;
 	}
 
+	/**
+	 * Removes a reference whose computation has been collected or is no longer valid.
+	 * 
+	 * @return <code>true</code> if the reference was removed, <code>false</code> if
+	 * it had already been removed
+	 */
+	synchronized public boolean prune(WeakComputationReference ref) {
+		// the computation may have been removed before it was collected
+		if (references == null || references.get(ref) != ref)
+			return false;
+		references.remove(ref);
+		detach(ref);
+		return true;
+	}
+
 	synchronized public void cleanup() {
-		boolean cleanGroups = false;
-		for (HashSet<WeakComputationReference> set : listeners.values()) {
-			for (Iterator<WeakComputationReference> i = set.iterator(); i.hasNext();) {
-				WeakComputationReference ref = i.next();
-				Computation computation = ref.get();
-				if (computation == null || !computation.isValid())
-					i.remove();
-			}
-			if (set.isEmpty())
-				cleanGroups = true;
-		}
-		if (cleanGroups) {
-			Set<Entry<String, HashSet<WeakComputationReference>>> entries = listeners.entrySet();
-			for (Iterator<Entry<String, HashSet<WeakComputationReference>>> i = entries.iterator(); i.hasNext();) {
-				Entry<String, HashSet<WeakComputationReference>> entry = i.next();
-				HashSet<WeakComputationReference> value = entry.getValue();
-				if (value == null || value.isEmpty())
-					i.remove();
+		if (references == null)
+			return;
+		for (Iterator<WeakComputationReference> i = references.keySet().iterator(); i.hasNext();) {
+			WeakComputationReference ref = i.next();
+			Computation computation = ref.get();
+			if (computation == null || !computation.isValid()) {
+				i.remove();
+				detach(ref);
 			}
 		}
 	}
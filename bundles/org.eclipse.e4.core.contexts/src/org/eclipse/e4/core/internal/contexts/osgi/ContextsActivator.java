@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.eclipse.e4.core.internal.contexts.osgi;
 
+import org.eclipse.e4.core.internal.contexts.ContextReaper;
 import org.eclipse.osgi.service.debug.DebugOptions;
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
@@ -31,9 +32,11 @@ public class ContextsActivator implements BundleActivator {
 
 	public void start(BundleContext context) throws Exception {
 		bundleContext = context;
+		ContextReaper.startReaper();
 	}
 
 	public void stop(BundleContext context) throws Exception {
+		ContextReaper.stopReaper();
 		if (debugTracker != null) {
 			debugTracker.close();
 			debugTracker = null;
@@ -46,6 +49,8 @@ public class ContextsActivator implements BundleActivator {
 	}
 
 	public static boolean getBooleanDebugOption(String option, boolean defaultValue) {
+		if (getDefault() == null) // not started, e.g. outside of OSGi
+			return defaultValue;
 		BundleContext myBundleContext = getDefault().bundleContext;
 		if (myBundleContext == null)
 			return defaultValue;
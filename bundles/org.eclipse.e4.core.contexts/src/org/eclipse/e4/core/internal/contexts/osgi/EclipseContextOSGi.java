@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011 IBM Corporation and others.
+ * Copyright (c) 2011, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,11 +11,14 @@
 
 package org.eclipse.e4.core.internal.contexts.osgi;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.eclipse.e4.core.contexts.IContextFunction;
 import org.eclipse.e4.core.internal.contexts.EclipseContext;
+import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleEvent;
 import org.osgi.framework.Constants;
@@ -27,28 +30,122 @@ import org.osgi.framework.SynchronousBundleListener;
 
 public class EclipseContextOSGi extends EclipseContext implements ServiceListener, SynchronousBundleListener {
 
+	/**
+	 * The services registered under a name. The context holds the service of
+	 * the highest ranked one. Guarded by the entry.
+	 */
+	static class ServiceEntry {
+
+		final String name;
+
+		final List<ServiceReference<?>> references = new ArrayList<ServiceReference<?>>(1);
+
+		/**
+		 * The highest ranked reference, or <code>null</code> if there are no services.
+		 */
+		ServiceReference<?> best;
+
+		/**
+		 * The reference the service was got from. It lags behind {@link #best}
+		 * while the service of a new best reference is being got.
+		 */
+		ServiceReference<?> serviceReference;
+
+		/**
+		 * The service got from the framework, or <code>null</code> if there is
+		 * none.
+		 */
+		Object service;
+
+		/**
+		 * Whether the context was asked for this name, so that changes must be
+		 * passed on to the context.
+		 */
+		boolean published;
+
+		/**
+		 * Held while the service is passed on to the context and the replaced
+		 * service is released, so that these happen in the order of the changes.
+		 * Not the entry itself, as the context notifies its listeners meanwhile.
+		 */
+		final Object publishLock = new Object();
+
+		ServiceEntry(String name) {
+			this.name = name;
+		}
+	}
+
+	/**
+	 * The services registered by a bundle while it starts, added to the context
+	 * together once the bundle is done starting.
+	 */
+	static class Batch {
+
+		private final Set<ServiceEntry> additions = new LinkedHashSet<ServiceEntry>();
+
+		private boolean closed;
+
+		/**
+		 * Adds the given entry to this batch, unless the batch has been closed
+		 * and the entry must be published at once.
+		 */
+		synchronized boolean add(ServiceEntry entry) {
+			if (closed)
+				return false;
+			additions.add(entry);
+			return true;
+		}
+
+		synchronized Set<ServiceEntry> close() {
+			closed = true;
+			return additions;
+		}
+	}
+
 	final private BundleContext bundleContext;
 
-	private Map<String, ServiceReference<?>> refs = Collections.synchronizedMap(new HashMap<String, ServiceReference<?>>());
+	/**
+	 * The services of the names looked up in this context and of all context
+	 * functions, keyed by name. Service events for other names are ignored after
+	 * a single probe.
+	 */
+	final private ConcurrentHashMap<String, ServiceEntry> entries = new ConcurrentHashMap<String, ServiceEntry>();
+
+	/**
+	 * Services registered while a bundle starts mostly come in bulk, so they are
+	 * added to the context together, keyed by the id of the bundle. Removals and
+	 * replacements are applied at once, as the old service is released right after.
+	 */
+	final private ConcurrentHashMap<Long, Batch> batches = new ConcurrentHashMap<Long, Batch>();
 
 	public EclipseContextOSGi(BundleContext bundleContext) {
 		super(null);
 		this.bundleContext = bundleContext;
+		// listen before looking at the existing services so that no change is missed
+		this.bundleContext.addServiceListener(this);
+		this.bundleContext.addBundleListener(this);
 		try {
 			// process all IContextFunction services already registered
 			ServiceReference<?>[] existing = bundleContext.getServiceReferences(IContextFunction.SERVICE_NAME, null);
 			if (existing != null) {
 				for (int i = 0; i < existing.length; i++) {
 					String name = (String) existing[i].getProperty(IContextFunction.SERVICE_CONTEXT_KEY);
-					refs.put(name, existing[i]);
-					localValues.put(name, bundleContext.getService(existing[i]));
+					if (name != null)
+						serviceChanged(getEntry(name), existing[i], ServiceEvent.REGISTERED);
 				}
 			}
 		} catch (InvalidSyntaxException e) {
 			// should never happen
 		}
-		this.bundleContext.addServiceListener(this);
-		this.bundleContext.addBundleListener(this);
+		for (ServiceEntry entry : entries.values()) {
+			Object service;
+			synchronized (entry) {
+				entry.published = true;
+				service = entry.service;
+			}
+			if (service != null)
+				putLocalValue(entry.name, service);
+		}
 	}
 
 	public boolean containsKey(String name, boolean localOnly) {
@@ -61,73 +158,204 @@ public class EclipseContextOSGi extends EclipseContext implements ServiceListene
 	public Object lookup(String name, EclipseContext originatingContext) {
 		if (name == null)
 			return null;
-		if (refs.containsKey(name)) { // retrieve service again 
-			// This could be reached, for instance, if previously stored service value is overridden or removed from the context.
-			ServiceReference<?> ref = refs.get(name);
-			if (ref == null)
-				return null;
-			Object service = bundleContext.getService(ref);
-			bundleContext.ungetService(ref);
-			localValues.put(name, service);
-			return service;
-		}
-		ServiceReference<?> ref = bundleContext.getServiceReference(name);
-		if (ref == null) {
-			refs.put(name, null);
-			return null;
+		// This could also be reached if previously stored service value is overridden or removed from the context.
+		ServiceEntry entry = entries.get(name);
+		if (entry == null) {
+			entry = getEntry(name);
+			findServices(entry);
+		}
+		Object service;
+		synchronized (entry.publishLock) {
+			synchronized (entry) {
+				entry.published = true;
+				service = entry.service;
+			}
+			if (service != null)
+				putLocalValue(name, service);
 		}
-		refs.put(name, ref);
-		Object service = bundleContext.getService(ref);
-		localValues.put(name, service);
 		return service;
 	}
 
+	private ServiceEntry getEntry(String name) {
+		ServiceEntry entry = entries.get(name);
+		if (entry == null) {
+			ServiceEntry newEntry = new ServiceEntry(name);
+			entry = entries.putIfAbsent(name, newEntry);
+			if (entry == null)
+				entry = newEntry;
+		}
+		return entry;
+	}
+
 	/**
-	 * Returns the service name for a service reference
+	 * Adds the services already registered under the name of the given entry.
 	 */
-	private String serviceName(ServiceReference<?> reference) {
-		return ((String[]) reference.getProperty(Constants.OBJECTCLASS))[0];
+	private void findServices(ServiceEntry entry) {
+		ServiceReference<?>[] existing = null;
+		try {
+			existing = bundleContext.getServiceReferences(entry.name, null);
+		} catch (InvalidSyntaxException e) {
+			// should never happen
+		}
+		if (existing == null)
+			return;
+		for (int i = 0; i < existing.length; i++)
+			serviceChanged(entry, existing[i], ServiceEvent.REGISTERED);
 	}
 
 	public void dispose() {
-		for (ServiceReference<?> ref : refs.values()) {
-			if (ref != null)
-				bundleContext.ungetService(ref);
-		}
-		refs.clear();
 		bundleContext.removeServiceListener(this);
 		bundleContext.removeBundleListener(this);
+		for (ServiceEntry entry : entries.values()) {
+			synchronized (entry) {
+				if (entry.service != null)
+					bundleContext.ungetService(entry.serviceReference);
+				entry.references.clear();
+				entry.best = null;
+				entry.serviceReference = null;
+				entry.service = null;
+			}
+		}
+		entries.clear();
+		batches.clear();
 		super.dispose();
 	}
 
 	public void serviceChanged(ServiceEvent event) {
 		ServiceReference<?> ref = event.getServiceReference();
-		String name = serviceName(ref);
-		if (IContextFunction.SERVICE_NAME.equals(name)) // those keep associated names
-			name = (String) ref.getProperty(IContextFunction.SERVICE_CONTEXT_KEY);
-
-		if (refs.containsKey(name)) {
-			ServiceReference<?> oldRef = refs.get(name);
-			if (oldRef != null)
-				bundleContext.ungetService(oldRef);
-			if (event.getType() == ServiceEvent.UNREGISTERING) {
-				refs.put(name, null);
-				remove(name);
-			} else {
-				Object service = bundleContext.getService(ref);
-				refs.put(name, ref);
-				set(name, service);
+		String[] names = (String[]) ref.getProperty(Constants.OBJECTCLASS);
+		for (int i = 0; i < names.length; i++) {
+			ServiceEntry entry;
+			if (IContextFunction.SERVICE_NAME.equals(names[i])) { // those keep associated names
+				String name = (String) ref.getProperty(IContextFunction.SERVICE_CONTEXT_KEY);
+				entry = name == null ? null : getEntry(name);
+			} else
+				entry = entries.get(names[i]);
+			if (entry != null)
+				serviceChanged(entry, ref, event.getType());
+		}
+	}
+
+	/**
+	 * Updates the given entry for a change of the given service, and updates
+	 * the context if the highest ranked service changed. The old service is
+	 * only released once the context no longer hands it out.
+	 */
+	private void serviceChanged(ServiceEntry entry, ServiceReference<?> ref, int eventType) {
+		ServiceReference<?> best = null;
+		synchronized (entry) {
+			if (eventType == ServiceEvent.UNREGISTERING || eventType == ServiceEvent.MODIFIED_ENDMATCH)
+				entry.references.remove(ref);
+			else if (!entry.references.contains(ref))
+				entry.references.add(ref);
+			for (ServiceReference<?> candidate : entry.references) {
+				if (best == null || candidate.compareTo(best) > 0)
+					best = candidate;
+			}
+			if (best == null ? entry.best == null : best.equals(entry.best))
+				return;
+			entry.best = best;
+		}
+		// the framework may call out to a service factory, so not under the lock
+		Object service = best == null ? null : bundleContext.getService(best);
+		ServiceReference<?> oldReference;
+		boolean published;
+		synchronized (entry) {
+			if (best == null ? entry.best != null : !best.equals(entry.best)) {
+				// a later change took over while the service was got
+				if (service != null)
+					bundleContext.ungetService(best);
+				return;
+			}
+			oldReference = entry.service == null ? null : entry.serviceReference;
+			entry.serviceReference = service == null ? null : best;
+			entry.service = service;
+			published = entry.published;
+		}
+		if (oldReference == null) {
+			if (!published)
+				return;
+			// added with the other services of the bundle once it has started
+			if (service != null && defer(entry, best))
+				return;
+		}
+		publish(entry, oldReference);
+	}
+
+	/**
+	 * Passes the current service of the given entry on to the context if it
+	 * was asked for it, then releases the service of the given reference, if
+	 * any. As the current service is passed on rather than the one of a given
+	 * change, a thread overtaken by a later change cannot put back a service
+	 * that has been released.
+	 */
+	private void publish(ServiceEntry entry, ServiceReference<?> oldReference) {
+		synchronized (entry.publishLock) {
+			Object service;
+			boolean published;
+			synchronized (entry) {
+				service = entry.service;
+				published = entry.published;
 			}
+			if (published)
+				update(entry.name, service);
+			if (oldReference != null)
+				bundleContext.ungetService(oldReference);
 		}
 	}
 
+	/**
+	 * Adds the given entry to the batch of the bundle that registered the given
+	 * service, if the bundle is starting.
+	 */
+	private boolean defer(ServiceEntry entry, ServiceReference<?> ref) {
+		Bundle bundle = ref.getBundle();
+		if (bundle == null)
+			return false; // already unregistered
+		Batch batch = batches.get(Long.valueOf(bundle.getBundleId()));
+		return batch != null && batch.add(entry);
+	}
+
+	void update(String name, Object service) {
+		if (service == null)
+			remove(name);
+		else
+			set(name, service);
+	}
+
+	/**
+	 * Adds the current services of the given entries to the context.
+	 */
+	void add(Set<ServiceEntry> additions) {
+		for (ServiceEntry entry : additions)
+			publish(entry, null);
+	}
+
 	public void bundleChanged(BundleEvent event) {
 		// In case OSGi context has not being properly disposed by the application,
-		// OSGi framework shutdown will trigged uninjection of all consumed OSGi 
+		// OSGi framework shutdown will trigged uninjection of all consumed OSGi
 		// service. To avoid this, we detect framework shutdown and release services.
-		if (event.getType() != BundleEvent.STOPPING)
-			return;
-		if (event.getBundle().getBundleId() == 0)
+		int eventType = event.getType();
+		Long id = Long.valueOf(event.getBundle().getBundleId());
+		if (eventType == BundleEvent.STOPPING && id.longValue() == 0) {
 			dispose();
+			return;
+		}
+		if (eventType == BundleEvent.STARTING) {
+			batches.putIfAbsent(id, new Batch());
+			return;
+		}
+		// any other event ends the start, including a failed start
+		Batch batch = batches.remove(id);
+		if (batch == null)
+			return;
+		final Set<ServiceEntry> additions = batch.close();
+		if (additions.isEmpty())
+			return;
+		batch(new Runnable() {
+			public void run() {
+				add(additions);
+			}
+		});
 	}
 }
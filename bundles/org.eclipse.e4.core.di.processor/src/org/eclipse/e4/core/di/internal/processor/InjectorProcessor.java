@@ -0,0 +1,528 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.core.di.internal.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates an injector for each class with members annotated with
+ * <code>javax.inject.Inject</code>, <code>javax.annotation.PostConstruct</code>
+ * or <code>javax.annotation.PreDestroy</code>. The generated injectors extend
+ * <code>org.eclipse.e4.core.di.GeneratedInjector</code>; they list the injected
+ * members and describe their qualifiers so that the injector does not need to
+ * look for them and read their annotations, and access them without reflection.
+ * A marker class is also generated in each package that has generated injectors.
+ * <p>
+ * No injector is generated for classes that the generated code could not
+ * refer to, such as private or inner classes; those are injected with
+ * reflection.
+ * </p>
+ */
+@SupportedAnnotationTypes({InjectorProcessor.INJECT, InjectorProcessor.POST_CONSTRUCT, InjectorProcessor.PRE_DESTROY})
+public class InjectorProcessor extends AbstractProcessor {
+
+	static final String INJECT = "javax.inject.Inject"; //$NON-NLS-1$
+	static final String POST_CONSTRUCT = "javax.annotation.PostConstruct"; //$NON-NLS-1$
+	static final String PRE_DESTROY = "javax.annotation.PreDestroy"; //$NON-NLS-1$
+	static final String NAMED = "javax.inject.Named"; //$NON-NLS-1$
+	static final String QUALIFIER = "javax.inject.Qualifier"; //$NON-NLS-1$
+	static final String OPTIONAL = "org.eclipse.e4.core.di.annotations.Optional"; //$NON-NLS-1$
+	static final String GROUP_UPDATES = "org.eclipse.e4.core.di.annotations.GroupUpdates"; //$NON-NLS-1$
+
+	// must match org.eclipse.e4.core.di.GeneratedInjector, which this processor does not depend on
+	static final String GENERATED_INJECTOR = "org.eclipse.e4.core.di.GeneratedInjector"; //$NON-NLS-1$
+	static final String SUFFIX = "_Injector"; //$NON-NLS-1$
+	static final String PACKAGE_MARKER = "package" + SUFFIX; //$NON-NLS-1$
+	static final String INVOCATION_TARGET_EXCEPTION = "java.lang.reflect.InvocationTargetException"; //$NON-NLS-1$
+
+	/**
+	 * The packages whose marker has already been generated.
+	 */
+	private final Set<String> markedPackages = new HashSet<String>();
+
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		if (processingEnv.getElementUtils().getTypeElement(GENERATED_INJECTOR) == null)
+			return false; // not compiled against the injector
+		Set<TypeElement> types = new LinkedHashSet<TypeElement>();
+		for (TypeElement annotation : annotations) {
+			for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+				Element enclosing = element.getEnclosingElement();
+				if (enclosing instanceof TypeElement)
+					types.add((TypeElement) enclosing);
+			}
+		}
+		for (TypeElement type : types) {
+			if (!canGenerate(type))
+				continue;
+			generate(type);
+			mark(processingEnv.getElementUtils().getPackageOf(type), type);
+		}
+		return false; // the annotations are still used at runtime
+	}
+
+	/**
+	 * Whether the generated injector can refer to the given class and to the
+	 * types of all its injected members.
+	 */
+	private boolean canGenerate(TypeElement type) {
+		if (type.getKind() != ElementKind.CLASS)
+			return false;
+		PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+		for (Element current = type; current instanceof TypeElement; current = current.getEnclosingElement()) {
+			TypeElement currentType = (TypeElement) current;
+			if (currentType.getNestingKind() == NestingKind.LOCAL || currentType.getNestingKind() == NestingKind.ANONYMOUS)
+				return false;
+			if (currentType.getModifiers().contains(Modifier.PRIVATE))
+				return false;
+			// inner classes need an enclosing instance to be created
+			if (currentType.getNestingKind() == NestingKind.MEMBER && !currentType.getModifiers().contains(Modifier.STATIC))
+				return false;
+		}
+		for (VariableElement field : getFields(type)) {
+			if (!isAccessible(field.asType(), pkg))
+				return false;
+		}
+		List<ExecutableElement> executables = new ArrayList<ExecutableElement>(getMethods(type));
+		executables.addAll(getConstructors(type));
+		for (ExecutableElement executable : executables) {
+			for (VariableElement parameter : executable.getParameters()) {
+				if (!isAccessible(parameter.asType(), pkg))
+					return false;
+			}
+			if (!isAccessible(executable.getReturnType(), pkg))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Whether the erasure of the given type can be named from the given package.
+	 */
+	private boolean isAccessible(TypeMirror type, PackageElement pkg) {
+		TypeMirror erasure = processingEnv.getTypeUtils().erasure(type);
+		if (erasure.getKind() == TypeKind.ARRAY)
+			return isAccessible(((ArrayType) erasure).getComponentType(), pkg);
+		if (erasure.getKind() != TypeKind.DECLARED)
+			return true; // primitive types and void
+		Element element = ((DeclaredType) erasure).asElement();
+		for (; element instanceof TypeElement; element = element.getEnclosingElement()) {
+			Set<Modifier> modifiers = element.getModifiers();
+			if (modifiers.contains(Modifier.PRIVATE))
+				return false;
+			if (!modifiers.contains(Modifier.PUBLIC) && !pkg.equals(processingEnv.getElementUtils().getPackageOf(element)))
+				return false;
+		}
+		return true;
+	}
+
+	private List<VariableElement> getFields(TypeElement type) {
+		List<VariableElement> result = new ArrayList<VariableElement>();
+		for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+			if (isAnnotated(field, INJECT))
+				result.add(field);
+		}
+		return result;
+	}
+
+	private List<ExecutableElement> getMethods(TypeElement type) {
+		List<ExecutableElement> result = new ArrayList<ExecutableElement>();
+		for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+			if (isAnnotated(method, INJECT) || isAnnotated(method, POST_CONSTRUCT) || isAnnotated(method, PRE_DESTROY))
+				result.add(method);
+		}
+		return result;
+	}
+
+	private List<ExecutableElement> getConstructors(TypeElement type) {
+		List<ExecutableElement> result = new ArrayList<ExecutableElement>();
+		for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+			if (isAnnotated(constructor, INJECT) || constructor.getParameters().isEmpty())
+				result.add(constructor);
+		}
+		return result;
+	}
+
+	private boolean isAnnotated(Element element, String annotation) {
+		return getAnnotation(element, annotation) != null;
+	}
+
+	private AnnotationMirror getAnnotation(Element element, String annotation) {
+		for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+			if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotation))
+				return mirror;
+		}
+		return null;
+	}
+
+	private void generate(TypeElement type) {
+		String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+		String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+		String injectorName = binaryName.substring(packageName.length() == 0 ? 0 : packageName.length() + 1) + SUFFIX;
+		PrintWriter writer;
+		try {
+			writer = new PrintWriter(processingEnv.getFiler().createSourceFile(binaryName + SUFFIX, type).openWriter());
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Unable to generate the injector: " + e.getMessage(), type); //$NON-NLS-1$
+			return;
+		}
+		try {
+			writeInjector(writer, type, packageName, injectorName);
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Generates the marker of the given package, so that the injector looks
+	 * for the generated injectors of its classes.
+	 */
+	private void mark(PackageElement pkg, TypeElement type) {
+		String packageName = pkg.getQualifiedName().toString();
+		if (!markedPackages.add(packageName))
+			return;
+		PrintWriter writer;
+		try {
+			String markerName = packageName.length() == 0 ? PACKAGE_MARKER : packageName + "." + PACKAGE_MARKER; //$NON-NLS-1$
+			writer = new PrintWriter(processingEnv.getFiler().createSourceFile(markerName, pkg, type).openWriter());
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Unable to generate the package marker: " + e.getMessage(), type); //$NON-NLS-1$
+			return;
+		}
+		try {
+			if (packageName.length() != 0)
+				writer.println("package " + packageName + ";"); //$NON-NLS-1$ //$NON-NLS-2$
+			writer.println();
+			writer.println("/**"); //$NON-NLS-1$
+			writer.println(" * Generated by " + getClass().getName() + ", do not edit."); //$NON-NLS-1$ //$NON-NLS-2$
+			writer.println(" * Marks a package that has generated injectors."); //$NON-NLS-1$
+			writer.println(" */"); //$NON-NLS-1$
+			writer.println("final class " + PACKAGE_MARKER + " {"); //$NON-NLS-1$ //$NON-NLS-2$
+			writer.println("\t// intentionally left empty"); //$NON-NLS-1$
+			writer.println("}"); //$NON-NLS-1$
+		} finally {
+			writer.close();
+		}
+	}
+
+	private void writeInjector(PrintWriter writer, TypeElement type, String packageName, String injectorName) {
+		String typeName = type.getQualifiedName().toString();
+		List<VariableElement> fields = getFields(type);
+		List<ExecutableElement> methods = getMethods(type);
+		List<ExecutableElement> constructors = getConstructors(type);
+
+		if (packageName.length() != 0)
+			writer.println("package " + packageName + ";"); //$NON-NLS-1$ //$NON-NLS-2$
+		writer.println();
+		writer.println("/**"); //$NON-NLS-1$
+		writer.println(" * Generated by " + getClass().getName() + ", do not edit."); //$NON-NLS-1$ //$NON-NLS-2$
+		writer.println(" */"); //$NON-NLS-1$
+		// generic classes are referred to by their raw types, and arguments are cast even to Object
+		writer.println("@SuppressWarnings({\"unchecked\", \"rawtypes\", \"cast\"})"); //$NON-NLS-1$
+		writer.println("public final class " + injectorName + " extends " + GENERATED_INJECTOR + " {"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		writer.println();
+
+		writer.println("\tpublic String[] getFields() {"); //$NON-NLS-1$
+		writer.print("\t\treturn new String[] {"); //$NON-NLS-1$
+		for (int i = 0; i < fields.size(); i++)
+			writer.print((i == 0 ? "\"" : ", \"") + fields.get(i).getSimpleName() + "\""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		writer.println("};"); //$NON-NLS-1$
+		writer.println("\t}"); //$NON-NLS-1$
+		writer.println();
+
+		writer.println("\tpublic int[] getFieldFlags() {"); //$NON-NLS-1$
+		writer.print("\t\treturn new int[] {"); //$NON-NLS-1$
+		for (int i = 0; i < fields.size(); i++)
+			writer.print((i == 0 ? "" : ", ") + flags(fields.get(i))); //$NON-NLS-1$ //$NON-NLS-2$
+		writer.println("};"); //$NON-NLS-1$
+		writer.println("\t}"); //$NON-NLS-1$
+		writer.println();
+
+		writer.println("\tpublic String[] getFieldQualifiers() {"); //$NON-NLS-1$
+		writer.println("\t\treturn new String[] {" + qualifiers(fields) + "};"); //$NON-NLS-1$ //$NON-NLS-2$
+		writer.println("\t}"); //$NON-NLS-1$
+		writer.println();
+
+		writer.println("\tpublic String[] getMethods() {"); //$NON-NLS-1$
+		writer.print("\t\treturn new String[] {"); //$NON-NLS-1$
+		for (int i = 0; i < methods.size(); i++)
+			writer.print((i == 0 ? "\"" : ", \"") + methods.get(i).getSimpleName() + "\""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		writer.println("};"); //$NON-NLS-1$
+		writer.println("\t}"); //$NON-NLS-1$
+		writer.println();
+
+		writer.println("\tpublic Class<?>[][] getMethodParameters() {"); //$NON-NLS-1$
+		writer.println("\t\treturn new Class<?>[][] {" + parameterTypes(methods) + "};"); //$NON-NLS-1$ //$NON-NLS-2$
+		writer.println("\t}"); //$NON-NLS-1$
+		writer.println();
+
+		writer.println("\tpublic int[] getMethodFlags() {"); //$NON-NLS-1$
+		writer.print("\t\treturn new int[] {"); //$NON-NLS-1$
+		for (int i = 0; i < methods.size(); i++)
+			writer.print((i == 0 ? "" : ", ") + flags(methods.get(i))); //$NON-NLS-1$ //$NON-NLS-2$
+		writer.println("};"); //$NON-NLS-1$
+		writer.println("\t}"); //$NON-NLS-1$
+		writer.println();
+
+		writer.println("\tpublic int[][] getMethodParameterFlags() {"); //$NON-NLS-1$
+		writer.println("\t\treturn new int[][] {" + parameterFlags(methods) + "};"); //$NON-NLS-1$ //$NON-NLS-2$
+		writer.println("\t}"); //$NON-NLS-1$
+		writer.println();
+
+		writer.println("\tpublic String[][] getMethodParameterQualifiers() {"); //$NON-NLS-1$
+		writer.println("\t\treturn new String[][] {" + parameterQualifiers(methods) + "};"); //$NON-NLS-1$ //$NON-NLS-2$
+		writer.println("\t}"); //$NON-NLS-1$
+		writer.println();
+
+		writer.println("\tpublic Class<?>[][] getConstructors() {"); //$NON-NLS-1$
+		writer.println("\t\treturn new Class<?>[][] {" + parameterTypes(constructors) + "};"); //$NON-NLS-1$ //$NON-NLS-2$
+		writer.println("\t}"); //$NON-NLS-1$
+		writer.println();
+
+		writer.println("\tpublic int[][] getConstructorParameterFlags() {"); //$NON-NLS-1$
+		writer.println("\t\treturn new int[][] {" + parameterFlags(constructors) + "};"); //$NON-NLS-1$ //$NON-NLS-2$
+		writer.println("\t}"); //$NON-NLS-1$
+		writer.println();
+
+		writer.println("\tpublic String[][] getConstructorParameterQualifiers() {"); //$NON-NLS-1$
+		writer.println("\t\treturn new String[][] {" + parameterQualifiers(constructors) + "};"); //$NON-NLS-1$ //$NON-NLS-2$
+		writer.println("\t}"); //$NON-NLS-1$
+		writer.println();
+
+		writer.println("\tpublic boolean set(Object object, int field, Object value) {"); //$NON-NLS-1$
+		writer.println("\t\tswitch (field) {"); //$NON-NLS-1$
+		for (int i = 0; i < fields.size(); i++) {
+			VariableElement field = fields.get(i);
+			Set<Modifier> modifiers = field.getModifiers();
+			if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL))
+				continue; // set with reflection
+			String target = modifiers.contains(Modifier.STATIC) ? typeName : "((" + typeName + ") object)"; //$NON-NLS-1$ //$NON-NLS-2$
+			writer.println("\t\t\tcase " + i + " :"); //$NON-NLS-1$ //$NON-NLS-2$
+			writer.println("\t\t\t\t" + target + "." + field.getSimpleName() + " = " + cast(field.asType(), "value") + ";"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+			writer.println("\t\t\t\treturn true;"); //$NON-NLS-1$
+		}
+		writer.println("\t\t}"); //$NON-NLS-1$
+		writer.println("\t\treturn false;"); //$NON-NLS-1$
+		writer.println("\t}"); //$NON-NLS-1$
+		writer.println();
+
+		writer.println("\tpublic Object invoke(Object object, int method, Object[] args) throws " + INVOCATION_TARGET_EXCEPTION + " {"); //$NON-NLS-1$ //$NON-NLS-2$
+		writer.println("\t\tswitch (method) {"); //$NON-NLS-1$
+		for (int i = 0; i < methods.size(); i++) {
+			ExecutableElement method = methods.get(i);
+			Set<Modifier> modifiers = method.getModifiers();
+			if (modifiers.contains(Modifier.PRIVATE))
+				continue; // called with reflection
+			writer.println("\t\t\tcase " + i + " : {"); //$NON-NLS-1$ //$NON-NLS-2$
+			String target = typeName;
+			if (!modifiers.contains(Modifier.STATIC)) {
+				writer.println("\t\t\t\t" + typeName + " target = (" + typeName + ") object;"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				target = "target"; //$NON-NLS-1$
+			}
+			String call = target + "." + method.getSimpleName() + "(" + arguments(writer, method) + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			boolean isVoid = method.getReturnType().getKind() == TypeKind.VOID;
+			writeTry(writer, isVoid ? call : "return " + call); //$NON-NLS-1$
+			if (isVoid)
+				writer.println("\t\t\t\treturn null;"); //$NON-NLS-1$
+			writer.println("\t\t\t}"); //$NON-NLS-1$
+		}
+		writer.println("\t\t}"); //$NON-NLS-1$
+		writer.println("\t\treturn INDIRECT;"); //$NON-NLS-1$
+		writer.println("\t}"); //$NON-NLS-1$
+		writer.println();
+
+		writer.println("\tpublic Object newInstance(int constructor, Object[] args) throws " + INVOCATION_TARGET_EXCEPTION + " {"); //$NON-NLS-1$ //$NON-NLS-2$
+		writer.println("\t\tswitch (constructor) {"); //$NON-NLS-1$
+		if (!type.getModifiers().contains(Modifier.ABSTRACT)) {
+			for (int i = 0; i < constructors.size(); i++) {
+				ExecutableElement constructor = constructors.get(i);
+				if (constructor.getModifiers().contains(Modifier.PRIVATE))
+					continue; // not used by the injector
+				writer.println("\t\t\tcase " + i + " : {"); //$NON-NLS-1$ //$NON-NLS-2$
+				writeTry(writer, "return new " + typeName + "(" + arguments(writer, constructor) + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				writer.println("\t\t\t}"); //$NON-NLS-1$
+			}
+		}
+		writer.println("\t\t}"); //$NON-NLS-1$
+		writer.println("\t\treturn INDIRECT;"); //$NON-NLS-1$
+		writer.println("\t}"); //$NON-NLS-1$
+		writer.println("}"); //$NON-NLS-1$
+	}
+
+	private String parameterTypes(List<ExecutableElement> executables) {
+		StringBuffer result = new StringBuffer();
+		for (int i = 0; i < executables.size(); i++) {
+			result.append(i == 0 ? "{" : ", {"); //$NON-NLS-1$ //$NON-NLS-2$
+			List<? extends VariableElement> parameters = executables.get(i).getParameters();
+			for (int j = 0; j < parameters.size(); j++) {
+				if (j != 0)
+					result.append(", "); //$NON-NLS-1$
+				result.append(processingEnv.getTypeUtils().erasure(parameters.get(j).asType()));
+				result.append(".class"); //$NON-NLS-1$
+			}
+			result.append('}');
+		}
+		return result.toString();
+	}
+
+	private String parameterFlags(List<ExecutableElement> executables) {
+		StringBuffer result = new StringBuffer();
+		for (int i = 0; i < executables.size(); i++) {
+			result.append(i == 0 ? "{" : ", {"); //$NON-NLS-1$ //$NON-NLS-2$
+			List<? extends VariableElement> parameters = executables.get(i).getParameters();
+			for (int j = 0; j < parameters.size(); j++) {
+				if (j != 0)
+					result.append(", "); //$NON-NLS-1$
+				result.append(flags(parameters.get(j)));
+			}
+			result.append('}');
+		}
+		return result.toString();
+	}
+
+	private String parameterQualifiers(List<ExecutableElement> executables) {
+		StringBuffer result = new StringBuffer();
+		for (int i = 0; i < executables.size(); i++)
+			result.append(i == 0 ? "{" : ", {").append(qualifiers(executables.get(i).getParameters())).append('}'); //$NON-NLS-1$ //$NON-NLS-2$
+		return result.toString();
+	}
+
+	/**
+	 * Returns the values of the <code>Named</code> annotations of the given
+	 * elements as string literals, or <code>null</code> for elements that are
+	 * not named.
+	 */
+	private String qualifiers(List<? extends Element> elements) {
+		StringBuffer result = new StringBuffer();
+		for (int i = 0; i < elements.size(); i++) {
+			if (i != 0)
+				result.append(", "); //$NON-NLS-1$
+			AnnotationMirror named = getAnnotation(elements.get(i), NAMED);
+			if (named == null) {
+				result.append("null"); //$NON-NLS-1$
+				continue;
+			}
+			String value = null;
+			for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : processingEnv.getElementUtils().getElementValuesWithDefaults(named).entrySet()) {
+				if (entry.getKey().getSimpleName().contentEquals("value")) //$NON-NLS-1$
+					value = (String) entry.getValue().getValue();
+			}
+			result.append(processingEnv.getElementUtils().getConstantExpression(value));
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Returns the expression of the flags of a member or parameter, as defined
+	 * by the generated injectors.
+	 */
+	private String flags(Element element) {
+		StringBuffer result = new StringBuffer();
+		boolean isMethod = element.getKind() == ElementKind.METHOD;
+		for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+			TypeElement annotationType = (TypeElement) mirror.getAnnotationType().asElement();
+			String name = annotationType.getQualifiedName().toString();
+			String flag;
+			if (isMethod && INJECT.equals(name))
+				flag = "INJECT"; //$NON-NLS-1$
+			else if (isMethod && POST_CONSTRUCT.equals(name))
+				flag = "POST_CONSTRUCT"; //$NON-NLS-1$
+			else if (isMethod && PRE_DESTROY.equals(name))
+				flag = "PRE_DESTROY"; //$NON-NLS-1$
+			else if (OPTIONAL.equals(name))
+				flag = "OPTIONAL"; //$NON-NLS-1$
+			else if (GROUP_UPDATES.equals(name))
+				flag = "GROUP_UPDATES"; //$NON-NLS-1$
+			else if (!NAMED.equals(name) && getAnnotation(annotationType, QUALIFIER) != null)
+				flag = "QUALIFIED"; //$NON-NLS-1$
+			else
+				continue;
+			if (result.indexOf(flag) != -1)
+				continue;
+			if (result.length() != 0)
+				result.append(" | "); //$NON-NLS-1$
+			result.append(flag);
+		}
+		return (result.length() == 0) ? "0" : result.toString(); //$NON-NLS-1$
+	}
+
+	/**
+	 * Declares a local variable for each argument of the given method or
+	 * constructor, so that arguments of the wrong type are reported before
+	 * the call, and returns the list of these variables.
+	 */
+	private String arguments(PrintWriter writer, ExecutableElement executable) {
+		StringBuffer result = new StringBuffer();
+		List<? extends VariableElement> parameters = executable.getParameters();
+		for (int i = 0; i < parameters.size(); i++) {
+			TypeMirror type = parameters.get(i).asType();
+			writer.println("\t\t\t\t" + processingEnv.getTypeUtils().erasure(type) + " arg" + i + " = " + cast(type, "args[" + i + "]") + ";"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+			if (i != 0)
+				result.append(", "); //$NON-NLS-1$
+			result.append("arg" + i); //$NON-NLS-1$
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Writes the given statement so that only the exceptions it throws are
+	 * wrapped, as reflection does.
+	 */
+	private void writeTry(PrintWriter writer, String statement) {
+		writer.println("\t\t\t\ttry {"); //$NON-NLS-1$
+		writer.println("\t\t\t\t\t" + statement + ";"); //$NON-NLS-1$ //$NON-NLS-2$
+		writer.println("\t\t\t\t} catch (Exception e) {"); //$NON-NLS-1$
+		writer.println("\t\t\t\t\tthrow new " + INVOCATION_TARGET_EXCEPTION + "(e);"); //$NON-NLS-1$ //$NON-NLS-2$
+		writer.println("\t\t\t\t}"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Returns the expression that casts the given value to the erasure of the
+	 * given type, unboxing primitive values.
+	 */
+	private String cast(TypeMirror type, String value) {
+		TypeMirror erasure = processingEnv.getTypeUtils().erasure(type);
+		if (erasure.getKind().isPrimitive())
+			erasure = processingEnv.getTypeUtils().boxedClass((PrimitiveType) erasure).asType();
+		return "(" + erasure + ") " + value; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+}
@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.core.di;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Describes the injected members declared by a class and accesses them
+ * without reflection. Subclasses are generated at build time by the annotation
+ * processor of the <code>org.eclipse.e4.core.di.processor</code> bundle, in the
+ * package of the injected class, and are named after the binary name of the
+ * class followed by {@link #SUFFIX}. The processor also generates a class named
+ * {@link #PACKAGE_MARKER} in each package that has generated injectors.
+ * <p>
+ * The injector uses the generated injector of a class when it can find one,
+ * instead of looking for the injected members and reading their annotations
+ * with reflection. Members that the generated injector cannot access, such as
+ * private members, are still accessed with reflection.
+ * </p>
+ * <p>
+ * Only the code generated by the processor may subclass this class. Clients
+ * must not subclass it by hand, as later versions may add abstract members
+ * that only a matching processor implements.
+ * </p>
+ *
+ * @since 1.3
+ */
+public abstract class GeneratedInjector {
+
+	/**
+	 * The suffix added to the binary name of a class to get the name of its
+	 * generated injector.
+	 */
+	public static final String SUFFIX = "_Injector"; //$NON-NLS-1$
+
+	/**
+	 * The name of the class generated in each package that has generated injectors.
+	 * Classes of other packages are injected with reflection without looking for
+	 * their generated injectors.
+	 */
+	public static final String PACKAGE_MARKER = "package" + SUFFIX; //$NON-NLS-1$
+
+	/**
+	 * Returned by {@link #invoke(Object, int, Object[])} and
+	 * {@link #newInstance(int, Object[])} when the member cannot be accessed
+	 * by the generated injector.
+	 */
+	public static final Object INDIRECT = new Object();
+
+	/**
+	 * Flag of a method annotated with {@link javax.inject.Inject}.
+	 */
+	public static final int INJECT = 1 << 0;
+
+	/**
+	 * Flag of a method annotated with {@link javax.annotation.PostConstruct}.
+	 */
+	public static final int POST_CONSTRUCT = 1 << 1;
+
+	/**
+	 * Flag of a method annotated with {@link javax.annotation.PreDestroy}.
+	 */
+	public static final int PRE_DESTROY = 1 << 2;
+
+	/**
+	 * Flag of a field, method or parameter annotated with
+	 * {@link org.eclipse.e4.core.di.annotations.Optional}.
+	 */
+	public static final int OPTIONAL = 1 << 3;
+
+	/**
+	 * Flag of a field or method annotated with
+	 * {@link org.eclipse.e4.core.di.annotations.GroupUpdates}.
+	 */
+	public static final int GROUP_UPDATES = 1 << 4;
+
+	/**
+	 * Flag of a field or parameter that has qualifiers other than
+	 * {@link javax.inject.Named} and {@link org.eclipse.e4.core.di.annotations.Optional}.
+	 * The qualifiers of such members are read with reflection.
+	 */
+	public static final int QUALIFIED = 1 << 5;
+
+	/**
+	 * Returns the names of the fields declared by the class that are annotated
+	 * with {@link javax.inject.Inject}, in the order of their declaration.
+	 * @return the names of the injected fields
+	 */
+	public abstract String[] getFields();
+
+	/**
+	 * Returns the flags of the fields returned by {@link #getFields()}.
+	 * @return a combination of {@link #OPTIONAL}, {@link #GROUP_UPDATES} and
+	 * {@link #QUALIFIED} for each field
+	 */
+	public abstract int[] getFieldFlags();
+
+	/**
+	 * Returns the values of the {@link javax.inject.Named} annotations of the
+	 * fields returned by {@link #getFields()}.
+	 * @return the name of each field, or <code>null</code> if it is not named
+	 */
+	public abstract String[] getFieldQualifiers();
+
+	/**
+	 * Returns the names of the methods declared by the class that are annotated
+	 * with {@link javax.inject.Inject}, {@link javax.annotation.PostConstruct} or
+	 * {@link javax.annotation.PreDestroy}, in the order of their declaration.
+	 * @return the names of the injected methods
+	 */
+	public abstract String[] getMethods();
+
+	/**
+	 * Returns the erased parameter types of the methods returned by
+	 * {@link #getMethods()}.
+	 * @return the parameter types of the injected methods
+	 */
+	public abstract Class<?>[][] getMethodParameters();
+
+	/**
+	 * Returns the flags of the methods returned by {@link #getMethods()}.
+	 * @return a combination of {@link #INJECT}, {@link #POST_CONSTRUCT},
+	 * {@link #PRE_DESTROY}, {@link #OPTIONAL} and {@link #GROUP_UPDATES}
+	 * for each method
+	 */
+	public abstract int[] getMethodFlags();
+
+	/**
+	 * Returns the flags of the parameters of the methods returned by
+	 * {@link #getMethods()}.
+	 * @return a combination of {@link #OPTIONAL} and {@link #QUALIFIED} for
+	 * each parameter
+	 */
+	public abstract int[][] getMethodParameterFlags();
+
+	/**
+	 * Returns the values of the {@link javax.inject.Named} annotations of the
+	 * parameters of the methods returned by {@link #getMethods()}.
+	 * @return the name of each parameter, or <code>null</code> if it is not named
+	 */
+	public abstract String[][] getMethodParameterQualifiers();
+
+	/**
+	 * Returns the erased parameter types of the constructors declared by the
+	 * class that are either annotated with {@link javax.inject.Inject} or take
+	 * no arguments, in the order of their declaration.
+	 * @return the parameter types of the constructors
+	 */
+	public abstract Class<?>[][] getConstructors();
+
+	/**
+	 * Returns the flags of the parameters of the constructors returned by
+	 * {@link #getConstructors()}.
+	 * @return a combination of {@link #OPTIONAL} and {@link #QUALIFIED} for
+	 * each parameter
+	 */
+	public abstract int[][] getConstructorParameterFlags();
+
+	/**
+	 * Returns the values of the {@link javax.inject.Named} annotations of the
+	 * parameters of the constructors returned by {@link #getConstructors()}.
+	 * @return the name of each parameter, or <code>null</code> if it is not named
+	 */
+	public abstract String[][] getConstructorParameterQualifiers();
+
+	/**
+	 * Sets the value of a field.
+	 * @param object the injected object, ignored for static fields
+	 * @param field the index of the field in {@link #getFields()}
+	 * @param value the value to set
+	 * @return <code>false</code> if the field cannot be set by this injector
+	 */
+	public abstract boolean set(Object object, int field, Object value);
+
+	/**
+	 * Calls a method. Only the exceptions thrown by the method itself are
+	 * wrapped in an {@link InvocationTargetException}: arguments of the wrong
+	 * type cause a {@link ClassCastException}, and errors are not wrapped.
+	 * @param object the injected object, ignored for static methods
+	 * @param method the index of the method in {@link #getMethods()}
+	 * @param args the arguments of the method
+	 * @return the result of the method, or {@link #INDIRECT} if the method
+	 * cannot be called by this injector
+	 * @throws InvocationTargetException if the method throws an exception
+	 */
+	public abstract Object invoke(Object object, int method, Object[] args) throws InvocationTargetException;
+
+	/**
+	 * Creates an instance of the class. Exceptions are reported as by
+	 * {@link #invoke(Object, int, Object[])}.
+	 * @param constructor the index of the constructor in {@link #getConstructors()}
+	 * @param args the arguments of the constructor
+	 * @return the new instance, or {@link #INDIRECT} if the constructor cannot be
+	 * called by this injector
+	 * @throws InvocationTargetException if the constructor throws an exception
+	 */
+	public abstract Object newInstance(int constructor, Object[] args) throws InvocationTargetException;
+}
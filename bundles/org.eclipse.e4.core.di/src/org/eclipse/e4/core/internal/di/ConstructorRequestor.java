@@ -14,6 +14,7 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Type;
+import org.eclipse.e4.core.di.GeneratedInjector;
 import org.eclipse.e4.core.di.IInjector;
 import org.eclipse.e4.core.di.InjectionException;
 import org.eclipse.e4.core.di.suppliers.IObjectDescriptor;
@@ -23,9 +24,21 @@ public class ConstructorRequestor extends Requestor {
 
 	final private Constructor<?> constructor;
 
+	final private GeneratedInjector generated;
+	final private int index;
+
 	public ConstructorRequestor(Constructor<?> constructor, IInjector injector, PrimaryObjectSupplier primarySupplier, PrimaryObjectSupplier tempSupplier) {
 		super(null, injector, primarySupplier, tempSupplier, null, false /* do not track */);
 		this.constructor = constructor;
+		this.generated = null;
+		this.index = -1;
+	}
+
+	ConstructorRequestor(InjectionPlan.Site site, IInjector injector, PrimaryObjectSupplier primarySupplier, PrimaryObjectSupplier tempSupplier) {
+		super(site.descriptors, false, false, injector, primarySupplier, tempSupplier, null, false /* do not track */);
+		this.constructor = (Constructor<?>) site.member;
+		this.generated = site.generated;
+		this.index = site.index;
 	}
 
 	public Object execute() throws InjectionException {
@@ -41,7 +54,9 @@ public class ConstructorRequestor extends Requestor {
 			pausedRecording = true;
 		}
 		try {
-			result = constructor.newInstance(actualArgs);
+			result = (generated == null) ? GeneratedInjector.INDIRECT : generated.newInstance(index, actualArgs);
+			if (result == GeneratedInjector.INDIRECT)
+				result = constructor.newInstance(actualArgs);
 		} catch (IllegalArgumentException e) {
 			throw new InjectionException(e);
 		} catch (InstantiationException e) {
@@ -62,7 +77,20 @@ public class ConstructorRequestor extends Requestor {
 	}
 
 	public IObjectDescriptor[] calcDependentObjects() {
+		return calcDependentObjects(constructor);
+	}
+
+	static IObjectDescriptor[] calcDependentObjects(Constructor<?> constructor) {
 		Annotation[][] annotations = constructor.getParameterAnnotations();
+		Type[] logicalParams = getParameterTypes(constructor);
+		IObjectDescriptor[] descriptors = new IObjectDescriptor[logicalParams.length];
+		for (int i = 0; i < logicalParams.length; i++) {
+			descriptors[i] = new ObjectDescriptor(logicalParams[i], annotations[i]);
+		}
+		return descriptors;
+	}
+
+	static Type[] getParameterTypes(Constructor<?> constructor) {
 		Type[] logicalParams = constructor.getGenericParameterTypes();
 		// JDK bug: different methods see / don't see generated args for nested classes
 		// http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=5087240
@@ -73,12 +101,7 @@ public class ConstructorRequestor extends Requestor {
 			System.arraycopy(logicalParams, 0, tmp, compilerParams.length - logicalParams.length, logicalParams.length);
 			logicalParams = tmp;
 		}
-
-		IObjectDescriptor[] descriptors = new IObjectDescriptor[logicalParams.length];
-		for (int i = 0; i < logicalParams.length; i++) {
-			descriptors[i] = new ObjectDescriptor(logicalParams[i], annotations[i]);
-		}
-		return descriptors;
+		return logicalParams;
 	}
 
 	public Class<?> getRequestingObjectClass() {
@@ -11,6 +11,7 @@
 package org.eclipse.e4.core.internal.di;
 
 import java.lang.reflect.Field;
+import org.eclipse.e4.core.di.GeneratedInjector;
 import org.eclipse.e4.core.di.IInjector;
 import org.eclipse.e4.core.di.InjectionException;
 import org.eclipse.e4.core.di.suppliers.IObjectDescriptor;
@@ -20,24 +21,56 @@ public class FieldRequestor extends Requestor {
 
 	final private Field field;
 
+	final private GeneratedInjector generated;
+	final private int index;
+
 	public FieldRequestor(Field field, IInjector injector, PrimaryObjectSupplier primarySupplier, PrimaryObjectSupplier tempSupplier, Object requestingObject, boolean track) {
 		super(field, injector, primarySupplier, tempSupplier, requestingObject, track);
 		this.field = field;
+		this.generated = null;
+		this.index = -1;
+	}
+
+	FieldRequestor(InjectionPlan.Site site, IInjector injector, PrimaryObjectSupplier primarySupplier, PrimaryObjectSupplier tempSupplier, Object requestingObject, boolean track) {
+		super(site.descriptors, site.groupUpdates, site.optional, injector, primarySupplier, tempSupplier, requestingObject, track);
+		this.field = (Field) site.member;
+		this.generated = site.generated;
+		this.index = site.index;
 	}
 
 	public Object execute() throws InjectionException {
 		if (actualArgs == null)
 			return null; // optional field
-		setField(field, actualArgs[0]);
+		if (generated == null || !setGenerated(actualArgs[0]))
+			setField(field, actualArgs[0]);
 		clearResolvedArgs();
 		return null;
 	}
 
 	protected IObjectDescriptor[] calcDependentObjects() {
+		return calcDependentObjects(field);
+	}
+
+	static IObjectDescriptor[] calcDependentObjects(Field field) {
 		IObjectDescriptor objectDescriptor = new ObjectDescriptor(field.getGenericType(), field.getAnnotations());
 		return new IObjectDescriptor[] {objectDescriptor};
 	}
 
+	/**
+	 * Sets the field using the generated injector.
+	 * @return <code>false</code> if the field has to be set with reflection
+	 */
+	private boolean setGenerated(Object value) throws InjectionException {
+		Object userObject = getRequestingObject();
+		if (userObject == null)
+			return true; // nothing to inject into
+		try {
+			return generated.set(userObject, index, value);
+		} catch (ClassCastException e) {
+			throw new InjectionException(e);
+		}
+	}
+
 	private boolean setField(Field field, Object value) throws InjectionException {
 		Object userObject = getRequestingObject();
 		if (userObject == null)
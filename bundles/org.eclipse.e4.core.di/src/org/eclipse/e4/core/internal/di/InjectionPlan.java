@@ -0,0 +1,534 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.core.internal.di;
+
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.eclipse.e4.core.di.GeneratedInjector;
+import org.eclipse.e4.core.di.annotations.GroupUpdates;
+import org.eclipse.e4.core.di.annotations.Optional;
+import org.eclipse.e4.core.di.suppliers.IObjectDescriptor;
+import org.eclipse.e4.core.internal.di.osgi.LogHelper;
+
+/**
+ * The members of a class that take part in the injection, found once per class
+ * and shared by all injectors. Plans are immutable and safe to use from any thread.
+ * <p>
+ * The members are made accessible once, when the plan is computed, so that the
+ * requestors do not change their accessibility around every injection.
+ * </p>
+ * <p>
+ * The members of classes that have a {@link GeneratedInjector} are found by
+ * name and described by the generated injector instead of their annotations,
+ * and are accessed through it when it can.
+ * </p>
+ * <p>
+ * Plans refer to the members of their class, so they are only softly held to
+ * let the classes of uninstalled bundles be collected. They are flushed when
+ * the framework refreshes bundles.
+ * </p>
+ */
+final public class InjectionPlan {
+
+	final static private String JAVA_OBJECT = "java.lang.Object"; //$NON-NLS-1$
+
+	final static private Site[] NO_SITES = new Site[0];
+
+	/**
+	 * The plans by class. A plan refers to its class through its members and its
+	 * generated injector, so it is held softly. The classes of an uninstalled
+	 * bundle stay loaded until the memory is needed or {@link #flush()} is
+	 * called, which the activator does when packages are refreshed.
+	 */
+	final static private WeakClassMap<Reference<InjectionPlan>> plans = new WeakClassMap<Reference<InjectionPlan>>();
+
+	/**
+	 * Whether the packages seen so far have generated injectors, by class loader.
+	 */
+	final static private Map<ClassLoader, Map<String, Boolean>> generatedPackages = new WeakHashMap<ClassLoader, Map<String, Boolean>>();
+
+	/**
+	 * An injected field, method or constructor along with the objects it needs.
+	 */
+	final static class Site {
+		final AccessibleObject member;
+		final IObjectDescriptor[] descriptors;
+		final boolean groupUpdates;
+		final boolean optional;
+		final boolean isStatic;
+		/**
+		 * The generated injector that accesses the member, or <code>null</code>
+		 * if the member is accessed with reflection.
+		 */
+		final GeneratedInjector generated;
+		/**
+		 * The index of the member in the generated injector.
+		 */
+		final int index;
+
+		Site(AccessibleObject member, IObjectDescriptor[] descriptors, boolean groupUpdates, boolean optional, boolean isStatic, GeneratedInjector generated, int index) {
+			this.member = member;
+			this.descriptors = descriptors;
+			this.groupUpdates = groupUpdates;
+			this.optional = optional;
+			this.isStatic = isStatic;
+			this.generated = generated;
+			this.index = index;
+		}
+
+		Site(AccessibleObject member, IObjectDescriptor[] descriptors, boolean isStatic) {
+			this(member, descriptors, member.isAnnotationPresent(GroupUpdates.class), member.isAnnotationPresent(Optional.class), isStatic, null, -1);
+		}
+
+		Site(AccessibleObject member, IObjectDescriptor[] descriptors, int flags, boolean isStatic, GeneratedInjector generated, int index) {
+			this(member, descriptors, (flags & GeneratedInjector.GROUP_UPDATES) != 0, (flags & GeneratedInjector.OPTIONAL) != 0, isStatic, generated, index);
+		}
+	}
+
+	/**
+	 * The injected members declared by one class of the hierarchy.
+	 */
+	final static class Level {
+		final Class<?> declaringClass;
+		/**
+		 * Whether the class has injected static members; those are only
+		 * injected the first time an instance of the class is injected.
+		 */
+		final boolean hasStatic;
+		final Site[] fields;
+		final Site[] methods;
+
+		/**
+		 * The annotated methods declared by the class, which are the methods
+		 * that can be invoked with a qualifier; found the first time they are
+		 * needed.
+		 */
+		private volatile Site[] annotatedMethods;
+
+		Level(Class<?> declaringClass, boolean hasStatic, List<Site> fields, List<Site> methods) {
+			this.declaringClass = declaringClass;
+			this.hasStatic = hasStatic;
+			this.fields = toArray(fields);
+			this.methods = toArray(methods);
+		}
+
+		Site[] getAnnotatedMethods() {
+			Site[] result = annotatedMethods;
+			if (result != null)
+				return result;
+			// should two threads race, both arrays are the same
+			List<Site> sites = new ArrayList<Site>();
+			for (Method method : declaringClass.getDeclaredMethods()) {
+				if (method.getDeclaredAnnotations().length == 0)
+					continue;
+				sites.add(new Site(makeAccessible(method), MethodRequestor.calcDependentObjects(method), Modifier.isStatic(method.getModifiers())));
+			}
+			result = toArray(sites);
+			annotatedMethods = result;
+			return result;
+		}
+	}
+
+	/**
+	 * The classes of the hierarchy, superclasses first.
+	 */
+	final Level[] levels;
+
+	/**
+	 * The methods to call after injection and before uninjection, superclasses first.
+	 */
+	final Site[] postConstruct;
+	final Site[] preDestroy;
+
+	/**
+	 * The constructors that can be used to create instances, by descending number of arguments.
+	 */
+	final Site[] constructors;
+
+	final boolean isSingleton;
+
+	/**
+	 * Returns the plan of the given class, computing it if needed.
+	 */
+	static InjectionPlan get(Class<?> clazz) {
+		Reference<InjectionPlan> ref = plans.get(clazz);
+		InjectionPlan plan = (ref == null) ? null : ref.get();
+		if (plan != null)
+			return plan;
+		// should two threads race, both plans are the same
+		plan = new InjectionPlan(clazz);
+		plans.put(clazz, new SoftReference<InjectionPlan>(plan));
+		return plan;
+	}
+
+	/**
+	 * Forgets the plans of all classes and the packages that have generated injectors.
+	 */
+	public static void flush() {
+		plans.clear();
+		synchronized (generatedPackages) {
+			generatedPackages.clear();
+		}
+	}
+
+	private InjectionPlan(Class<?> clazz) {
+		List<Class<?>> hierarchy = new ArrayList<Class<?>>(5);
+		for (Class<?> current = clazz; current != null; current = current.getSuperclass()) {
+			hierarchy.add(0, current);
+			Class<?> superClass = current.getSuperclass();
+			if (superClass == null || superClass.getName().equals(JAVA_OBJECT))
+				break;
+		}
+		levels = new Level[hierarchy.size()];
+		List<Site> postConstructSites = new ArrayList<Site>();
+		List<Site> preDestroySites = new ArrayList<Site>();
+		Map<Class<?>, Method[]> declaredMethods = new HashMap<Class<?>, Method[]>();
+		GeneratedInjector generated = null;
+		for (int i = 0; i < levels.length; i++) {
+			// the subclasses that could override the methods of this class
+			List<Class<?>> subClasses = new ArrayList<Class<?>>(hierarchy.subList(i + 1, hierarchy.size()));
+			Collections.reverse(subClasses);
+			generated = findGenerated(hierarchy.get(i));
+			levels[i] = calcLevel(hierarchy.get(i), generated, subClasses, declaredMethods, postConstructSites, preDestroySites);
+		}
+		postConstruct = toArray(postConstructSites);
+		preDestroy = toArray(preDestroySites);
+		// the last level is the class itself
+		constructors = calcConstructors(clazz, generated);
+		isSingleton = clazz.isAnnotationPresent(Singleton.class);
+	}
+
+	private Level calcLevel(Class<?> objectsClass, GeneratedInjector generated, List<Class<?>> subClasses, Map<Class<?>, Method[]> declaredMethods, List<Site> postConstructSites, List<Site> preDestroySites) {
+		if (generated != null) {
+			try {
+				return calcGeneratedLevel(objectsClass, generated, subClasses, declaredMethods, postConstructSites, preDestroySites);
+			} catch (NoSuchFieldException e) {
+				// the generated injector is out of date, use reflection
+			} catch (NoSuchMethodException e) {
+				// the generated injector is out of date, use reflection
+			}
+		}
+		boolean hasStatic = false;
+		List<Site> fields = new ArrayList<Site>();
+		for (Field field : objectsClass.getDeclaredFields()) {
+			if (!field.isAnnotationPresent(Inject.class))
+				continue;
+			boolean isStatic = Modifier.isStatic(field.getModifiers());
+			hasStatic |= isStatic;
+			fields.add(new Site(makeAccessible(field), FieldRequestor.calcDependentObjects(field), isStatic));
+		}
+		List<Site> methods = new ArrayList<Site>();
+		for (Method method : getDeclaredMethods(objectsClass, declaredMethods)) {
+			boolean isInjected = method.isAnnotationPresent(Inject.class);
+			boolean isPostConstruct = method.isAnnotationPresent(PostConstruct.class);
+			boolean isPreDestroy = method.isAnnotationPresent(PreDestroy.class);
+			if (!isInjected && !isPostConstruct && !isPreDestroy)
+				continue;
+			if (isOverridden(method, subClasses, declaredMethods))
+				continue; // process in the subclass
+			makeAccessible(method);
+			IObjectDescriptor[] descriptors = MethodRequestor.calcDependentObjects(method);
+			if (isPostConstruct)
+				postConstructSites.add(new Site(method, descriptors, false));
+			if (isPreDestroy)
+				preDestroySites.add(new Site(method, descriptors, false));
+			if (!isInjected)
+				continue;
+			boolean isStatic = Modifier.isStatic(method.getModifiers());
+			hasStatic |= isStatic;
+			methods.add(new Site(method, descriptors, isStatic));
+		}
+		return new Level(objectsClass, hasStatic, fields, methods);
+	}
+
+	/**
+	 * Computes the level of a class from the members described by its generated
+	 * injector, without reading their annotations.
+	 */
+	private Level calcGeneratedLevel(Class<?> objectsClass, GeneratedInjector generated, List<Class<?>> subClasses, Map<Class<?>, Method[]> declaredMethods, List<Site> postConstructSites, List<Site> preDestroySites) throws NoSuchFieldException, NoSuchMethodException {
+		boolean hasStatic = false;
+		String[] fieldNames = generated.getFields();
+		int[] fieldFlags = generated.getFieldFlags();
+		String[] fieldQualifiers = generated.getFieldQualifiers();
+		List<Site> fields = new ArrayList<Site>(fieldNames.length);
+		for (int i = 0; i < fieldNames.length; i++) {
+			Field field = objectsClass.getDeclaredField(fieldNames[i]);
+			IObjectDescriptor[] descriptors = describe(new Type[] {field.getGenericType()}, new int[] {fieldFlags[i]}, new String[] {fieldQualifiers[i]});
+			if (descriptors == null)
+				descriptors = FieldRequestor.calcDependentObjects(field);
+			boolean isStatic = Modifier.isStatic(field.getModifiers());
+			hasStatic |= isStatic;
+			fields.add(new Site(makeAccessible(field), descriptors, fieldFlags[i], isStatic, generated, i));
+		}
+
+		String[] methodNames = generated.getMethods();
+		Class<?>[][] methodParameters = generated.getMethodParameters();
+		int[] methodFlags = generated.getMethodFlags();
+		int[][] parameterFlags = generated.getMethodParameterFlags();
+		String[][] parameterQualifiers = generated.getMethodParameterQualifiers();
+		List<Site> methods = new ArrayList<Site>(methodNames.length);
+		List<Site> postConstructs = new ArrayList<Site>(1);
+		List<Site> preDestroys = new ArrayList<Site>(1);
+		for (int i = 0; i < methodNames.length; i++) {
+			Method method = objectsClass.getDeclaredMethod(methodNames[i], methodParameters[i]);
+			if (isOverridden(method, subClasses, declaredMethods))
+				continue; // process in the subclass
+			IObjectDescriptor[] descriptors = describe(method.getGenericParameterTypes(), parameterFlags[i], parameterQualifiers[i]);
+			if (descriptors == null)
+				descriptors = MethodRequestor.calcDependentObjects(method);
+			makeAccessible(method);
+			int flags = methodFlags[i];
+			if ((flags & GeneratedInjector.POST_CONSTRUCT) != 0)
+				postConstructs.add(new Site(method, descriptors, flags, false, generated, i));
+			if ((flags & GeneratedInjector.PRE_DESTROY) != 0)
+				preDestroys.add(new Site(method, descriptors, flags, false, generated, i));
+			if ((flags & GeneratedInjector.INJECT) == 0)
+				continue;
+			boolean isStatic = Modifier.isStatic(method.getModifiers());
+			hasStatic |= isStatic;
+			methods.add(new Site(method, descriptors, flags, isStatic, generated, i));
+		}
+		// only add the lifecycle methods once all members have been found
+		postConstructSites.addAll(postConstructs);
+		preDestroySites.addAll(preDestroys);
+		return new Level(objectsClass, hasStatic, fields, methods);
+	}
+
+	private Site[] calcConstructors(Class<?> clazz, GeneratedInjector generated) {
+		Constructor<?>[] declared = null;
+		if (generated != null) {
+			try {
+				Class<?>[][] parameters = generated.getConstructors();
+				declared = new Constructor<?>[parameters.length];
+				for (int i = 0; i < parameters.length; i++)
+					declared[i] = clazz.getDeclaredConstructor(parameters[i]);
+			} catch (NoSuchMethodException e) {
+				generated = null; // the generated injector is out of date
+			}
+		}
+		if (generated == null)
+			declared = clazz.getDeclaredConstructors();
+		// Sort the constructors by descending number of constructor arguments
+		List<Integer> sortedConstructors = new ArrayList<Integer>(declared.length);
+		for (int i = 0; i < declared.length; i++)
+			sortedConstructors.add(Integer.valueOf(i));
+		final Constructor<?>[] constructors = declared;
+		Collections.sort(sortedConstructors, new Comparator<Integer>() {
+			public int compare(Integer c1, Integer c2) {
+				int l1 = constructors[c1.intValue()].getParameterTypes().length;
+				int l2 = constructors[c2.intValue()].getParameterTypes().length;
+				return l2 - l1;
+			}
+		});
+		int[][] parameterFlags = (generated == null) ? null : generated.getConstructorParameterFlags();
+		String[][] parameterQualifiers = (generated == null) ? null : generated.getConstructorParameterQualifiers();
+		List<Site> result = new ArrayList<Site>(sortedConstructors.size());
+		for (Integer index : sortedConstructors) {
+			int i = index.intValue();
+			Constructor<?> constructor = constructors[i];
+			// skip private and protected constructors; allow public and package visibility
+			int modifiers = constructor.getModifiers();
+			if (((modifiers & Modifier.PRIVATE) != 0) || ((modifiers & Modifier.PROTECTED) != 0))
+				continue;
+
+			IObjectDescriptor[] descriptors = null;
+			if (generated != null) {
+				// the generated injector only lists the constructors that can be used
+				descriptors = describe(ConstructorRequestor.getParameterTypes(constructor), parameterFlags[i], parameterQualifiers[i]);
+			} else if (!constructor.isAnnotationPresent(Inject.class) && constructor.getParameterTypes().length != 0)
+				continue; // unless this is the default constructor, it has to be tagged
+			if (descriptors == null)
+				descriptors = ConstructorRequestor.calcDependentObjects(constructor);
+			result.add(new Site(makeAccessible(constructor), descriptors, 0, false, generated, i));
+		}
+		return toArray(result);
+	}
+
+	/**
+	 * Returns the descriptors of the objects described by a generated injector,
+	 * or <code>null</code> if some of their qualifiers have to be read with
+	 * reflection.
+	 */
+	static private IObjectDescriptor[] describe(Type[] types, int[] flags, String[] qualifiers) {
+		if (flags.length != types.length)
+			return null; // the generated injector is out of date
+		IObjectDescriptor[] descriptors = new IObjectDescriptor[types.length];
+		for (int i = 0; i < types.length; i++) {
+			if ((flags[i] & GeneratedInjector.QUALIFIED) != 0)
+				return null;
+			descriptors[i] = new ObjectDescriptor(types[i], Qualifiers.get(flags[i], qualifiers[i]));
+		}
+		return descriptors;
+	}
+
+	/**
+	 * Returns the generated injector of the given class, or <code>null</code>
+	 * if the class has none.
+	 */
+	static private GeneratedInjector findGenerated(Class<?> clazz) {
+		ClassLoader loader = clazz.getClassLoader();
+		if (loader == null)
+			return null; // classes of the JRE have no generated injectors
+		String className = clazz.getName();
+		String packagePrefix = className.substring(0, className.lastIndexOf('.') + 1);
+		if (!hasGeneratedInjectors(loader, packagePrefix))
+			return null;
+		Class<?> injectorClass = loadClass(loader, className + GeneratedInjector.SUFFIX);
+		if (injectorClass == null || !GeneratedInjector.class.isAssignableFrom(injectorClass))
+			return null;
+		try {
+			return (GeneratedInjector) injectorClass.getDeclaredConstructor().newInstance();
+		} catch (NoSuchMethodException e) {
+			return null;
+		} catch (InstantiationException e) {
+			return null;
+		} catch (IllegalAccessException e) {
+			return null;
+		} catch (InvocationTargetException e) {
+			// fall back to reflection, but generated injectors are not expected to fail
+			LogHelper.logError("Unable to create the generated injector of \"" + className + "\".", e.getCause()); //$NON-NLS-1$ //$NON-NLS-2$
+			return null;
+		}
+	}
+
+	/**
+	 * Whether the given package has generated injectors. Most packages have
+	 * none, so this saves failing to load an injector for each of their classes.
+	 */
+	static private boolean hasGeneratedInjectors(ClassLoader loader, String packagePrefix) {
+		Boolean result;
+		synchronized (generatedPackages) {
+			Map<String, Boolean> packages = generatedPackages.get(loader);
+			result = (packages == null) ? null : packages.get(packagePrefix);
+		}
+		if (result != null)
+			return result.booleanValue();
+		result = Boolean.valueOf(loadClass(loader, packagePrefix + GeneratedInjector.PACKAGE_MARKER) != null);
+		synchronized (generatedPackages) {
+			Map<String, Boolean> packages = generatedPackages.get(loader);
+			if (packages == null) {
+				packages = new HashMap<String, Boolean>();
+				generatedPackages.put(loader, packages);
+			}
+			packages.put(packagePrefix, result);
+		}
+		return result.booleanValue();
+	}
+
+	static private Class<?> loadClass(ClassLoader loader, String className) {
+		try {
+			return loader.loadClass(className);
+		} catch (ClassNotFoundException e) {
+			return null;
+		} catch (LinkageError e) {
+			return null;
+		}
+	}
+
+	static private Method[] getDeclaredMethods(Class<?> clazz, Map<Class<?>, Method[]> declaredMethods) {
+		Method[] methods = declaredMethods.get(clazz);
+		if (methods == null) {
+			methods = clazz.getDeclaredMethods();
+			declaredMethods.put(clazz, methods);
+		}
+		return methods;
+	}
+
+	/**
+	 * Checks if a given method is overridden in one of the given subclasses.
+	 */
+	private static boolean isOverridden(Method method, List<Class<?>> subClasses, Map<Class<?>, Method[]> declaredMethods) {
+		int modifiers = method.getModifiers();
+		if (Modifier.isPrivate(modifiers))
+			return false;
+		if (Modifier.isStatic(modifiers))
+			return false;
+		// method is not private if we reached this line, check not(public OR protected)
+		boolean isDefault = !(Modifier.isPublic(modifiers) || Modifier.isProtected(modifiers));
+
+		String methodName = method.getName();
+		Class<?>[] methodParams = method.getParameterTypes();
+		int methodParamsLength = methodParams.length;
+		for (Class<?> subClass : subClasses) {
+			Method matchingMethod = null;
+			for (Method candidate : getDeclaredMethods(subClass, declaredMethods)) {
+				if (!methodName.equals(candidate.getName()))
+					continue;
+				Class<?>[] candidateParams = candidate.getParameterTypes();
+				if (candidateParams.length != methodParamsLength)
+					continue;
+				boolean paramsMatch = true;
+				for (int i = 0; i < methodParamsLength; i++) {
+					if (candidateParams[i].equals(methodParams[i])) // strictly speaking, need to add erasures
+						continue;
+					paramsMatch = false;
+				}
+				if (!paramsMatch)
+					continue;
+				matchingMethod = candidate;
+				break;
+			}
+			if (matchingMethod == null)
+				continue;
+
+			if (isDefault) { // must be in the same package to override
+				Package originalPackage = method.getDeclaringClass().getPackage();
+				Package overridePackage = subClass.getPackage();
+
+				if (originalPackage == null && overridePackage == null)
+					return true;
+				if (originalPackage == null || overridePackage == null)
+					return false;
+				if (originalPackage.equals(overridePackage))
+					return true;
+			} else
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Makes the given member accessible. If a security manager does not allow
+	 * it, the requestors make the member accessible while they use it.
+	 */
+	static private <T extends AccessibleObject> T makeAccessible(T member) {
+		try {
+			member.setAccessible(true);
+		} catch (SecurityException e) {
+			// leave it to the requestors
+		}
+		return member;
+	}
+
+	static private Site[] toArray(List<Site> sites) {
+		if (sites.isEmpty())
+			return NO_SITES;
+		return sites.toArray(new Site[sites.size()]);
+	}
+}
@@ -12,29 +12,20 @@ package org.eclipse.e4.core.internal.di;
 
 import java.lang.annotation.Annotation;
 import java.lang.ref.WeakReference;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.WeakHashMap;
-import javax.annotation.PostConstruct;
-import javax.annotation.PreDestroy;
-import javax.inject.Inject;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import javax.inject.Named;
 import javax.inject.Provider;
-import javax.inject.Singleton;
 import org.eclipse.e4.core.di.IBinding;
 import org.eclipse.e4.core.di.IInjector;
 import org.eclipse.e4.core.di.InjectionException;
@@ -55,8 +46,6 @@ public class InjectorImpl implements IInjector {
 	final static private String DEBUG_INJECTION = "org.eclipse.e4.core.di/debug/injector"; //$NON-NLS-1$
 	final static private boolean shouldDebug = DIActivator.getDefault().getBooleanDebugOption(DEBUG_INJECTION, false);
 
-	final static private String JAVA_OBJECT = "java.lang.Object"; //$NON-NLS-1$
-
 	final private static Boolean DEFAULT_BOOLEAN = new Boolean(false);
 	final private static Integer DEFAULT_INTEGER = new Integer(0);
 	final private static Character DEFAULT_CHAR = new Character((char) 0);
@@ -67,15 +56,18 @@ public class InjectorImpl implements IInjector {
 	final private static Byte DEFAULT_BYTE = new Byte((byte) 0);
 
 	private Map<PrimaryObjectSupplier, List<WeakReference<?>>> injectedObjects = new HashMap<PrimaryObjectSupplier, List<WeakReference<?>>>();
-	private Set<WeakReference<Class<?>>> injectedClasses = new HashSet<WeakReference<Class<?>>>();
-	private HashMap<Class<?>, Object> singletonCache = new HashMap<Class<?>, Object>();
-	private Map<Class<?>, Set<Binding>> bindings = new HashMap<Class<?>, Set<Binding>>();
-
-	// Performance improvement:
-	private Map<Class<?>, Method[]> methodsCache = new WeakHashMap<Class<?>, Method[]>();
-	private Map<Class<?>, Map<Method, Boolean>> isOverriddenCache = new WeakHashMap<Class<?>, Map<Method, Boolean>>();
+	private WeakClassMap<Boolean> injectedClasses = new WeakClassMap<Boolean>();
+	private ConcurrentMap<Class<?>, Object> singletonCache = new ConcurrentHashMap<Class<?>, Object>();
+	// the locks of the singletons being created, so that each singleton is created once
+	private ConcurrentMap<Class<?>, Object> singletonLocks = new ConcurrentHashMap<Class<?>, Object>();
+	// the sets are copied on write, so that bindings can be found without locking
+	private ConcurrentMap<Class<?>, Set<Binding>> bindings = new ConcurrentHashMap<Class<?>, Set<Binding>>();
 
-	private Set<Class<?>> classesBeingCreated = new HashSet<Class<?>>(5);
+	private ThreadLocal<Set<Class<?>>> classesBeingCreated = new ThreadLocal<Set<Class<?>>>() {
+		protected Set<Class<?>> initialValue() {
+			return new HashSet<Class<?>>(5);
+		}
+	};
 
 	private PrimaryObjectSupplier defaultSupplier;
 
@@ -110,7 +102,7 @@ public class InjectorImpl implements IInjector {
 
 		// We call @PostConstruct after injection. This means that is is called 
 		// as a part of both #make() and #inject().
-		processAnnotated(PostConstruct.class, object, object.getClass(), objectSupplier, tempSupplier, new ArrayList<Class<?>>(5));
+		processAnnotated(InjectionPlan.get(object.getClass()).postConstruct, object, objectSupplier, tempSupplier);
 
 		// remove references to the temporary suppliers
 		for (Requestor requestor : requestors) {
@@ -169,7 +161,7 @@ public class InjectorImpl implements IInjector {
 	public void uninject(Object object, PrimaryObjectSupplier objectSupplier) {
 		if (!forgetInjectedObject(object, objectSupplier))
 			return; // not injected at this time
-		processAnnotated(PreDestroy.class, object, object.getClass(), objectSupplier, null, new ArrayList<Class<?>>(5));
+		processAnnotated(InjectionPlan.get(object.getClass()).preDestroy, object, objectSupplier, null);
 
 		ArrayList<Requestor> requestors = new ArrayList<Requestor>();
 		processClassHierarchy(object, objectSupplier, null, true /* track */, false /* inverse order */, requestors);
@@ -213,28 +205,27 @@ public class InjectorImpl implements IInjector {
 	}
 
 	private Object invokeUsingClass(Object userObject, Class<?> currentClass, Class<? extends Annotation> qualifier, Object defaultValue, PrimaryObjectSupplier objectSupplier, PrimaryObjectSupplier tempSupplier, boolean throwUnresolved) {
-		Method[] methods = getDeclaredMethods(currentClass);
-		for (int j = 0; j < methods.length; j++) {
-			Method method = methods[j];
-			if (method.getAnnotation(qualifier) == null)
-				continue;
-			MethodRequestor requestor = new MethodRequestor(method, this, objectSupplier, tempSupplier, userObject, false);
+		InjectionPlan.Level[] levels = InjectionPlan.get(currentClass).levels;
+		// the levels are ordered superclasses first, the methods are looked up subclasses first
+		for (int i = levels.length - 1; i >= 0; i--) {
+			InjectionPlan.Site[] methods = levels[i].getAnnotatedMethods();
+			for (int j = 0; j < methods.length; j++) {
+				if (!methods[j].member.isAnnotationPresent(qualifier))
+					continue;
+				MethodRequestor requestor = new MethodRequestor(methods[j], this, objectSupplier, tempSupplier, userObject, false);
 
-			Object[] actualArgs = resolveArgs(requestor, objectSupplier, tempSupplier, false, true, false);
-			int unresolved = unresolved(actualArgs);
-			if (unresolved != -1) {
-				if (throwUnresolved)
-					reportUnresolvedArgument(requestor, unresolved);
-				continue;
+				Object[] actualArgs = resolveArgs(requestor, objectSupplier, tempSupplier, false, true, false);
+				int unresolved = unresolved(actualArgs);
+				if (unresolved != -1) {
+					if (throwUnresolved)
+						reportUnresolvedArgument(requestor, unresolved);
+					continue;
+				}
+				requestor.setResolvedArgs(actualArgs);
+				return requestor.execute();
 			}
-			requestor.setResolvedArgs(actualArgs);
-			return requestor.execute();
 		}
-		Class<?> superClass = currentClass.getSuperclass();
-		if (superClass == null)
-			return defaultValue;
-
-		return invokeUsingClass(userObject, superClass, qualifier, defaultValue, objectSupplier, tempSupplier, throwUnresolved);
+		return defaultValue;
 	}
 
 	public <T> T make(Class<T> clazz, PrimaryObjectSupplier objectSupplier) {
@@ -273,65 +264,55 @@ public class InjectorImpl implements IInjector {
 	}
 
 	private Object internalMake(Class<?> clazz, PrimaryObjectSupplier objectSupplier, PrimaryObjectSupplier tempSupplier) {
-		if (shouldDebug && classesBeingCreated.contains(clazz))
+		if (shouldDebug && classesBeingCreated.get().contains(clazz))
 			LogHelper.logWarning("Possible recursive reference trying to create class \"" + clazz.getName() + "\".", null); //$NON-NLS-1$ //$NON-NLS-2$
 		try {
 			if (shouldDebug)
-				classesBeingCreated.add(clazz);
-
-			boolean isSingleton = clazz.isAnnotationPresent(Singleton.class);
-			if (isSingleton) {
-				synchronized (singletonCache) {
-					if (singletonCache.containsKey(clazz))
-						return singletonCache.get(clazz);
-				}
+				classesBeingCreated.get().add(clazz);
+
+			InjectionPlan plan = InjectionPlan.get(clazz);
+			if (!plan.isSingleton)
+				return createInstance(plan, clazz, objectSupplier, tempSupplier);
+
+			Object singleton = singletonCache.get(clazz);
+			if (singleton != null)
+				return singleton;
+			Object lock = new Object();
+			Object previousLock = singletonLocks.putIfAbsent(clazz, lock);
+			if (previousLock != null)
+				lock = previousLock;
+			synchronized (lock) {
+				singleton = singletonCache.get(clazz);
+				if (singleton != null)
+					return singleton; // created by another thread while we waited
+				singleton = createInstance(plan, clazz, objectSupplier, tempSupplier);
+				singletonCache.put(clazz, singleton);
 			}
+			// threads that come later find the singleton in the cache
+			singletonLocks.remove(clazz, lock);
+			return singleton;
+		} finally {
+			if (shouldDebug)
+				classesBeingCreated.get().remove(clazz);
+		}
+	}
 
-			Constructor<?>[] constructors = clazz.getDeclaredConstructors();
-			// Sort the constructors by descending number of constructor arguments
-			ArrayList<Constructor<?>> sortedConstructors = new ArrayList<Constructor<?>>(constructors.length);
-			for (Constructor<?> constructor : constructors)
-				sortedConstructors.add(constructor);
-			Collections.sort(sortedConstructors, new Comparator<Constructor<?>>() {
-				public int compare(Constructor<?> c1, Constructor<?> c2) {
-					int l1 = c1.getParameterTypes().length;
-					int l2 = c2.getParameterTypes().length;
-					return l2 - l1;
-				}
-			});
-
-			for (Constructor<?> constructor : sortedConstructors) {
-				// skip private and protected constructors; allow public and package visibility
-				int modifiers = constructor.getModifiers();
-				if (((modifiers & Modifier.PRIVATE) != 0) || ((modifiers & Modifier.PROTECTED) != 0))
-					continue;
-
-				// unless this is the default constructor, it has to be tagged
-				if (!constructor.isAnnotationPresent(Inject.class) && constructor.getParameterTypes().length != 0)
-					continue;
-
-				ConstructorRequestor requestor = new ConstructorRequestor(constructor, this, objectSupplier, tempSupplier);
-				Object[] actualArgs = resolveArgs(requestor, objectSupplier, tempSupplier, false, true, false);
-				if (unresolved(actualArgs) != -1)
-					continue;
-				requestor.setResolvedArgs(actualArgs);
+	private Object createInstance(InjectionPlan plan, Class<?> clazz, PrimaryObjectSupplier objectSupplier, PrimaryObjectSupplier tempSupplier) {
+		// the plan only has the constructors we can use, by descending number of arguments
+		for (InjectionPlan.Site constructor : plan.constructors) {
+			ConstructorRequestor requestor = new ConstructorRequestor(constructor, this, objectSupplier, tempSupplier);
+			Object[] actualArgs = resolveArgs(requestor, objectSupplier, tempSupplier, false, true, false);
+			if (unresolved(actualArgs) != -1)
+				continue;
+			requestor.setResolvedArgs(actualArgs);
 
-				Object newInstance = requestor.execute();
-				if (newInstance != null) {
-					inject(newInstance, objectSupplier, tempSupplier);
-					if (isSingleton) {
-						synchronized (singletonCache) { // TBD this is not quite right, synch the method
-							singletonCache.put(clazz, newInstance);
-						}
-					}
-					return newInstance;
-				}
+			Object newInstance = requestor.execute();
+			if (newInstance != null) {
+				inject(newInstance, objectSupplier, tempSupplier);
+				return newInstance;
 			}
-			throw new InjectionException("Could not find satisfiable constructor in " + clazz.getName()); //$NON-NLS-1$
-		} finally {
-			if (shouldDebug)
-				classesBeingCreated.remove(clazz);
 		}
+		throw new InjectionException("Could not find satisfiable constructor in " + clazz.getName()); //$NON-NLS-1$
 	}
 
 	public void resolveArguments(IRequestor requestor, boolean initial) {
@@ -367,7 +348,7 @@ public class InjectorImpl implements IInjector {
 			Object object = objects[i];
 			if (!forgetInjectedObject(object, objectSupplier))
 				continue; // not injected at this time
-			processAnnotated(PreDestroy.class, object, object.getClass(), objectSupplier, null, new ArrayList<Class<?>>(5));
+			processAnnotated(InjectionPlan.get(object.getClass()).preDestroy, object, objectSupplier, null);
 		}
 		forgetSupplier(objectSupplier);
 	}
@@ -554,176 +535,45 @@ public class InjectorImpl implements IInjector {
 		return -1;
 	}
 
-	private void processClassHierarchy(Object userObject, PrimaryObjectSupplier objectSupplier, PrimaryObjectSupplier tempSupplier, boolean track, boolean normalOrder, List<Requestor> requestors) {
-		processClass(userObject, objectSupplier, tempSupplier, (userObject == null) ? null : userObject.getClass(), new ArrayList<Class<?>>(5), track, normalOrder, requestors);
-	}
-
 	/**
-	 * Make the processor visit all declared members on the given class and all superclasses
+	 * Make the processor visit the injected members of the object's class and all superclasses
 	 */
-	private void processClass(Object userObject, PrimaryObjectSupplier objectSupplier, PrimaryObjectSupplier tempSupplier, Class<?> objectsClass, ArrayList<Class<?>> classHierarchy, boolean track, boolean normalOrder, List<Requestor> requestors) {
+	private void processClassHierarchy(Object userObject, PrimaryObjectSupplier objectSupplier, PrimaryObjectSupplier tempSupplier, boolean track, boolean normalOrder, List<Requestor> requestors) {
+		InjectionPlan plan = InjectionPlan.get(userObject.getClass());
 		// order: superclass, fields, methods
-		if (objectsClass != null) {
-			Class<?> superClass = objectsClass.getSuperclass();
-			if (superClass != null && !superClass.getName().equals(JAVA_OBJECT)) {
-				classHierarchy.add(objectsClass);
-				processClass(userObject, objectSupplier, tempSupplier, superClass, classHierarchy, track, normalOrder, requestors);
-				classHierarchy.remove(objectsClass);
-			}
-		}
-		boolean injectedStaticFields;
-		boolean injectedStaticMethods;
-		if (normalOrder) {
-			injectedStaticFields = processFields(userObject, objectSupplier, tempSupplier, objectsClass, track, requestors);
-			injectedStaticMethods = processMethods(userObject, objectSupplier, tempSupplier, objectsClass, classHierarchy, track, requestors);
-		} else {
-			injectedStaticMethods = processMethods(userObject, objectSupplier, tempSupplier, objectsClass, classHierarchy, track, requestors);
-			injectedStaticFields = processFields(userObject, objectSupplier, tempSupplier, objectsClass, track, requestors);
-		}
-		if (injectedStaticFields || injectedStaticMethods)
-			rememberInjectedStatic(objectsClass);
-	}
-
-	private boolean hasInjectedStatic(Class<?> objectsClass) {
-		synchronized (injectedClasses) {
-			for (WeakReference<Class<?>> ref : injectedClasses) {
-				Class<?> injectedClass = ref.get();
-				if (injectedClass == null)
-					continue;
-				if (injectedClass == objectsClass) // use pointer comparison
-					return true;
+		for (InjectionPlan.Level level : plan.levels) {
+			// the first object of the class to be injected also gets its static members injected
+			boolean skipStatic = level.hasStatic && injectedClasses.putIfAbsent(level.declaringClass, Boolean.TRUE) != null;
+			if (normalOrder) {
+				processFields(userObject, objectSupplier, tempSupplier, level.fields, skipStatic, track, requestors);
+				processMethods(userObject, objectSupplier, tempSupplier, level.methods, skipStatic, track, requestors);
+			} else {
+				processMethods(userObject, objectSupplier, tempSupplier, level.methods, skipStatic, track, requestors);
+				processFields(userObject, objectSupplier, tempSupplier, level.fields, skipStatic, track, requestors);
 			}
-			return false;
-		}
-	}
-
-	private void rememberInjectedStatic(Class<?> objectsClass) {
-		synchronized (injectedClasses) {
-			injectedClasses.add(new WeakReference<Class<?>>(objectsClass));
 		}
 	}
 
 	/**
-	 * Make the processor visit all declared fields on the given class.
+	 * Make the processor visit the injected fields of a class.
 	 */
-	private boolean processFields(Object userObject, PrimaryObjectSupplier objectSupplier, PrimaryObjectSupplier tempSupplier, Class<?> objectsClass, boolean track, List<Requestor> requestors) {
-		boolean injectedStatic = false;
-		Field[] fields = objectsClass.getDeclaredFields();
+	private void processFields(Object userObject, PrimaryObjectSupplier objectSupplier, PrimaryObjectSupplier tempSupplier, InjectionPlan.Site[] fields, boolean skipStatic, boolean track, List<Requestor> requestors) {
 		for (int i = 0; i < fields.length; i++) {
-			Field field = fields[i];
-			if (Modifier.isStatic(field.getModifiers())) {
-				if (hasInjectedStatic(objectsClass))
-					continue;
-				injectedStatic = true;
-			}
-			if (!field.isAnnotationPresent(Inject.class))
+			if (skipStatic && fields[i].isStatic)
 				continue;
-			requestors.add(new FieldRequestor(field, this, objectSupplier, tempSupplier, userObject, track));
+			requestors.add(new FieldRequestor(fields[i], this, objectSupplier, tempSupplier, userObject, track));
 		}
-		return injectedStatic;
 	}
 
 	/**
-	 * Make the processor visit all declared methods on the given class.
+	 * Make the processor visit the injected methods of a class.
 	 */
-	private boolean processMethods(final Object userObject, PrimaryObjectSupplier objectSupplier, PrimaryObjectSupplier tempSupplier, Class<?> objectsClass, ArrayList<Class<?>> classHierarchy, boolean track, List<Requestor> requestors) {
-		boolean injectedStatic = false;
-		Method[] methods = getDeclaredMethods(objectsClass);
+	private void processMethods(Object userObject, PrimaryObjectSupplier objectSupplier, PrimaryObjectSupplier tempSupplier, InjectionPlan.Site[] methods, boolean skipStatic, boolean track, List<Requestor> requestors) {
 		for (int i = 0; i < methods.length; i++) {
-			final Method method = methods[i];
-
-			Boolean isOverridden = null;
-			Map<Method, Boolean> methodMap = null;
-			Class<?> originalClass = userObject.getClass();
-			if (isOverriddenCache.containsKey(originalClass)) {
-				methodMap = isOverriddenCache.get(originalClass);
-				if (methodMap.containsKey(method))
-					isOverridden = methodMap.get(method);
-			}
-			if (isOverridden == null) {
-				isOverridden = isOverridden(method, classHierarchy);
-				if (methodMap == null) {
-					methodMap = new WeakHashMap<Method, Boolean>();
-					isOverriddenCache.put(originalClass, methodMap);
-				}
-				methodMap.put(method, isOverridden);
-			}
-
-			if (isOverridden)
-				continue; // process in the subclass
-			if (Modifier.isStatic(method.getModifiers())) {
-				if (hasInjectedStatic(objectsClass))
-					continue;
-				injectedStatic = true;
-			}
-			if (!method.isAnnotationPresent(Inject.class))
+			if (skipStatic && methods[i].isStatic)
 				continue;
-			requestors.add(new MethodRequestor(method, this, objectSupplier, tempSupplier, userObject, track));
+			requestors.add(new MethodRequestor(methods[i], this, objectSupplier, tempSupplier, userObject, track));
 		}
-		return injectedStatic;
-	}
-
-	/**
-	 * Checks if a given method is overridden with an injectable method.
-	 */
-	private boolean isOverridden(Method method, ArrayList<Class<?>> classHierarchy) {
-		int modifiers = method.getModifiers();
-		if (Modifier.isPrivate(modifiers))
-			return false;
-		if (Modifier.isStatic(modifiers))
-			return false;
-		// method is not private if we reached this line, check not(public OR protected)
-		boolean isDefault = !(Modifier.isPublic(modifiers) || Modifier.isProtected(modifiers));
-
-		String methodName = method.getName();
-		Class<?>[] methodParams = method.getParameterTypes();
-		int methodParamsLength = method.getParameterTypes().length;
-		for (Class<?> subClass : classHierarchy) {
-			Method[] methods = getDeclaredMethods(subClass);
-			Method matchingMethod = null;
-			for (Method candidate : methods) {
-				if (!methodName.equals(candidate.getName()))
-					continue;
-				Class<?>[] candidateParams = candidate.getParameterTypes();
-				if (candidateParams.length != methodParamsLength)
-					continue;
-				boolean paramsMatch = true;
-				for (int i = 0; i < methodParamsLength; i++) {
-					if (candidateParams[i].equals(methodParams[i])) // strictly speaking, need to add erasures
-						continue;
-					paramsMatch = false;
-				}
-				if (!paramsMatch)
-					continue;
-				matchingMethod = candidate;
-				break;
-			}
-			if (matchingMethod == null)
-				continue;
-
-			if (isDefault) { // must be in the same package to override
-				Package originalPackage = method.getDeclaringClass().getPackage();
-				Package overridePackage = subClass.getPackage();
-
-				if (originalPackage == null && overridePackage == null)
-					return true;
-				if (originalPackage == null || overridePackage == null)
-					return false;
-				if (originalPackage.equals(overridePackage))
-					return true;
-			} else
-				return true;
-		}
-		return false;
-	}
-
-	private Method[] getDeclaredMethods(Class<?> c) {
-		Method[] methods = methodsCache.get(c);
-		if (methods == null) {
-			methods = c.getDeclaredMethods();
-			methodsCache.put(c, methods);
-		}
-		return methods;
 	}
 
 	private Class<?> getDesiredClass(Type desiredType) {
@@ -762,8 +612,9 @@ public class InjectorImpl implements IInjector {
 		Binding internalBinding = (Binding) binding;
 		Class<?> clazz = internalBinding.getDescribedClass();
 		synchronized (bindings) {
-			if (bindings.containsKey(clazz)) {
-				Set<Binding> collection = bindings.get(clazz);
+			Set<Binding> collection = bindings.get(clazz);
+			if (collection != null) {
+				collection = new HashSet<Binding>(collection);
 				String desiredQualifierName = internalBinding.getQualifierName();
 				for (Iterator<Binding> i = collection.iterator(); i.hasNext();) {
 					Binding collectionBinding = i.next();
@@ -774,10 +625,10 @@ public class InjectorImpl implements IInjector {
 				}
 				collection.add(internalBinding);
 			} else {
-				Set<Binding> collection = new HashSet<Binding>(1);
+				collection = new HashSet<Binding>(1);
 				collection.add(internalBinding);
-				bindings.put(clazz, collection);
 			}
+			bindings.put(clazz, collection);
 		}
 		return binding;
 	}
@@ -786,39 +637,39 @@ public class InjectorImpl implements IInjector {
 		Class<?> desiredClass = getProviderType(descriptor.getDesiredType());
 		if (desiredClass == null)
 			desiredClass = getDesiredClass(descriptor.getDesiredType());
-		synchronized (bindings) {
-			if (!bindings.containsKey(desiredClass))
-				return null;
-			Set<Binding> collection = bindings.get(desiredClass);
-			String desiredQualifierName = null;
-			if (descriptor.hasQualifier(Named.class)) {
-				Named namedAnnotation = descriptor.getQualifier(Named.class);
-				desiredQualifierName = namedAnnotation.value();
-			} else {
-				Annotation[] annotations = descriptor.getQualifiers();
-				if (annotations != null) {
-					for (Annotation annotation : annotations) {
-						desiredQualifierName = annotation.annotationType().getName();
-						break;
-					}
+		if (desiredClass == null)
+			return null;
+		Set<Binding> collection = bindings.get(desiredClass);
+		if (collection == null)
+			return null;
+		String desiredQualifierName = null;
+		if (descriptor.hasQualifier(Named.class)) {
+			Named namedAnnotation = descriptor.getQualifier(Named.class);
+			desiredQualifierName = namedAnnotation.value();
+		} else {
+			Annotation[] annotations = descriptor.getQualifiers();
+			if (annotations != null) {
+				for (Annotation annotation : annotations) {
+					desiredQualifierName = annotation.annotationType().getName();
+					break;
 				}
 			}
+		}
 
-			for (Iterator<Binding> i = collection.iterator(); i.hasNext();) {
-				Binding collectionBinding = i.next();
-				if (eq(collectionBinding.getQualifierName(), desiredQualifierName))
-					return collectionBinding;
-			}
-			desiredQualifierName = desiredClass.getName();
-			for (Iterator<Binding> i = collection.iterator(); i.hasNext();) {
-				Binding collectionBinding = i.next();
-				Class<?> bindingClass = collectionBinding.getDescribedClass();
-				if (bindingClass == null)
-					continue;
-				String simpleClassName = bindingClass.getName();
-				if (eq(simpleClassName, desiredQualifierName))
-					return collectionBinding;
-			}
+		for (Iterator<Binding> i = collection.iterator(); i.hasNext();) {
+			Binding collectionBinding = i.next();
+			if (eq(collectionBinding.getQualifierName(), desiredQualifierName))
+				return collectionBinding;
+		}
+		desiredQualifierName = desiredClass.getName();
+		for (Iterator<Binding> i = collection.iterator(); i.hasNext();) {
+			Binding collectionBinding = i.next();
+			Class<?> bindingClass = collectionBinding.getDescribedClass();
+			if (bindingClass == null)
+				continue;
+			String simpleClassName = bindingClass.getName();
+			if (eq(simpleClassName, desiredQualifierName))
+				return collectionBinding;
 		}
 		return null;
 	}
@@ -834,26 +685,13 @@ public class InjectorImpl implements IInjector {
 		return str1.equals(str2);
 	}
 
-	private void processAnnotated(Class<? extends Annotation> annotation, Object userObject, Class<?> objectClass, PrimaryObjectSupplier objectSupplier, PrimaryObjectSupplier tempSupplier, ArrayList<Class<?>> classHierarchy) {
-		Class<?> superClass = objectClass.getSuperclass();
-		if (superClass != null && !superClass.getName().equals(JAVA_OBJECT)) {
-			classHierarchy.add(objectClass);
-			processAnnotated(annotation, userObject, superClass, objectSupplier, tempSupplier, classHierarchy);
-			classHierarchy.remove(objectClass);
-		}
-		Method[] methods = getDeclaredMethods(objectClass);
+	private void processAnnotated(InjectionPlan.Site[] methods, Object userObject, PrimaryObjectSupplier objectSupplier, PrimaryObjectSupplier tempSupplier) {
 		for (int i = 0; i < methods.length; i++) {
-			Method method = methods[i];
-			if (!method.isAnnotationPresent(annotation))
-				continue;
-			if (isOverridden(method, classHierarchy))
-				continue;
-
-			MethodRequestor requestor = new MethodRequestor(method, this, objectSupplier, tempSupplier, userObject, false);
+			MethodRequestor requestor = new MethodRequestor(methods[i], this, objectSupplier, tempSupplier, userObject, false);
 			Object[] actualArgs = resolveArgs(requestor, objectSupplier, tempSupplier, false, false, false);
 			int unresolved = unresolved(actualArgs);
 			if (unresolved != -1) {
-				if (method.isAnnotationPresent(Optional.class))
+				if (methods[i].optional)
 					continue;
 				reportUnresolvedArgument(requestor, unresolved);
 			}
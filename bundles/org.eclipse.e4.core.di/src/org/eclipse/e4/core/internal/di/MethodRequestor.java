@@ -14,8 +14,7 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
-import java.util.Map;
-import java.util.WeakHashMap;
+import org.eclipse.e4.core.di.GeneratedInjector;
 import org.eclipse.e4.core.di.IInjector;
 import org.eclipse.e4.core.di.InjectionException;
 import org.eclipse.e4.core.di.suppliers.IObjectDescriptor;
@@ -25,12 +24,21 @@ public class MethodRequestor extends Requestor {
 
 	final private Method method;
 
-	// Having a *static* map is valuable as it changes the hit rate from about 60% to about 90%.
-	private static Map<Method, Annotation[][]> annotationCache = new WeakHashMap<Method, Annotation[][]>();
+	final private GeneratedInjector generated;
+	final private int index;
 
 	public MethodRequestor(Method method, IInjector injector, PrimaryObjectSupplier primarySupplier, PrimaryObjectSupplier tempSupplier, Object requestingObject, boolean track) {
 		super(method, injector, primarySupplier, tempSupplier, requestingObject, track);
 		this.method = method;
+		this.generated = null;
+		this.index = -1;
+	}
+
+	MethodRequestor(InjectionPlan.Site site, IInjector injector, PrimaryObjectSupplier primarySupplier, PrimaryObjectSupplier tempSupplier, Object requestingObject, boolean track) {
+		super(site.descriptors, site.groupUpdates, site.optional, injector, primarySupplier, tempSupplier, requestingObject, track);
+		this.method = (Method) site.member;
+		this.generated = site.generated;
+		this.index = site.index;
 	}
 
 	public Object execute() throws InjectionException {
@@ -53,7 +61,9 @@ public class MethodRequestor extends Requestor {
 			pausedRecording = true;
 		}
 		try {
-			result = method.invoke(userObject, actualArgs);
+			result = (generated == null) ? GeneratedInjector.INDIRECT : generated.invoke(userObject, index, actualArgs);
+			if (result == GeneratedInjector.INDIRECT)
+				result = method.invoke(userObject, actualArgs);
 		} catch (IllegalArgumentException e) {
 			throw new InjectionException(e);
 		} catch (IllegalAccessException e) {
@@ -73,8 +83,12 @@ public class MethodRequestor extends Requestor {
 
 	@Override
 	protected IObjectDescriptor[] calcDependentObjects() {
+		return calcDependentObjects(method);
+	}
+
+	static IObjectDescriptor[] calcDependentObjects(Method method) {
 		Type[] parameterTypes = method.getGenericParameterTypes();
-		Annotation[][] annotations = getParameterAnnotations();
+		Annotation[][] annotations = method.getParameterAnnotations();
 		IObjectDescriptor[] descriptors = new IObjectDescriptor[parameterTypes.length];
 		for (int i = 0; i < parameterTypes.length; i++) {
 			descriptors[i] = new ObjectDescriptor(parameterTypes[i], annotations[i]);
@@ -82,18 +96,6 @@ public class MethodRequestor extends Requestor {
 		return descriptors;
 	}
 
-	private Annotation[][] getParameterAnnotations() {
-		// We don't synchronize annotationCache to avoid performance overhead.
-		// The code below should be fine non-synchronized; but this needs to be
-		// kept in mind if this method is updated.
-		Annotation[][] result = annotationCache.get(method);
-		if (result == null) {
-			result = method.getParameterAnnotations();
-			annotationCache.put(method, result);
-		}
-		return result;
-	}
-
 	@Override
 	public String toString() {
 		StringBuffer tmp = new StringBuffer();
@@ -22,6 +22,13 @@ public class ObjectDescriptor implements IObjectDescriptor {
 	final private Type desiredType;
 	final private Annotation[] annotations;
 
+	/**
+	 * The key the primary object supplier looks this descriptor up by, or
+	 * <code>null</code> if it has not been computed yet. Descriptors are
+	 * shared by all injections of a class, so the key is only computed once.
+	 */
+	private volatile Object key;
+
 	public ObjectDescriptor(Type desiredType, Annotation[] allAnnotations) {
 		this.desiredType = desiredType;
 		this.annotations = (allAnnotations == null) ? null : qualifiers(allAnnotations);
@@ -47,6 +54,14 @@ public class ObjectDescriptor implements IObjectDescriptor {
 		return annotations;
 	}
 
+	public Object getKey() {
+		return key;
+	}
+
+	public void setKey(Object key) {
+		this.key = key;
+	}
+
 	/**
 	 * Returns null if qualifier is not present
 	 */
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.core.internal.di;
+
+import java.lang.annotation.Annotation;
+import javax.inject.Named;
+import org.eclipse.e4.core.di.GeneratedInjector;
+import org.eclipse.e4.core.di.annotations.Optional;
+
+/**
+ * The qualifiers of the members described by generated injectors. They are
+ * equal to the annotations that reflection returns for the same members.
+ */
+final class Qualifiers {
+
+	final static private Annotation[] NONE = new Annotation[0];
+
+	final static private Optional OPTIONAL = new OptionalQualifier();
+
+	static private class NamedQualifier implements Named {
+
+		final private String value;
+
+		NamedQualifier(String value) {
+			this.value = value;
+		}
+
+		public String value() {
+			return value;
+		}
+
+		public Class<? extends Annotation> annotationType() {
+			return Named.class;
+		}
+
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Named))
+				return false;
+			return value.equals(((Named) obj).value());
+		}
+
+		public int hashCode() {
+			// as specified by java.lang.annotation.Annotation
+			return (127 * "value".hashCode()) ^ value.hashCode(); //$NON-NLS-1$
+		}
+
+		public String toString() {
+			return "@" + Named.class.getName() + "(value=" + value + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+	}
+
+	static private class OptionalQualifier implements Optional {
+
+		public Class<? extends Annotation> annotationType() {
+			return Optional.class;
+		}
+
+		public boolean equals(Object obj) {
+			return obj instanceof Optional;
+		}
+
+		public int hashCode() {
+			return 0;
+		}
+
+		public String toString() {
+			return "@" + Optional.class.getName() + "()"; //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	private Qualifiers() {
+		// no instances
+	}
+
+	/**
+	 * Returns the qualifiers described by the given flags and name.
+	 * @param flags the flags of the member or parameter
+	 * @param name the value of its {@link Named} annotation, or <code>null</code>
+	 */
+	static Annotation[] get(int flags, String name) {
+		boolean optional = (flags & GeneratedInjector.OPTIONAL) != 0;
+		if (name == null)
+			return optional ? new Annotation[] {OPTIONAL} : NONE;
+		Annotation named = new NamedQualifier(name);
+		return optional ? new Annotation[] {named, OPTIONAL} : new Annotation[] {named};
+	}
+}
@@ -43,6 +43,14 @@ abstract public class Requestor implements IRequestor {
 	protected abstract IObjectDescriptor[] calcDependentObjects();
 
 	public Requestor(AccessibleObject reflectionObject, IInjector injector, PrimaryObjectSupplier primarySupplier, PrimaryObjectSupplier tempSupplier, Object requestingObject, boolean track) {
+		this(null, (reflectionObject == null) ? false : reflectionObject.isAnnotationPresent(GroupUpdates.class), (reflectionObject == null) ? false : reflectionObject.isAnnotationPresent(Optional.class), injector, primarySupplier, tempSupplier, requestingObject, track);
+	}
+
+	/**
+	 * Creates a requestor whose descriptors were computed by the injection plan of its class.
+	 */
+	Requestor(IObjectDescriptor[] objectDescriptors, boolean groupUpdates, boolean isOptional, IInjector injector, PrimaryObjectSupplier primarySupplier, PrimaryObjectSupplier tempSupplier, Object requestingObject, boolean track) {
+		this.objectDescriptors = objectDescriptors;
 		this.injector = injector;
 		this.primarySupplier = primarySupplier;
 		this.tempSupplier = tempSupplier;
@@ -57,8 +65,8 @@ abstract public class Requestor implements IRequestor {
 			objectHashcode = 0;
 		}
 		this.track = track;
-		groupUpdates = (reflectionObject == null) ? false : reflectionObject.isAnnotationPresent(GroupUpdates.class);
-		isOptional = (reflectionObject == null) ? false : reflectionObject.isAnnotationPresent(Optional.class);
+		this.groupUpdates = groupUpdates;
+		this.isOptional = isOptional;
 	}
 
 	public IInjector getInjector() {
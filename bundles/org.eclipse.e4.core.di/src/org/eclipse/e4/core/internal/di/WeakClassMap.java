@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.core.internal.di;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A map from classes to values that can be used from several threads at once
+ * and does not prevent the classes from being collected. Reads do not lock;
+ * the entries of collected classes are removed by the next write.
+ * <p>
+ * The values must not strongly refer to their class, or the class is never
+ * collected. A value that needs its class must be held through a soft
+ * reference. The class is then kept until the garbage collector needs the
+ * memory, or until the map is cleared.
+ * </p>
+ */
+final class WeakClassMap<V> {
+
+	/**
+	 * A key that compares the identity of its class.
+	 */
+	static private final class ClassKey extends WeakReference<Class<?>> {
+		final private int hash;
+
+		ClassKey(Class<?> clazz, ReferenceQueue<Class<?>> queue) {
+			super(clazz, queue);
+			hash = System.identityHashCode(clazz);
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof ClassKey))
+				return false;
+			Class<?> clazz = get();
+			return clazz != null && clazz == ((ClassKey) obj).get();
+		}
+	}
+
+	final private ConcurrentHashMap<ClassKey, V> map = new ConcurrentHashMap<ClassKey, V>();
+	final private ReferenceQueue<Class<?>> queue = new ReferenceQueue<Class<?>>();
+
+	V get(Class<?> clazz) {
+		return map.get(new ClassKey(clazz, null));
+	}
+
+	void put(Class<?> clazz, V value) {
+		expunge();
+		map.put(new ClassKey(clazz, queue), value);
+	}
+
+	/**
+	 * Associates the value with the class unless it already has one.
+	 * @return the previous value, or <code>null</code> if the value was added
+	 */
+	V putIfAbsent(Class<?> clazz, V value) {
+		expunge();
+		return map.putIfAbsent(new ClassKey(clazz, queue), value);
+	}
+
+	void clear() {
+		map.clear();
+		expunge();
+	}
+
+	private void expunge() {
+		Reference<? extends Class<?>> key;
+		while ((key = queue.poll()) != null)
+			map.remove(key);
+	}
+}
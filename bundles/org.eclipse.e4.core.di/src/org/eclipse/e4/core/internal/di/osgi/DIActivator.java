@@ -10,13 +10,16 @@
  *******************************************************************************/
 package org.eclipse.e4.core.internal.di.osgi;
 
+import org.eclipse.e4.core.internal.di.InjectionPlan;
 import org.eclipse.osgi.framework.log.FrameworkLog;
 import org.eclipse.osgi.service.debug.DebugOptions;
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.FrameworkEvent;
+import org.osgi.framework.FrameworkListener;
 import org.osgi.util.tracker.ServiceTracker;
 
-public class DIActivator implements BundleActivator {
+public class DIActivator implements BundleActivator, FrameworkListener {
 
 	static private DIActivator defaultInstance;
 	private BundleContext bundleContext;
@@ -33,9 +36,12 @@ public class DIActivator implements BundleActivator {
 
 	public void start(BundleContext context) throws Exception {
 		bundleContext = context;
+		context.addFrameworkListener(this);
 	}
 
 	public void stop(BundleContext context) throws Exception {
+		context.removeFrameworkListener(this);
+		InjectionPlan.flush();
 		if (debugTracker != null) {
 			debugTracker.close();
 			debugTracker = null;
@@ -48,6 +54,12 @@ public class DIActivator implements BundleActivator {
 		bundleContext = null;
 	}
 
+	public void frameworkEvent(FrameworkEvent event) {
+		// refreshed bundles have new classes; forget the members of the old ones
+		if (event.getType() == FrameworkEvent.PACKAGES_REFRESHED)
+			InjectionPlan.flush();
+	}
+
 	public BundleContext getBundleContext() {
 		return bundleContext;
 	}
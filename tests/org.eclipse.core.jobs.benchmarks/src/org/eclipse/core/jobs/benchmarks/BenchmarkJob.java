@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.jobs.benchmarks;
+
+import org.eclipse.core.runtime.*;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * A job that does nothing and belongs to a single family.
+ */
+public class BenchmarkJob extends Job {
+	private final Object family;
+
+	public BenchmarkJob(Object family, ISchedulingRule rule) {
+		super("BenchmarkJob"); //$NON-NLS-1$
+		this.family = family;
+		setSystem(true);
+		setRule(rule);
+	}
+
+	public boolean belongsTo(Object family) {
+		return this.family == family;
+	}
+
+	protected IStatus run(IProgressMonitor monitor) {
+		return Status.OK_STATUS;
+	}
+
+	/**
+	 * Waits for all of the given jobs to finish.
+	 */
+	static void joinAll(Job[] jobs) throws InterruptedException {
+		//IJobManager#join(Object, IProgressMonitor) polls every 100ms, which would
+		//dominate the measurements, so join the jobs one by one instead
+		for (int i = 0; i < jobs.length; i++)
+			jobs[i].join();
+	}
+}
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.jobs.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.eclipse.core.runtime.jobs.IJobManager;
+import org.eclipse.core.runtime.jobs.Job;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link IJobManager#find(Object)} while a large backlog of
+ * sleeping jobs is known to the job manager.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FindBenchmark {
+	private static final int FAMILIES = 10;
+
+	@Param({"1000", "10000"})
+	public int backlog;
+
+	private final IJobManager manager = Job.getJobManager();
+
+	private final Object[] families = new Object[FAMILIES];
+
+	private int next;
+
+	@Setup
+	public void setUp() {
+		for (int i = 0; i < FAMILIES; i++)
+			families[i] = new Object();
+		//schedule far into the future so the backlog stays put
+		for (int i = 0; i < backlog; i++)
+			new BenchmarkJob(families[i % FAMILIES], null).schedule(TimeUnit.HOURS.toMillis(1));
+	}
+
+	@TearDown
+	public void tearDown() {
+		for (int i = 0; i < FAMILIES; i++)
+			manager.cancel(families[i]);
+	}
+
+	@Benchmark
+	public void findFamily(Blackhole blackhole) {
+		blackhole.consume(manager.find(families[next++ % FAMILIES]));
+	}
+
+	@Benchmark
+	public void findAll(Blackhole blackhole) {
+		blackhole.consume(manager.find(null));
+	}
+}
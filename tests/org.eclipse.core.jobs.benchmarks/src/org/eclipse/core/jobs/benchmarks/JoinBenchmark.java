@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.jobs.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.eclipse.core.runtime.jobs.Job;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the latency between scheduling a job and a joining thread
+ * resuming after the job has finished.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JoinBenchmark {
+	private final Object family = new Object();
+
+	@Benchmark
+	public void scheduleAndJoin() throws InterruptedException {
+		Job job = new BenchmarkJob(family, null);
+		job.schedule();
+		job.join();
+	}
+}
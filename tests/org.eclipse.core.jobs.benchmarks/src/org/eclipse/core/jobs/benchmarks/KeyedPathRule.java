@@ -0,0 +1,35 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.jobs.benchmarks;
+
+import org.eclipse.core.runtime.jobs.IKeyedSchedulingRule;
+
+/**
+ * A path rule that exposes its path as a key, so that multi-rules composed
+ * of keyed path rules are indexed.
+ */
+public class KeyedPathRule extends PathRule implements IKeyedSchedulingRule {
+	private final String key;
+
+	public KeyedPathRule(String path) {
+		super(path);
+		//the key has no trailing separator, and the root has the empty key
+		this.key = path.endsWith("/") ? path.substring(0, path.length() - 1) : path; //$NON-NLS-1$
+	}
+
+	public Object getRuleDomain() {
+		return PathRule.class;
+	}
+
+	public String getRuleKey() {
+		return key;
+	}
+}
@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.jobs.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.eclipse.core.runtime.jobs.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the overhead of dispatching job change events to a growing number
+ * of global job change listeners while jobs are scheduled and run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListenerBenchmark {
+	private static final int BATCH = 100;
+
+	@Param({"0", "10", "100"})
+	public int listeners;
+
+	private final IJobManager manager = Job.getJobManager();
+
+	private final Object family = new Object();
+
+	private IJobChangeListener[] added;
+
+	volatile int events;
+
+	@Setup
+	public void setUp() {
+		added = new IJobChangeListener[listeners];
+		for (int i = 0; i < listeners; i++) {
+			added[i] = new JobChangeAdapter() {
+				public void aboutToRun(IJobChangeEvent event) {
+					events++;
+				}
+
+				public void done(IJobChangeEvent event) {
+					events++;
+				}
+			};
+			manager.addJobChangeListener(added[i]);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		for (int i = 0; i < listeners; i++)
+			manager.removeJobChangeListener(added[i]);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void scheduleWithListeners() throws InterruptedException {
+		Job[] jobs = new Job[BATCH];
+		for (int i = 0; i < BATCH; i++) {
+			jobs[i] = new BenchmarkJob(family, null);
+			jobs[i].schedule();
+		}
+		BenchmarkJob.joinAll(jobs);
+	}
+}
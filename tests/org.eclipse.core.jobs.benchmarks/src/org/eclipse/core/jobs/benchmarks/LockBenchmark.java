@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.jobs.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.eclipse.core.runtime.jobs.ILock;
+import org.eclipse.core.runtime.jobs.Job;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures acquiring and releasing an {@link ILock}, both uncontended and
+ * contended by several threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LockBenchmark {
+	private final ILock lock = Job.getJobManager().newLock();
+
+	private int counter;
+
+	private void acquireRelease() {
+		lock.acquire();
+		try {
+			counter++;
+		} finally {
+			lock.release();
+		}
+	}
+
+	@Benchmark
+	@Threads(1)
+	public void uncontended() {
+		acquireRelease();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void contended() {
+		acquireRelease();
+	}
+}
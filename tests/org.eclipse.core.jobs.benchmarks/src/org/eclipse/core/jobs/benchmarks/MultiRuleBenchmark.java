@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.jobs.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.MultiRule;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures conflict checks between two large multi-rules over disjoint
+ * trees, which is the worst case since every pair of children is compared
+ * unless the children are keyed and indexed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MultiRuleBenchmark {
+	@Param({"10", "100", "1000"})
+	public int size;
+
+	@Param({"false", "true"})
+	public boolean keyed;
+
+	private MultiRule first;
+
+	private MultiRule second;
+
+	@Setup
+	public void setUp() {
+		first = createRule("/a", size); //$NON-NLS-1$
+		second = createRule("/b", size); //$NON-NLS-1$
+	}
+
+	private MultiRule createRule(String root, int children) {
+		ISchedulingRule[] rules = new ISchedulingRule[children];
+		for (int i = 0; i < children; i++) {
+			String path = root + '/' + (i % 10) + '/' + i;
+			rules[i] = keyed ? new KeyedPathRule(path) : new PathRule(path);
+		}
+		return new MultiRule(rules);
+	}
+
+	@Benchmark
+	public boolean isConflicting() {
+		return first.isConflicting(second);
+	}
+
+	@Benchmark
+	public boolean contains() {
+		return first.contains(second);
+	}
+}
@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.jobs.benchmarks;
+
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+
+/**
+ * A hierarchical rule based on a slash separated path. A path rule contains
+ * another path rule if its path is a prefix of the other rule's path. A path
+ * rule is conflicting with another rule if either one contains the other.
+ */
+public class PathRule implements ISchedulingRule {
+	private final String path;
+
+	public PathRule(String path) {
+		this.path = path.endsWith("/") ? path : path + '/'; //$NON-NLS-1$
+	}
+
+	public boolean contains(ISchedulingRule rule) {
+		if (this == rule)
+			return true;
+		if (!(rule instanceof PathRule))
+			return false;
+		return ((PathRule) rule).path.startsWith(path);
+	}
+
+	public boolean isConflicting(ISchedulingRule rule) {
+		if (!(rule instanceof PathRule))
+			return false;
+		String otherPath = ((PathRule) rule).path;
+		return otherPath.startsWith(path) || path.startsWith(otherPath);
+	}
+
+	public String toString() {
+		return "PathRule(" + path + ")"; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+}
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.jobs.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.eclipse.core.runtime.jobs.IJobManager;
+import org.eclipse.core.runtime.jobs.Job;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the cost of beginning and ending nested scheduling rules on a
+ * thread that is not running a job.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuleBenchmark {
+	@Param({"1", "4", "16"})
+	public int depth;
+
+	private PathRule[] rules;
+
+	private final IJobManager manager = Job.getJobManager();
+
+	@Setup
+	public void setUp() {
+		//each thread works in its own tree so that threads never conflict
+		String path = "/" + Thread.currentThread().getName(); //$NON-NLS-1$
+		rules = new PathRule[depth];
+		for (int i = 0; i < depth; i++) {
+			path += "/" + i; //$NON-NLS-1$
+			rules[i] = new PathRule(path);
+		}
+	}
+
+	@Benchmark
+	public void beginEndNested() {
+		for (int i = 0; i < depth; i++)
+			manager.beginRule(rules[i], null);
+		for (int i = depth - 1; i >= 0; i--)
+			manager.endRule(rules[i]);
+	}
+}
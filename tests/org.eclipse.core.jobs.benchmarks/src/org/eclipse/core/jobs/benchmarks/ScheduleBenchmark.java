@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.jobs.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.eclipse.core.runtime.jobs.Job;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the throughput of scheduling jobs and running them to completion,
+ * both for jobs without scheduling rules, which may all run in parallel, and
+ * for jobs sharing one scheduling rule, which must run one after the other.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScheduleBenchmark {
+	private static final int BATCH = 100;
+
+	private final Object family = new Object();
+
+	private final PathRule rule = new PathRule("/project"); //$NON-NLS-1$
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void scheduleRuleless() throws InterruptedException {
+		Job[] jobs = new Job[BATCH];
+		for (int i = 0; i < BATCH; i++) {
+			jobs[i] = new BenchmarkJob(family, null);
+			jobs[i].schedule();
+		}
+		BenchmarkJob.joinAll(jobs);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void scheduleConflicting() throws InterruptedException {
+		Job[] jobs = new Job[BATCH];
+		for (int i = 0; i < BATCH; i++) {
+			jobs[i] = new BenchmarkJob(family, rule);
+			jobs[i].schedule();
+		}
+		BenchmarkJob.joinAll(jobs);
+	}
+}
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.core.di.benchmarks;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures how the injector accesses the private members of injected objects:
+ * either making the member accessible around each access, as the field and
+ * method requestors of <code>org.eclipse.e4.core.di</code> do for members
+ * that are not accessible, or using a member made accessible once, as the
+ * injection plans do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccessibleBenchmark {
+
+	static class Target {
+		private String field;
+
+		private void method(String value) {
+			field = value;
+		}
+	}
+
+	private final Target target = new Target();
+
+	private final String value = "value";
+
+	private Field toggledField;
+	private Field accessibleField;
+	private Method toggledMethod;
+	private Method accessibleMethod;
+
+	@Setup
+	public void setUp() throws Exception {
+		toggledField = Target.class.getDeclaredField("field");
+		accessibleField = Target.class.getDeclaredField("field");
+		accessibleField.setAccessible(true);
+		toggledMethod = Target.class.getDeclaredMethod("method", String.class);
+		accessibleMethod = Target.class.getDeclaredMethod("method", String.class);
+		accessibleMethod.setAccessible(true);
+	}
+
+	@Benchmark
+	public void fieldToggled() throws Exception {
+		boolean wasAccessible = true;
+		if (!toggledField.isAccessible()) {
+			toggledField.setAccessible(true);
+			wasAccessible = false;
+		}
+		try {
+			toggledField.set(target, value);
+		} finally {
+			if (!wasAccessible)
+				toggledField.setAccessible(false);
+		}
+	}
+
+	@Benchmark
+	public void fieldAccessible() throws Exception {
+		if (!accessibleField.isAccessible())
+			throw new IllegalStateException();
+		accessibleField.set(target, value);
+	}
+
+	@Benchmark
+	public void methodToggled() throws Exception {
+		boolean wasAccessible = true;
+		if (!toggledMethod.isAccessible()) {
+			toggledMethod.setAccessible(true);
+			wasAccessible = false;
+		}
+		try {
+			toggledMethod.invoke(target, value);
+		} finally {
+			if (!wasAccessible)
+				toggledMethod.setAccessible(false);
+		}
+	}
+
+	@Benchmark
+	public void methodAccessible() throws Exception {
+		if (!accessibleMethod.isAccessible())
+			throw new IllegalStateException();
+		accessibleMethod.invoke(target, value);
+	}
+}
@@ -42,6 +42,7 @@ public class AllTests extends TestCase {
 		suite.addTestSuite(Bug_311863.class);
 		suite.addTestSuite(Bug_316839.class);
 		suite.addTestSuite(Bug_320329.class);
+		suite.addTestSuite(WorkerPoolTest.class);
 		return suite;
 	}
 }
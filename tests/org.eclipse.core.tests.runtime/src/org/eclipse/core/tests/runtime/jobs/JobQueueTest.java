@@ -10,10 +10,12 @@
  *******************************************************************************/
 package org.eclipse.core.tests.runtime.jobs;
 
+import java.lang.reflect.Method;
 import junit.framework.TestCase;
 import org.eclipse.core.internal.jobs.InternalJob;
 import org.eclipse.core.internal.jobs.JobQueue;
 import org.eclipse.core.runtime.*;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipse.core.runtime.jobs.Job;
 
 /**
@@ -26,6 +28,12 @@ public class JobQueueTest extends TestCase {
 			setPriority(value);
 		}
 
+		Entry(long startTime, ISchedulingRule rule) {
+			super("Entry");
+			setRule(rule);
+			setStartTime(this, startTime);
+		}
+
 		protected IStatus run(IProgressMonitor monitor) {
 			return Status.OK_STATUS;
 		}
@@ -90,6 +98,84 @@ public class JobQueueTest extends TestCase {
 		assertEquals("3.1", 0, count);
 	}
 
+	/**
+	 * Sets the start time of a queue entry, which orders the queue. The job
+	 * manager sets it from the priority of the job when it is scheduled.
+	 */
+	static void setStartTime(InternalJob entry, long startTime) {
+		try {
+			Method method = InternalJob.class.getDeclaredMethod("setStartTime", new Class[] {long.class});
+			method.setAccessible(true);
+			method.invoke(entry, new Object[] {Long.valueOf(startTime)});
+		} catch (Exception e) {
+			fail(e.toString());
+		}
+	}
+
+	/**
+	 * Returns the start time of a queue entry.
+	 */
+	static long getStartTime(InternalJob entry) {
+		try {
+			Method method = InternalJob.class.getDeclaredMethod("getStartTime", new Class[0]);
+			method.setAccessible(true);
+			return ((Long) method.invoke(entry, new Object[0])).longValue();
+		} catch (Exception e) {
+			fail(e.toString());
+			return 0;
+		}
+	}
+
+	public void testAgeNewerEntries() {
+		long now = 100000;
+		Entry decorate = new Entry(now + 1000, null);
+		queue.enqueue(decorate);
+		//without aging, a newer entry with a shorter delay goes first
+		Entry interactive = new Entry(now + 100, null);
+		queue.enqueue(interactive);
+		assertEquals("1.0", interactive, queue.peek());
+		queue.remove(interactive);
+		//after four half-lives, the delay of the waiting entry is down to 62ms
+		queue.age(now, 400, 100);
+		assertEquals("2.0", now + 62, getStartTime(decorate));
+		queue.enqueue(interactive);
+		assertEquals("2.1", decorate, queue.dequeue());
+		assertEquals("2.2", interactive, queue.dequeue());
+		assertTrue("2.3", queue.isEmpty());
+	}
+
+	public void testAgeKeepsOrder() {
+		long now = 100000;
+		Entry[] entries = new Entry[] {new Entry(now - 10, null), new Entry(now + 50, null), new Entry(now + 100, null), new Entry(now + 500, null), new Entry(now + 1000, null)};
+		for (int i = entries.length; --i >= 0;)
+			queue.enqueue(entries[i]);
+		queue.age(now, 100, 100);
+		//entries that are already due are not aged
+		assertEquals("1.0", now - 10, getStartTime(entries[0]));
+		assertEquals("1.1", now + 500, getStartTime(entries[4]));
+		for (int i = 0; i < entries.length; i++)
+			assertEquals("2." + i, entries[i], queue.dequeue());
+	}
+
+	public void testAgeDoesNotOvertakeConflicting() {
+		long now = 100000;
+		ISchedulingRule rule = new IdentityRule();
+		//the second entry is due first, but cannot overtake the first one because they conflict
+		Entry first = new Entry(now + 1000, rule);
+		Entry second = new Entry(now + 100, rule);
+		Entry other = new Entry(now + 500, null);
+		queue.enqueue(first);
+		queue.enqueue(second);
+		queue.enqueue(other);
+		queue.age(now, 400, 100);
+		assertEquals("1.0", now + 62, getStartTime(first));
+		assertEquals("1.1", now + 6, getStartTime(second));
+		assertEquals("1.2", now + 31, getStartTime(other));
+		assertEquals("2.0", first, queue.dequeue());
+		assertEquals("2.1", second, queue.dequeue());
+		assertEquals("2.2", other, queue.dequeue());
+	}
+
 	private Entry[] createEntries() {
 		return new Entry[] {new Entry(Job.INTERACTIVE), new Entry(Job.BUILD), new Entry(Job.INTERACTIVE), new Entry(Job.SHORT), new Entry(Job.DECORATE), new Entry(Job.LONG), new Entry(Job.SHORT), new Entry(Job.BUILD), new Entry(Job.LONG), new Entry(Job.DECORATE),};
 	}
@@ -0,0 +1,38 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.tests.runtime.jobs;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.jobs.IKeyedSchedulingRule;
+
+/**
+ * A path rule that exposes its path as a key, so that large multi-rules
+ * composed of keyed path rules are indexed.
+ */
+public class KeyedPathRule extends PathRule implements IKeyedSchedulingRule {
+	public KeyedPathRule(IPath path) {
+		super(path);
+	}
+
+	public KeyedPathRule(String pathString) {
+		super(pathString);
+	}
+
+	public Object getRuleDomain() {
+		return PathRule.class;
+	}
+
+	public String getRuleKey() {
+		IPath path = getFullPath();
+		//the root contains all other absolute paths
+		return path.isRoot() ? "" : path.toString();
+	}
+}
@@ -80,4 +80,78 @@ public class MultiRuleTest extends AbstractJobTest {
 		assertTrue("1.5", multi2.isConflicting(multi1));
 		assertTrue("1.6", multi1.isConflicting(multi1));
 	}
+
+	/**
+	 * Returns rules for a tree of paths, either keyed or not.
+	 */
+	private ISchedulingRule[] createPathRules(boolean keyed) {
+		ISchedulingRule[] result = new ISchedulingRule[40];
+		for (int i = 0; i < result.length; i++) {
+			String path = "/p" + (i % 10) + "/f" + i;
+			result[i] = keyed ? new KeyedPathRule(path) : new PathRule(path);
+		}
+		return result;
+	}
+
+	/**
+	 * Probes that are equal to, above, below, beside and unrelated to the
+	 * children created by createPathRules.
+	 */
+	private String[] getProbePaths() {
+		return new String[] {"/", "/p1", "/p1/f11", "/p1/f11/x", "/p1/f1", "/p1/f", "/p1/f111", "/p10", "/p", "/q", "/q/p1/f11"};
+	}
+
+	public void testIndexedContains() {
+		MultiRule indexed = new MultiRule(createPathRules(true));
+		MultiRule plain = new MultiRule(createPathRules(false));
+		String[] probes = getProbePaths();
+		for (int i = 0; i < probes.length; i++) {
+			assertEquals("1." + probes[i], plain.contains(new PathRule(probes[i])), indexed.contains(new KeyedPathRule(probes[i])));
+			assertEquals("2." + probes[i], plain.contains(new PathRule(probes[i])), indexed.contains(new PathRule(probes[i])));
+		}
+		assertTrue("3.0", indexed.contains(new KeyedPathRule("/p3/f13/x")));
+		assertTrue("3.1", !indexed.contains(new KeyedPathRule("/p3")));
+		assertTrue("3.2", indexed.contains(plain));
+		assertTrue("3.3", plain.contains(indexed));
+		assertTrue("3.4", !indexed.contains(new MultiRule(new ISchedulingRule[] {new KeyedPathRule("/p3/f13"), new KeyedPathRule("/q")})));
+	}
+
+	public void testIndexedIsConflicting() {
+		MultiRule indexed = new MultiRule(createPathRules(true));
+		MultiRule plain = new MultiRule(createPathRules(false));
+		String[] probes = getProbePaths();
+		for (int i = 0; i < probes.length; i++) {
+			assertEquals("1." + probes[i], plain.isConflicting(new PathRule(probes[i])), indexed.isConflicting(new KeyedPathRule(probes[i])));
+			assertEquals("2." + probes[i], plain.isConflicting(new PathRule(probes[i])), indexed.isConflicting(new PathRule(probes[i])));
+		}
+		assertTrue("3.0", indexed.isConflicting(plain));
+		assertTrue("3.1", plain.isConflicting(indexed));
+		assertTrue("3.2", !indexed.isConflicting(new IdentityRule()));
+	}
+
+	public void testIndexedMixedChildren() {
+		ISchedulingRule[] children = createPathRules(true);
+		//replace a few keyed children by plain ones, which are not indexed
+		children[3] = new PathRule("/p3/f3");
+		children[4] = new IdentityRule();
+		children[5] = new KeyedPathRule("/other");
+		MultiRule multi = new MultiRule(children);
+		assertTrue("1.0", multi.isConflicting(new KeyedPathRule("/p3")));
+		assertTrue("1.1", multi.contains(new KeyedPathRule("/p3/f3/x")));
+		assertTrue("1.2", multi.isConflicting(children[4]));
+		assertTrue("1.3", multi.contains(children[4]));
+		assertTrue("1.4", multi.contains(new KeyedPathRule("/other/x")));
+		assertTrue("1.5", !multi.isConflicting(new KeyedPathRule("/p4/f3")));
+	}
+
+	public void testIndexedCombine() {
+		ISchedulingRule[] children = createPathRules(true);
+		ISchedulingRule combined = MultiRule.combine(children);
+		for (int i = 0; i < children.length; i++)
+			assertTrue("1." + i, combined.contains(children[i]));
+		assertTrue("1.0", combined.isConflicting(new KeyedPathRule("/p2")));
+		assertTrue("1.1", !combined.isConflicting(new KeyedPathRule("/q")));
+		//combining with a contained rule returns the same rule
+		assertEquals("2.0", combined, MultiRule.combine(combined, new KeyedPathRule("/p1/f1/x")));
+	}
 }
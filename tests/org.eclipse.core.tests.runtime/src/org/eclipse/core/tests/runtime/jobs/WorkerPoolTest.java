@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.tests.runtime.jobs;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import org.eclipse.core.internal.jobs.JobManager;
+import org.eclipse.core.internal.jobs.WorkerPoolPolicy;
+import org.eclipse.core.runtime.*;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * Tests the sizing policy of the worker pool.
+ */
+public class WorkerPoolTest extends AbstractJobManagerTest {
+	/**
+	 * A job that sleeps for a while, and records how many such jobs ran at once.
+	 */
+	class SleepingJob extends Job {
+		private final long duration;
+
+		SleepingJob(long duration) {
+			super("SleepingJob");
+			this.duration = duration;
+			setSystem(true);
+		}
+
+		public boolean belongsTo(Object family) {
+			return family == WorkerPoolTest.this;
+		}
+
+		protected IStatus run(IProgressMonitor monitor) {
+			synchronized (WorkerPoolTest.this) {
+				maxRunning = Math.max(maxRunning, ++running);
+			}
+			try {
+				Thread.sleep(duration);
+			} catch (InterruptedException e) {
+				//ignore
+			}
+			synchronized (WorkerPoolTest.this) {
+				running--;
+			}
+			return Status.OK_STATUS;
+		}
+	}
+
+	int maxRunning = 0;
+	int running = 0;
+
+	public static Test suite() {
+		return new TestSuite(WorkerPoolTest.class);
+	}
+
+	public WorkerPoolTest() {
+		super();
+	}
+
+	public WorkerPoolTest(String name) {
+		super(name);
+	}
+
+	private JobManager getJobManager() {
+		return (JobManager) manager;
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		//let idle workers left over by other tests expire
+		getJobManager().setWorkerPoolPolicy(new WorkerPoolPolicy(1, Integer.MAX_VALUE, 10, 0));
+		for (int i = 0; i < 500 && getJobManager().getWorkerCount() > 2; i++)
+			sleep(10);
+	}
+
+	protected void tearDown() throws Exception {
+		getJobManager().setWorkerPoolPolicy(null);
+		super.tearDown();
+	}
+
+	private void scheduleAndJoin(int count, long duration) {
+		for (int i = 0; i < count; i++)
+			new SleepingJob(duration).schedule();
+		try {
+			manager.join(this, null);
+		} catch (InterruptedException e) {
+			fail("Interrupted while joining", e);
+		}
+	}
+
+	public void testDefaultPolicy() {
+		WorkerPoolPolicy policy = WorkerPoolPolicy.DEFAULT;
+		assertEquals("1.0", 1, policy.getCoreThreads());
+		assertEquals("1.1", Integer.MAX_VALUE, policy.getMaxThreads());
+		assertEquals("1.2", 60000L, policy.getKeepAlive());
+		assertEquals("1.3", 0L, policy.getGrowthInterval());
+	}
+
+	public void testInvalidPolicy() {
+		WorkerPoolPolicy policy = new WorkerPoolPolicy(0, -1, -1, -1);
+		assertEquals("1.0", 1, policy.getCoreThreads());
+		assertEquals("1.1", 1, policy.getMaxThreads());
+		assertTrue("1.2", policy.getKeepAlive() > 0);
+		assertEquals("1.3", 0L, policy.getGrowthInterval());
+	}
+
+	public void testMaxThreads() {
+		int existing = getJobManager().getWorkerCount();
+		getJobManager().setWorkerPoolPolicy(new WorkerPoolPolicy(1, 2, 60000, 0));
+		scheduleAndJoin(6, 100);
+		assertTrue("1.0: " + maxRunning, maxRunning <= Math.max(2, existing));
+		assertTrue("1.1", getJobManager().getWorkerCount() <= Math.max(2, existing));
+	}
+
+	public void testKeepAlive() {
+		getJobManager().setWorkerPoolPolicy(new WorkerPoolPolicy(1, Integer.MAX_VALUE, 100, 0));
+		int expired = getJobManager().getExpiredWorkerCount();
+		scheduleAndJoin(4, 200);
+		assertTrue("1.0: " + maxRunning, maxRunning > 1);
+		//a worker only expires if more than the core number of other workers are idle
+		for (int i = 0; i < 500 && getJobManager().getWorkerCount() > 2; i++)
+			sleep(10);
+		assertTrue("1.1", getJobManager().getWorkerCount() <= 2);
+		assertTrue("1.2", getJobManager().getExpiredWorkerCount() > expired);
+	}
+
+	public void testGrowthInterval() {
+		getJobManager().setWorkerPoolPolicy(new WorkerPoolPolicy(1, Integer.MAX_VALUE, 60000, 200));
+		int created = getJobManager().getCreatedWorkerCount();
+		long start = System.currentTimeMillis();
+		scheduleAndJoin(4, 500);
+		long elapsed = System.currentTimeMillis() - start;
+		//all jobs eventually ran concurrently, but the workers were created one at a time
+		int newWorkers = getJobManager().getCreatedWorkerCount() - created;
+		assertTrue("1.0: " + newWorkers, newWorkers > 0);
+		assertTrue("1.1: " + elapsed, elapsed >= 200L * (newWorkers - 1));
+	}
+}
@@ -44,6 +44,7 @@ public class AllTests extends TestCase {
 		suite.addTest(BenchPath.suite());
 		suite.addTest(ContentTypePerformanceTest.suite());
 		suite.addTest(PreferencePerformanceTest.suite());
+		suite.addTest(JobPerformanceTest.suite());
 		return suite;
 	}
 }
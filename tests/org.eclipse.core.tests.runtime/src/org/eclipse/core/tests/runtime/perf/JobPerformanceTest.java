@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.tests.runtime.perf;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import org.eclipse.core.internal.jobs.CoalescingProgressMonitor;
+import org.eclipse.core.internal.jobs.JobManager;
+import org.eclipse.core.internal.jobs.WorkerPoolPolicy;
+import org.eclipse.core.runtime.*;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.tests.harness.PerformanceTestRunner;
+import org.eclipse.core.tests.runtime.RuntimeTest;
+import org.eclipse.core.tests.runtime.jobs.IdentityRule;
+
+/**
+ * Performance tests for the job manager.
+ */
+public class JobPerformanceTest extends RuntimeTest {
+	/**
+	 * Family of the jobs used to saturate the job manager.
+	 */
+	static final Object LOAD_FAMILY = new Object();
+
+	/**
+	 * A job that keeps rescheduling itself until the load ends or it is canceled.
+	 */
+	class LoadJob extends Job {
+		private final long loadEnd;
+
+		LoadJob(long loadEnd) {
+			super("LoadJob");
+			this.loadEnd = loadEnd;
+			setSystem(true);
+			setPriority(Job.INTERACTIVE);
+			setRule(new IdentityRule());
+		}
+
+		public boolean belongsTo(Object family) {
+			return family == LOAD_FAMILY;
+		}
+
+		protected IStatus run(IProgressMonitor monitor) {
+			long end = System.currentTimeMillis() + 2;
+			while (System.currentTimeMillis() < end && !monitor.isCanceled()) {
+				//busy wait to keep the worker occupied
+			}
+			if (monitor.isCanceled())
+				return Status.CANCEL_STATUS;
+			if (System.currentTimeMillis() < loadEnd)
+				schedule();
+			return Status.OK_STATUS;
+		}
+	}
+
+	/**
+	 * A monitor that mimics the cost of a progress provider monitor that
+	 * synchronizes with the UI on every update.
+	 */
+	static class ProviderMonitor extends NullProgressMonitor {
+		private final StringBuffer updates = new StringBuffer();
+		private int worked = 0;
+
+		public synchronized void subTask(String name) {
+			updates.setLength(0);
+			updates.append(name);
+		}
+
+		public synchronized void worked(int work) {
+			worked += work;
+			updates.setLength(0);
+			updates.append(worked);
+		}
+	}
+
+	public static Test suite() {
+		return new TestSuite(JobPerformanceTest.class);
+	}
+
+	public JobPerformanceTest() {
+		super();
+	}
+
+	public JobPerformanceTest(String testName) {
+		super(testName);
+	}
+
+	/**
+	 * The longest time in milliseconds a DECORATE job waited in the current test.
+	 */
+	long maxDecorateWait;
+
+	protected void tearDown() throws Exception {
+		getJobManager().setAgingHalfLife(0L);
+		getJobManager().setWorkerPoolPolicy(null);
+		super.tearDown();
+	}
+
+	private JobManager getJobManager() {
+		return (JobManager) Job.getJobManager();
+	}
+
+	/**
+	 * Measures the time a DECORATE job waits before it starts running while the
+	 * job manager is saturated with INTERACTIVE jobs. The worker pool is capped
+	 * and there are more load jobs than workers, so that INTERACTIVE jobs are
+	 * always waiting ahead of the DECORATE job. Without aging, the DECORATE job
+	 * waits for at least its whole priority delay. The load ends after a while
+	 * so that a DECORATE job that is never promoted still runs eventually.
+	 * Each measurement is the wait of one DECORATE job, and the longest wait
+	 * is reported in debug mode.
+	 */
+	private void runDecorateUnderInteractiveLoad() {
+		final int workers = Math.max(2, Runtime.getRuntime().availableProcessors());
+		final int loadJobs = workers * 4;
+		final long loadDuration = 5000;
+		maxDecorateWait = 0;
+		//let idle workers left over by other tests expire, so that the cap holds
+		getJobManager().setWorkerPoolPolicy(new WorkerPoolPolicy(1, workers, 10L, 0L));
+		try {
+			for (int i = 0; i < 500 && getJobManager().getWorkerCount() > workers; i++)
+				Thread.sleep(10);
+		} catch (InterruptedException e) {
+			fail("Interrupted while waiting for idle workers", e);
+		}
+		new PerformanceTestRunner() {
+			protected void setUp() {
+				long loadEnd = System.currentTimeMillis() + loadDuration;
+				for (int i = 0; i < loadJobs; i++)
+					new LoadJob(loadEnd).schedule();
+				//let the load jobs occupy all workers
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException e) {
+					fail("Interrupted while starting load jobs", e);
+				}
+			}
+
+			protected void tearDown() {
+				Job.getJobManager().cancel(LOAD_FAMILY);
+				try {
+					Job.getJobManager().join(LOAD_FAMILY, null);
+				} catch (InterruptedException e) {
+					fail("Interrupted while waiting for load jobs", e);
+				}
+			}
+
+			protected void test() {
+				final long[] started = new long[1];
+				Job decorate = new Job("DecorateJob") {
+					protected IStatus run(IProgressMonitor monitor) {
+						started[0] = System.currentTimeMillis();
+						return Status.OK_STATUS;
+					}
+				};
+				decorate.setSystem(true);
+				decorate.setPriority(Job.DECORATE);
+				decorate.setRule(new IdentityRule());
+				long scheduled = System.currentTimeMillis();
+				decorate.schedule();
+				try {
+					decorate.join();
+				} catch (InterruptedException e) {
+					fail("Interrupted while waiting for decoration job", e);
+				}
+				maxDecorateWait = Math.max(maxDecorateWait, started[0] - scheduled);
+			}
+		}.run(this, 10, 1);
+		debug(getName() + ": longest DECORATE wait " + maxDecorateWait + "ms");
+	}
+
+	/**
+	 * Wait time of DECORATE jobs under INTERACTIVE saturation without aging.
+	 */
+	public void testDecorateWaitWithoutAging() {
+		getJobManager().setAgingHalfLife(0L);
+		runDecorateUnderInteractiveLoad();
+	}
+
+	/**
+	 * Wait time of DECORATE jobs under INTERACTIVE saturation with a 200ms aging half-life.
+	 */
+	public void testDecorateWaitWithAging() {
+		getJobManager().setAgingHalfLife(200L);
+		runDecorateUnderInteractiveLoad();
+	}
+
+	/**
+	 * Reports progress in a tight loop with the given monitor.
+	 */
+	private void runWorkedLoop(final IProgressMonitor monitor) {
+		final int ticks = 1000000;
+		new PerformanceTestRunner() {
+			protected void test() {
+				monitor.beginTask("", ticks);
+				for (int i = 0; i < ticks; i++) {
+					if (i % 1000 == 0)
+						monitor.subTask(Integer.toString(i));
+					monitor.worked(1);
+					if (monitor.isCanceled())
+						break;
+				}
+				monitor.done();
+			}
+		}.run(this, 10, 1);
+	}
+
+	/**
+	 * Tight worked() loop reported directly to the provider monitor.
+	 */
+	public void testWorkedLoopDirect() {
+		runWorkedLoop(new ProviderMonitor());
+	}
+
+	/**
+	 * Tight worked() loop reported through a coalescing monitor.
+	 */
+	public void testWorkedLoopCoalesced() {
+		runWorkedLoop(new CoalescingProgressMonitor(new ProviderMonitor(), 50L));
+	}
+}
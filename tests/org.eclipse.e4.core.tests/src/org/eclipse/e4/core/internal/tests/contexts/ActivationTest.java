@@ -20,6 +20,7 @@ import org.eclipse.e4.core.contexts.ContextFunction;
 import org.eclipse.e4.core.contexts.EclipseContextFactory;
 import org.eclipse.e4.core.contexts.IEclipseContext;
 import org.eclipse.e4.core.contexts.RunAndTrack;
+import org.eclipse.e4.core.internal.contexts.EclipseContext;
 
 public class ActivationTest extends TestCase {
 
@@ -249,6 +250,72 @@ public class ActivationTest extends TestCase {
 		assertEquals(2, called[0]);
 	}
 
+	public void testGetActiveLeafTracked() {
+		IEclipseContext root = EclipseContextFactory.create("root");
+		IEclipseContext child1 = root.createChild("child1");
+		IEclipseContext child11 = child1.createChild("child11");
+		IEclipseContext child111 = child11.createChild("child111");
+		IEclipseContext child12 = child1.createChild("child12");
+
+		final IEclipseContext[] result = new IEclipseContext[1];
+		root.runAndTrack(new RunAndTrack() {
+			public boolean changed(IEclipseContext context) {
+				result[0] = context.getActiveLeaf();
+				return true;
+			}
+		});
+		assertEquals(root, result[0]);
+
+		child11.activateBranch();
+		assertEquals(child11, result[0]);
+		assertEquals(child11, root.getActiveLeaf());
+		assertEquals(child11, child1.getActiveLeaf());
+
+		// a change deep in the chain changes the leaf of all ancestors
+		child111.activate();
+		assertEquals(child111, result[0]);
+		assertEquals(child111, root.getActiveLeaf());
+		assertEquals(child111, child1.getActiveLeaf());
+
+		child12.activate();
+		assertEquals(child12, result[0]);
+		assertEquals(child12, root.getActiveLeaf());
+		assertEquals(child111, child11.getActiveLeaf());
+
+		// child11 is no longer on the active chain
+		child111.deactivate();
+		assertEquals(child12, result[0]);
+		assertEquals(child12, root.getActiveLeaf());
+		assertEquals(child11, child11.getActiveLeaf());
+
+		child12.dispose();
+		assertEquals(child1, result[0]);
+		assertEquals(child1, root.getActiveLeaf());
+		root.dispose();
+	}
+
+	public void testGetActiveSingleTracker() {
+		IEclipseContext root = EclipseContextFactory.create("root");
+		IEclipseContext child1 = root.createChild("child1");
+		IEclipseContext child2 = root.createChild("child2");
+		child1.set("var", "1");
+		child2.set("var", "2");
+
+		child1.activate();
+		assertEquals("1", root.getActive("var"));
+		int listeners = ((EclipseContext) root).getListeners(EclipseContext.ACTIVE_CHILD).size();
+
+		// the variable is gone, but its tracker is still there
+		root.remove("org.eclipse.ui.active_var");
+		for (int i = 0; i < 10; i++)
+			assertEquals("1", root.getActive("var"));
+		assertEquals(listeners, ((EclipseContext) root).getListeners(EclipseContext.ACTIVE_CHILD).size());
+
+		child2.activate();
+		assertEquals("2", root.getActive("var"));
+		root.dispose();
+	}
+
 	public static class ActiveInject {
 		//@Inject @Named("var")
 		public String value;
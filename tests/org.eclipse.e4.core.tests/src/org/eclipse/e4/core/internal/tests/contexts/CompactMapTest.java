@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.core.internal.tests.contexts;
+
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.eclipse.e4.core.internal.contexts.CompactMap;
+
+public class CompactMapTest extends TestCase {
+
+	public void testPutGetRemove() {
+		CompactMap<String> map = new CompactMap<String>();
+		assertTrue(map.isEmpty());
+		assertNull(map.put("a", "1"));
+		assertNull(map.put("b", "2"));
+		assertEquals("1", map.put("a", "3"));
+		assertEquals("3", map.get("a"));
+		assertEquals("2", map.get("b"));
+		assertEquals(2, map.size());
+		assertEquals("2", map.remove("b"));
+		assertNull(map.remove("b"));
+		assertFalse(map.containsKey("b"));
+		assertEquals(1, map.size());
+	}
+
+	public void testPutIfAbsent() {
+		CompactMap<String> map = new CompactMap<String>();
+		assertNull(map.putIfAbsent("a", "1"));
+		assertEquals("1", map.putIfAbsent("a", "2"));
+		assertEquals("1", map.get("a"));
+	}
+
+	public void testManyEntries() {
+		CompactMap<Integer> map = new CompactMap<Integer>();
+		for (int i = 0; i < 100; i++)
+			map.put("name" + i, new Integer(i));
+		assertEquals(100, map.size());
+		for (int i = 0; i < 100; i += 2)
+			assertEquals(new Integer(i), map.remove("name" + i));
+		assertEquals(50, map.size());
+		for (int i = 0; i < 100; i++)
+			assertEquals(i % 2 == 0 ? null : new Integer(i), map.get("name" + i));
+		Map<String, Integer> copy = map.toMap();
+		assertEquals(50, copy.size());
+		assertEquals(new Integer(99), copy.get("name99"));
+		map.clear();
+		assertTrue(map.isEmpty());
+		assertNull(map.get("name99"));
+	}
+
+	public void testInternedLookup() {
+		CompactMap<String> map = new CompactMap<String>();
+		map.put(new String("a"), "1");
+		assertEquals("1", map.get("a", true));
+		map.put(new String("b"), "2");
+		assertEquals("2", map.get("b", true));
+		assertEquals("1", map.get("a", true));
+		map.put("a", "3");
+		assertEquals("3", map.get("a", true));
+		map.remove("b");
+		assertNull(map.get("b", true));
+		for (int i = 0; i < 100; i++)
+			map.put(new String("name" + i), "value" + i);
+		assertEquals("value99", map.get("name99", true));
+		assertEquals("3", map.get("a", true));
+	}
+
+	public void testNullValue() {
+		CompactMap<String> map = new CompactMap<String>();
+		try {
+			map.put("a", null);
+			fail("Null values are not supported");
+		} catch (NullPointerException e) {
+			// expected
+		}
+	}
+}
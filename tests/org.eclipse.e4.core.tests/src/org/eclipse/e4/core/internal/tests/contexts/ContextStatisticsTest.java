@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.core.internal.tests.contexts;
+
+import junit.framework.TestCase;
+
+import org.eclipse.e4.core.contexts.ContextFunction;
+import org.eclipse.e4.core.contexts.EclipseContextFactory;
+import org.eclipse.e4.core.contexts.IEclipseContext;
+import org.eclipse.e4.core.contexts.RunAndTrack;
+import org.eclipse.e4.core.internal.contexts.ContextStatistics;
+import org.eclipse.e4.core.internal.contexts.ContextStatistics.KeyStatistics;
+import org.eclipse.e4.core.internal.contexts.EclipseContext;
+
+/**
+ * Tests the statistics collected about context usage.
+ */
+public class ContextStatisticsTest extends TestCase {
+
+	private IEclipseContext root;
+	private IEclipseContext leaf;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ContextStatistics.setEnabled(true);
+		ContextStatistics.reset();
+		root = EclipseContextFactory.create(getName() + "-root");
+		leaf = root.createChild(getName() + "-middle").createChild(getName() + "-leaf");
+	}
+
+	protected void tearDown() throws Exception {
+		root.dispose();
+		ContextStatistics.setEnabled(false);
+		super.tearDown();
+	}
+
+	private KeyStatistics getStatistics(String name) {
+		KeyStatistics result = ContextStatistics.getSnapshot().getKeyStatistics().get(name);
+		assertNotNull(result);
+		return result;
+	}
+
+	public void testLookups() {
+		root.set("foo", "a");
+		leaf.set("bar", "b");
+		leaf.get("foo");
+		leaf.get("foo");
+		leaf.get("bar");
+		KeyStatistics foo = getStatistics("foo");
+		assertEquals(2, foo.getLookups());
+		assertEquals(4, foo.getTotalDepth());
+		assertEquals(2, foo.getMaxDepth());
+		KeyStatistics bar = getStatistics("bar");
+		assertEquals(1, bar.getLookups());
+		assertEquals(0, bar.getMaxDepth());
+	}
+
+	public void testCacheHits() {
+		((EclipseContext) root).setLookupCacheEnabled(true);
+		IEclipseContext cachingLeaf = root.createChild(getName() + "-caching");
+		root.set("foo", "a");
+		cachingLeaf.get("foo");
+		cachingLeaf.get("foo");
+		cachingLeaf.get("foo");
+		assertEquals(2, getStatistics("foo").getCacheHits());
+	}
+
+	public void testComputations() {
+		root.set("input", "a");
+		root.set("foo", new ContextFunction() {
+			public Object compute(IEclipseContext context) {
+				return context.get("input") + "!";
+			}
+		});
+		assertEquals("a!", leaf.get("foo"));
+		assertEquals("a!", leaf.get("foo"));
+		assertEquals(1, getStatistics("foo").getComputations());
+		root.set("input", "b");
+		assertEquals("b!", leaf.get("foo"));
+		assertEquals(2, getStatistics("foo").getComputations());
+		assertTrue(getStatistics("input").getNotifications() > 0);
+	}
+
+	public void testRunAndTrack() {
+		final int[] runs = new int[1];
+		RunAndTrack runnable = new RunAndTrack() {
+			public boolean changed(IEclipseContext context) {
+				context.get("foo");
+				runs[0]++;
+				return true;
+			}
+
+			public String toString() {
+				return "testRunAndTrack";
+			}
+		};
+		leaf.runAndTrack(runnable);
+		root.set("foo", "a");
+		root.set("foo", "b");
+		root.set("unrelated", "c");
+		assertEquals(3, runs[0]);
+		Long count = ContextStatistics.getSnapshot().getRunAndTrackExecutions().get("testRunAndTrack");
+		assertEquals(Long.valueOf(3), count);
+		assertEquals(2, getStatistics("foo").getNotifications());
+	}
+
+	public void testDisabled() {
+		ContextStatistics.setEnabled(false);
+		root.set("foo", "a");
+		leaf.get("foo");
+		assertFalse(ContextStatistics.isEnabled());
+		assertTrue(ContextStatistics.getSnapshot().getKeyStatistics().isEmpty());
+	}
+}
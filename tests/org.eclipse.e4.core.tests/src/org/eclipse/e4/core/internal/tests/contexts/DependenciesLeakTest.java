@@ -10,11 +10,17 @@
  *******************************************************************************/
 package org.eclipse.e4.core.internal.tests.contexts;
 
+import javax.inject.Inject;
+import javax.inject.Named;
+
 import junit.framework.TestCase;
 
 import org.eclipse.e4.core.contexts.ContextFunction;
+import org.eclipse.e4.core.contexts.ContextInjectionFactory;
 import org.eclipse.e4.core.contexts.EclipseContextFactory;
 import org.eclipse.e4.core.contexts.IEclipseContext;
+import org.eclipse.e4.core.contexts.RunAndTrack;
+import org.eclipse.e4.core.internal.contexts.ContextReaper;
 import org.eclipse.e4.core.internal.contexts.EclipseContext;
 
 public class DependenciesLeakTest extends TestCase {
@@ -36,6 +42,12 @@ public class DependenciesLeakTest extends TestCase {
 		}
 	}
 	
+	static class InjectedObject {
+		@Inject
+		@Named("injected.value")
+		Object value;
+	}
+
 	private IEclipseContext windowContext;
 	private IEclipseContext perspectiveContext;
 	private IEclipseContext partContext;
@@ -89,6 +101,108 @@ public class DependenciesLeakTest extends TestCase {
 		assertNoListeners(partContext);
 	}
 	
+	public void testRemoveRunAndTrack() {
+		for (int i = 0; i < 50; i++)
+			windowContext.set("name" + i, i);
+		final boolean[] keepTracking = new boolean[] {true};
+		partContext.runAndTrack(new RunAndTrack() {
+			public boolean changed(IEclipseContext context) {
+				for (int i = 0; i < 50; i++)
+					context.get("name" + i);
+				return keepTracking[0];
+			}
+		});
+		EclipseContext part = (EclipseContext) partContext;
+		assertEquals(50, part.getRawListenerNames().size());
+		assertEquals(1, part.getListeners("name7").size());
+
+		// the computation stops tracking and must be removed from every name
+		keepTracking[0] = false;
+		windowContext.set("name7", 7000);
+		assertTrue(part.getRawListenerNames().isEmpty());
+		assertNoListeners(windowContext);
+		assertNoListeners(partContext);
+	}
+
+	public void testReapCollectedInjectedObject() throws Exception {
+		windowContext.set("injected.value", "a");
+		long reclaimed = ContextReaper.getReclaimedComputations();
+		InjectedObject object = new InjectedObject();
+		ContextInjectionFactory.inject(object, windowContext);
+		assertEquals("a", object.value);
+		EclipseContext window = (EclipseContext) windowContext;
+		assertTrue(window.getRawListenerNames().contains("injected.value"));
+
+		// the reaper notices the object is gone, and the context removes its
+		// computation the next time it is modified
+		object = null;
+		for (int i = 0; i < 100 && ContextReaper.getReclaimedComputations() == reclaimed; i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		assertTrue(ContextReaper.getReclaimedComputations() > reclaimed);
+		assertTrue(window.getRawListenerNames().contains("injected.value"));
+		windowContext.set("other.value", "b");
+		assertFalse(window.getRawListenerNames().contains("injected.value"));
+	}
+
+	public void testReapWhileReaperStopped() throws Exception {
+		ContextReaper.stopReaper();
+		try {
+			// stopping waits for the thread to end
+			for (Thread thread : Thread.getAllStackTraces().keySet())
+				assertFalse(thread.getName().equals("Eclipse Context Reaper"));
+
+			windowContext.set("injected.value", "a");
+			InjectedObject object = new InjectedObject();
+			ContextInjectionFactory.inject(object, windowContext);
+			EclipseContext window = (EclipseContext) windowContext;
+			assertTrue(window.getRawListenerNames().contains("injected.value"));
+
+			// the context drains the queue itself when it is modified
+			object = null;
+			for (int i = 0; i < 100 && window.getRawListenerNames().contains("injected.value"); i++) {
+				System.gc();
+				Thread.sleep(20);
+				windowContext.set("other.value", Integer.valueOf(i));
+			}
+			assertFalse(window.getRawListenerNames().contains("injected.value"));
+		} finally {
+			ContextReaper.startReaper();
+		}
+	}
+
+	public void testReapCollectedChild() throws Exception {
+		windowContext.set("x", 1);
+		windowContext.set("y", 2);
+		long reclaimed = ContextReaper.getReclaimedListeners();
+		IEclipseContext child = windowContext.createChild("Child");
+		child.set("sum", new ContextFunction() {
+			public Object compute(IEclipseContext context, String contextKey) {
+				IEclipseContext parent = context.getParent();
+				return (Integer) parent.get("x") + (Integer) parent.get("y");
+			}
+		});
+		assertEquals(3, child.get("sum"));
+		EclipseContext window = (EclipseContext) windowContext;
+		assertFalse(window.getRawListenerNames().isEmpty());
+
+		// the child is dropped without being disposed
+		child = null;
+		waitForReaper(window, "x");
+		assertTrue(window.getRawListenerNames().isEmpty());
+		assertTrue(ContextReaper.getReclaimedListeners() > reclaimed);
+	}
+
+	private void waitForReaper(EclipseContext context, String name) throws InterruptedException {
+		for (int i = 0; i < 100 && context.getRawListenerNames().contains(name); i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		// the counters are updated once the listeners are removed
+		Thread.sleep(20);
+	}
+
 	private void assertNoListeners(IEclipseContext context) {
 		EclipseContext c = (EclipseContext) context;
 		try {
@@ -10,12 +10,21 @@
  *******************************************************************************/
 package org.eclipse.e4.core.internal.tests.contexts;
 
+import java.util.Map;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Named;
+
 import junit.framework.TestCase;
 
 import org.eclipse.e4.core.contexts.ContextFunction;
+import org.eclipse.e4.core.contexts.ContextInjectionFactory;
+import org.eclipse.e4.core.contexts.ContextKey;
 import org.eclipse.e4.core.contexts.EclipseContextFactory;
 import org.eclipse.e4.core.contexts.IEclipseContext;
+import org.eclipse.e4.core.contexts.ISharedContextFunction;
 import org.eclipse.e4.core.contexts.RunAndTrack;
+import org.eclipse.e4.core.di.annotations.Optional;
 import org.eclipse.e4.core.internal.contexts.EclipseContext;
 
 public class EclipseContextTest extends TestCase {
@@ -26,6 +35,17 @@ public class EclipseContextTest extends TestCase {
 		}
 	}
 
+	private static class SharedFunction extends ContextFunction implements ISharedContextFunction {
+		int computations;
+		IEclipseContext computedIn;
+
+		public Object compute(IEclipseContext context, String contextKey) {
+			computations++;
+			computedIn = context;
+			return new StringBuffer(String.valueOf(context.get("input")));
+		}
+	}
+
 	private IEclipseContext context;
 	private IEclipseContext parentContext;
 
@@ -83,6 +103,44 @@ public class EclipseContextTest extends TestCase {
 		assertEquals("baz", context.getLocal("foo"));
 	}
 
+	public void testContextKey() {
+		ContextKey<String> key = ContextKey.forClass(String.class);
+		assertEquals(key, ContextKey.forName(new String("java.lang.String")));
+		assertSame(String.class.getName().intern(), key.getName());
+		assertFalse(key.equals(ContextKey.forName("java.lang.Integer")));
+
+		assertFalse(context.containsKey(key));
+		assertNull(context.get(key));
+		// names that are not interned are found by key as well
+		parentContext.set(new String("java.lang.String"), "a");
+		assertTrue(context.containsKey(key));
+		assertEquals("a", context.get(key));
+		context.set(key, "b");
+		assertEquals("b", context.get(String.class));
+		assertEquals("b", context.get(key));
+		assertEquals("a", parentContext.get(key));
+		context.remove(String.class);
+		assertEquals("a", context.get(key));
+
+		ContextKey<Object> computed = ContextKey.forName("computed");
+		context.set(new String("computed"), new ContextFunction() {
+			public Object compute(IEclipseContext context, String contextKey) {
+				return context.get(String.class) + "*";
+			}
+		});
+		assertEquals("a*", context.get(computed));
+		final Object[] tracked = new Object[1];
+		context.runAndTrack(new RunAndTrack() {
+			public boolean changed(IEclipseContext context) {
+				tracked[0] = context.get(ContextKey.forName("tracked"));
+				return true;
+			}
+		});
+		assertNull(tracked[0]);
+		parentContext.set("tracked", "c");
+		assertEquals("c", tracked[0]);
+	}
+
 	/**
 	 * Tests that a context no longer looks up values from its parent when disposed.
 	 */
@@ -210,6 +268,211 @@ public class EclipseContextTest extends TestCase {
 		assertEquals(3, runCounter);
 	}
 
+	public void testBatch() {
+		final IEclipseContext parent = EclipseContextFactory.create("ParentContext");
+		final IEclipseContext child = parent.createChild("ChildContext");
+		parent.set("parentValue", "x");
+		child.set("childValue", "x");
+		final String[] seen = new String[2];
+		child.runAndTrack(new RunAndTrack() {
+			public boolean changed(IEclipseContext context) {
+				runCounter++;
+				seen[0] = (String) child.get("parentValue");
+				seen[1] = (String) child.get("childValue");
+				return true;
+			}
+		});
+		assertEquals(1, runCounter);
+		child.batch(new Runnable() {
+			public void run() {
+				for (int i = 0; i < 20; i++) {
+					parent.set("parentValue", "p" + i);
+					child.set("childValue", "c" + i);
+				}
+				// values are visible inside the batch, computations are not updated yet
+				assertEquals("p19", child.get("parentValue"));
+				assertEquals(1, runCounter);
+			}
+		});
+		assertEquals(2, runCounter);
+		assertEquals("p19", seen[0]);
+		assertEquals("c19", seen[1]);
+
+		// nested batches are part of the outermost batch
+		child.batch(new Runnable() {
+			public void run() {
+				parent.batch(new Runnable() {
+					public void run() {
+						parent.set("parentValue", "y");
+					}
+				});
+				assertEquals(2, runCounter);
+				child.remove("childValue");
+			}
+		});
+		assertEquals(3, runCounter);
+		assertEquals("y", seen[0]);
+		assertNull(seen[1]);
+
+		// outside of a batch each change is processed immediately
+		parent.set("parentValue", "z");
+		child.set("childValue", "z");
+		assertEquals(5, runCounter);
+	}
+
+	public void testBatchFailure() {
+		final IEclipseContext context = EclipseContextFactory.create();
+		context.set("value", "x");
+		context.runAndTrack(new RunAndTrack() {
+			public boolean changed(IEclipseContext context) {
+				runCounter++;
+				context.get("value");
+				return true;
+			}
+		});
+		assertEquals(1, runCounter);
+		try {
+			context.batch(new Runnable() {
+				public void run() {
+					context.set("value", "y");
+					throw new IllegalStateException();
+				}
+			});
+			fail("Exception expected");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		// the change was made, so the computation has been updated
+		assertEquals(2, runCounter);
+		context.set("value", "z");
+		assertEquals(3, runCounter);
+	}
+
+	static class BatchDisposeTarget {
+		String x;
+		boolean destroyed;
+		boolean updatedAfterDestroy;
+
+		@Inject
+		@Optional
+		void setX(@Named("x") String x) {
+			if (destroyed)
+				updatedAfterDestroy = true;
+			this.x = x;
+		}
+
+		@PreDestroy
+		void destroy() {
+			destroyed = true;
+		}
+	}
+
+	public void testBatchDispose() {
+		IEclipseContext parent = EclipseContextFactory.create("ParentContext");
+		final IEclipseContext child = parent.createChild("ChildContext");
+		child.set("x", "X");
+		BatchDisposeTarget target = new BatchDisposeTarget();
+		ContextInjectionFactory.inject(target, child);
+		assertEquals("X", target.x);
+		child.batch(new Runnable() {
+			public void run() {
+				child.set("x", "Y");
+				child.dispose();
+			}
+		});
+		assertTrue(target.destroyed);
+		// the change made before the disposal is not applied to the disposed object
+		child.set("x", "Z");
+		assertFalse(target.updatedAfterDestroy);
+		assertFalse("Z".equals(target.x));
+		parent.dispose();
+	}
+
+	public void testInvalidateSubtree() {
+		IEclipseContext root = EclipseContextFactory.create("Root");
+		IEclipseContext otherRoot = EclipseContextFactory.create("OtherRoot");
+		IEclipseContext branch = root.createChild("Branch");
+		IEclipseContext sibling = root.createChild("Sibling");
+		final IEclipseContext leaf = branch.createChild("Leaf").createChild("Leaf");
+		sibling.createChild("SiblingLeaf");
+		root.set("value", "a");
+		otherRoot.set("value", "b");
+		leaf.runAndTrack(new RunAndTrack() {
+			public boolean changed(IEclipseContext context) {
+				runCounter++;
+				leaf.get("value");
+				return true;
+			}
+		});
+		assertEquals(1, runCounter);
+		root.set("value", "c");
+		assertEquals(2, runCounter);
+		root.set("other", "c");
+		assertEquals(2, runCounter);
+
+		// the dependency moves along with the subtree
+		branch.setParent(otherRoot);
+		assertEquals(3, runCounter);
+		root.set("value", "d");
+		assertEquals(3, runCounter);
+		otherRoot.set("value", "e");
+		assertEquals(4, runCounter);
+
+		// values computed in a descendant depend on the name of the function
+		root.set("computed", new ContextFunction() {
+			public Object compute(IEclipseContext context) {
+				return "x";
+			}
+		});
+		IEclipseContext computing = sibling.createChild("Computing");
+		assertEquals("x", computing.get("computed"));
+		root.set("computed", "y");
+		assertEquals("y", computing.get("computed"));
+	}
+
+	/**
+	 * Adds and removes dependencies in separate branches from several threads
+	 * at once, and checks that the dependencies left are still invalidated.
+	 */
+	public void testConcurrentSubtreeDependencies() throws InterruptedException {
+		final IEclipseContext root = EclipseContextFactory.create("Root");
+		root.set("value", "a");
+		final int[] counters = new int[4];
+		Thread[] threads = new Thread[counters.length];
+		for (int i = 0; i < threads.length; i++) {
+			final int index = i;
+			final IEclipseContext branch = root.createChild("Branch" + i).createChild("Leaf");
+			threads[i] = new Thread("Dependencies-" + i) {
+				public void run() {
+					for (int j = 0; j < 500; j++) {
+						final IEclipseContext leaf = branch.createChild("Leaf" + j);
+						leaf.runAndTrack(new RunAndTrack() {
+							public boolean changed(IEclipseContext context) {
+								leaf.get("value");
+								return true;
+							}
+						});
+						leaf.dispose();
+					}
+					branch.runAndTrack(new RunAndTrack() {
+						public boolean changed(IEclipseContext context) {
+							counters[index]++;
+							branch.get("value");
+							return true;
+						}
+					});
+				}
+			};
+		}
+		for (int i = 0; i < threads.length; i++)
+			threads[i].start();
+		for (int i = 0; i < threads.length; i++)
+			threads[i].join();
+		root.set("value", "b");
+		for (int i = 0; i < counters.length; i++)
+			assertEquals(2, counters[i]);
+	}
+
 	public void testModify() {
 		IEclipseContext grandParent = EclipseContextFactory.create();
 		IEclipseContext parent = grandParent.createChild();
@@ -312,6 +575,136 @@ public class EclipseContextTest extends TestCase {
 		assertNull(child.get("x"));
 	}
 
+	public void testSnapshot() {
+		parentContext.set("foo", "parentFoo");
+		parentContext.set("bar", "parentBar");
+		parentContext.set("computed", "parentComputed");
+		context.set("foo", "foo");
+		context.set("nothing", null);
+		context.set("computed", new ComputedValueBar());
+		Map<String, Object> snapshot = context.snapshot();
+		assertEquals("foo", snapshot.get("foo"));
+		assertEquals("parentBar", snapshot.get("bar"));
+		assertTrue(snapshot.containsKey("nothing"));
+		assertNull(snapshot.get("nothing"));
+		// functions are not computed and hide the values of the parents
+		assertFalse(snapshot.containsKey("computed"));
+		assertFalse(snapshot.containsKey("unknown"));
+
+		// later changes are not visible
+		context.set("foo", "newFoo");
+		parentContext.set("bar", "newBar");
+		context.remove("nothing");
+		assertEquals("foo", snapshot.get("foo"));
+		assertEquals("parentBar", snapshot.get("bar"));
+		assertTrue(snapshot.containsKey("nothing"));
+		assertEquals("newBar", context.snapshot().get("bar"));
+
+		try {
+			snapshot.put("foo", "bar");
+			fail("snapshots are unmodifiable");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
+	public void testSnapshotEntries() {
+		parentContext.set("foo", "parentFoo");
+		parentContext.set("bar", "parentBar");
+		context.set("foo", "foo");
+		context.set("bar", new ComputedValueBar());
+		Map<String, Object> entries = context.snapshot();
+		assertTrue(entries.keySet().contains("foo"));
+		assertFalse(entries.keySet().contains(EclipseContext.PARENT));
+		assertFalse(entries.keySet().contains("bar"));
+		assertTrue(entries.values().contains("foo"));
+		assertFalse(entries.values().contains("parentFoo"));
+	}
+
+	public void testSnapshotNotTracked() {
+		parentContext.set("foo", "a");
+		context.runAndTrack(new RunAndTrack() {
+			public boolean changed(IEclipseContext context) {
+				runCounter++;
+				context.snapshot().get("foo");
+				return true;
+			}
+		});
+		assertEquals(1, runCounter);
+		parentContext.set("foo", "b");
+		assertEquals(1, runCounter);
+	}
+
+	public void testSharedFunction() {
+		SharedFunction function = new SharedFunction();
+		parentContext.set("input", "a");
+		parentContext.set("shared", function);
+		IEclipseContext[] children = new IEclipseContext[5];
+		for (int i = 0; i < children.length; i++)
+			children[i] = context.createChild("child" + i);
+		Object value = children[0].get("shared");
+		assertEquals("a", value.toString());
+		for (int i = 0; i < children.length; i++)
+			assertSame(value, children[i].get("shared"));
+		assertSame(value, context.get("shared"));
+		assertSame(value, parentContext.get("shared"));
+		assertEquals(1, function.computations);
+		assertSame(parentContext, function.computedIn);
+
+		// a context function that is not shared is computed in each context
+		parentContext.set("unshared", new ContextFunction() {
+			public Object compute(IEclipseContext context, String contextKey) {
+				runCounter++;
+				return context;
+			}
+		});
+		assertSame(children[0], children[0].get("unshared"));
+		assertSame(children[1], children[1].get("unshared"));
+		assertEquals(2, runCounter);
+	}
+
+	public void testSharedFunctionInvalidation() {
+		SharedFunction function = new SharedFunction();
+		parentContext.set("input", "a");
+		parentContext.set("shared", function);
+		final IEclipseContext child = context.createChild("child");
+		final Object[] seen = new Object[1];
+		child.runAndTrack(new RunAndTrack() {
+			public boolean changed(IEclipseContext context) {
+				runCounter++;
+				seen[0] = context.get("shared");
+				return true;
+			}
+		});
+		assertEquals(1, runCounter);
+		assertEquals("a", seen[0].toString());
+
+		// a change of a value used by the function reaches the descendants
+		parentContext.set("input", "b");
+		assertEquals(2, runCounter);
+		assertEquals("b", seen[0].toString());
+		assertEquals(2, function.computations);
+		assertSame(seen[0], context.get("shared"));
+
+		// so does replacing the function
+		parentContext.set("shared", "c");
+		assertEquals("c", seen[0]);
+	}
+
+	public void testSharedFunctionCached() {
+		((EclipseContext) parentContext).setLookupCacheEnabled(true);
+		SharedFunction function = new SharedFunction();
+		parentContext.set("input", "a");
+		parentContext.set("shared", function);
+		IEclipseContext leaf = parentContext.createChild("middle").createChild("leaf");
+		Object value = leaf.get("shared");
+		assertSame(value, leaf.get("shared"));
+		assertEquals(1, function.computations);
+		parentContext.set("input", "b");
+		assertEquals("b", leaf.get("shared").toString());
+		assertEquals(2, function.computations);
+	}
+
 	private int listenersCount(IEclipseContext context) {
 		return ((EclipseContext) context).getListeners().size();		
 	}
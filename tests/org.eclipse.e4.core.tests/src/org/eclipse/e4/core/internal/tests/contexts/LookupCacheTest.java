@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.core.internal.tests.contexts;
+
+import junit.framework.TestCase;
+
+import org.eclipse.e4.core.contexts.ContextFunction;
+import org.eclipse.e4.core.contexts.EclipseContextFactory;
+import org.eclipse.e4.core.contexts.IEclipseContext;
+import org.eclipse.e4.core.internal.contexts.EclipseContext;
+import org.eclipse.e4.core.internal.contexts.LookupCache;
+
+/**
+ * Tests that lookups through the lookup cache see the same values as
+ * lookups that walk the parent chain.
+ */
+public class LookupCacheTest extends TestCase {
+
+	private IEclipseContext root;
+	private IEclipseContext middle;
+	private IEclipseContext leaf;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		root = EclipseContextFactory.create(getName() + "-root");
+		((EclipseContext) root).setLookupCacheEnabled(true);
+		middle = root.createChild(getName() + "-middle");
+		leaf = middle.createChild(getName() + "-leaf");
+	}
+
+	protected void tearDown() throws Exception {
+		root.dispose();
+		super.tearDown();
+	}
+
+	private LookupCache getCache(IEclipseContext context) {
+		return ((EclipseContext) context).getLookupCache();
+	}
+
+	public void testInherited() {
+		assertNotNull(getCache(middle));
+		assertNotNull(getCache(leaf));
+		root.set("foo", "a");
+		assertEquals("a", leaf.get("foo"));
+		assertEquals("a", leaf.get("foo"));
+		assertEquals(1, getCache(leaf).getMisses());
+		assertEquals(1, getCache(leaf).getHits());
+	}
+
+	public void testSetInAncestor() {
+		root.set("foo", "a");
+		assertEquals("a", leaf.get("foo"));
+		middle.set("foo", "b");
+		assertEquals("b", leaf.get("foo"));
+		root.set("foo", "c");
+		assertEquals("b", leaf.get("foo"));
+		middle.remove("foo");
+		assertEquals("c", leaf.get("foo"));
+		root.remove("foo");
+		assertNull(leaf.get("foo"));
+	}
+
+	public void testNotFound() {
+		assertNull(leaf.get("foo"));
+		assertNull(leaf.get("foo"));
+		root.set("foo", "a");
+		assertEquals("a", leaf.get("foo"));
+	}
+
+	public void testNullValue() {
+		root.set("foo", "a");
+		assertEquals("a", leaf.get("foo"));
+		middle.set("foo", null);
+		assertNull(leaf.get("foo"));
+		assertTrue(leaf.containsKey("foo"));
+	}
+
+	public void testDeclareModifiable() {
+		root.set("foo", "a");
+		assertEquals("a", leaf.get("foo"));
+		middle.declareModifiable("foo");
+		assertNull(leaf.get("foo"));
+		leaf.modify("foo", "b");
+		assertEquals("b", middle.get("foo"));
+		assertEquals("b", leaf.get("foo"));
+	}
+
+	public void testContextFunction() {
+		root.set("foo", new ContextFunction() {
+			public Object compute(IEclipseContext context, String contextKey) {
+				return context.get("bar");
+			}
+		});
+		leaf.set("bar", "a");
+		assertEquals("a", leaf.get("foo"));
+		leaf.set("bar", "b");
+		assertEquals("b", leaf.get("foo"));
+		middle.set("foo", "c");
+		assertEquals("c", leaf.get("foo"));
+	}
+
+	public void testReparent() {
+		IEclipseContext other = EclipseContextFactory.create(getName() + "-other");
+		root.set("foo", "a");
+		other.set("foo", "b");
+		assertEquals("a", leaf.get("foo"));
+		middle.setParent(other);
+		assertEquals("b", leaf.get("foo"));
+		other.dispose();
+	}
+
+	public void testInvalidatedDuringLookup() {
+		final IEclipseContext[] changed = new IEclipseContext[1];
+		EclipseContext top = new EclipseContext(null) {
+			protected Object lookup(String name, EclipseContext originatingContext) {
+				// the name changes while the lookup is walking the parent chain
+				if (changed[0] != null) {
+					changed[0].set(name, "a");
+					changed[0] = null;
+				}
+				return null;
+			}
+		};
+		top.setLookupCacheEnabled(true);
+		IEclipseContext child = top.createChild();
+		IEclipseContext grandChild = child.createChild();
+		changed[0] = child;
+		grandChild.get("foo");
+		assertEquals("a", grandChild.get("foo"));
+		top.dispose();
+	}
+
+	public void testDisabled() {
+		((EclipseContext) leaf).setLookupCacheEnabled(false);
+		assertNull(getCache(leaf));
+		root.set("foo", "a");
+		assertEquals("a", leaf.get("foo"));
+		assertNull(getCache(leaf.createChild()));
+	}
+}
@@ -14,6 +14,7 @@ package org.eclipse.e4.core.internal.tests.contexts;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import junit.framework.TestCase;
 
@@ -196,4 +197,74 @@ public class RunAndTrackTest extends TestCase {
 		assertEquals("part1", windows[0].get(ACTIVE_PART));
 		assertEquals("part1", windows[0].get(ACTIVE_PART_ID));
 	}
+
+	/**
+	 * An executor that queues the tasks until they are run explicitly.
+	 */
+	static class QueueExecutor implements Executor {
+		List<Runnable> tasks = new ArrayList<Runnable>();
+
+		public void execute(Runnable task) {
+			tasks.add(task);
+		}
+
+		void runAll() {
+			List<Runnable> current = tasks;
+			tasks = new ArrayList<Runnable>();
+			for (Runnable task : current)
+				task.run();
+		}
+	}
+
+	public void testRunAndTrackWithExecutor() {
+		IEclipseContext context = EclipseContextFactory.create();
+		createdContexts.add(context);
+		context.set("value", new Integer(0));
+		QueueExecutor executor = new QueueExecutor();
+		final List<Object> seen = new ArrayList<Object>();
+		context.runAndTrack(new RunAndTrack() {
+			public boolean changed(IEclipseContext context) {
+				seen.add(context.get("value"));
+				return true;
+			}
+		}, executor);
+		// the initial run is synchronous
+		assertEquals(1, seen.size());
+		assertEquals(0, executor.tasks.size());
+
+		// rapid changes are coalesced into one run that sees the latest value
+		for (int i = 1; i <= 10; i++)
+			context.set("value", new Integer(i));
+		assertEquals(1, seen.size());
+		assertEquals(1, executor.tasks.size());
+		executor.runAll();
+		assertEquals(2, seen.size());
+		assertEquals(new Integer(10), seen.get(1));
+
+		// later changes are scheduled again
+		context.set("value", new Integer(11));
+		assertEquals(1, executor.tasks.size());
+		executor.runAll();
+		assertEquals(3, seen.size());
+		assertEquals(new Integer(11), seen.get(2));
+	}
+
+	public void testRunAndTrackWithExecutorDisposed() {
+		IEclipseContext context = EclipseContextFactory.create();
+		context.set("value", "a");
+		QueueExecutor executor = new QueueExecutor();
+		final int[] runs = new int[1];
+		context.runAndTrack(new RunAndTrack() {
+			public boolean changed(IEclipseContext context) {
+				runs[0]++;
+				context.get("value");
+				return true;
+			}
+		}, executor);
+		context.set("value", "b");
+		context.dispose();
+		// the pending update is dropped once the context is disposed
+		executor.runAll();
+		assertEquals(1, runs[0]);
+	}
 }
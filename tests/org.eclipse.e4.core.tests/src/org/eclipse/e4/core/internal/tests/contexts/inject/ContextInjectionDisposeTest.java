@@ -10,6 +10,9 @@
  *******************************************************************************/
 package org.eclipse.e4.core.internal.tests.contexts.inject;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 
@@ -17,10 +20,12 @@ import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
+import org.eclipse.e4.core.contexts.ContextFunction;
 import org.eclipse.e4.core.contexts.ContextInjectionFactory;
 import org.eclipse.e4.core.contexts.EclipseContextFactory;
 import org.eclipse.e4.core.contexts.IEclipseContext;
 import org.eclipse.e4.core.di.annotations.Optional;
+import org.eclipse.e4.core.internal.contexts.EclipseContext;
 
 /**
  * Tests for injection handling of context dispose, and handling disposal of injected objects.
@@ -137,4 +142,77 @@ public class ContextInjectionDisposeTest extends TestCase {
 		assertTrue(object.disposeInvoked);
 	}
 
+	static class DisposeRecorder {
+		@Inject
+		String name;
+
+		final List<String> disposed;
+
+		DisposeRecorder(List<String> disposed) {
+			this.disposed = disposed;
+		}
+
+		@PreDestroy
+		public void dispose() {
+			disposed.add(name);
+		}
+	}
+
+	public void testDisposeSubtree() {
+		IEclipseContext window = EclipseContextFactory.create("window");
+		window.set("x", "windowX");
+		IEclipseContext perspective = window.createChild("perspective");
+		IEclipseContext stack = perspective.createChild("stack");
+		IEclipseContext part = stack.createChild("part");
+		IEclipseContext otherPart = stack.createChild("otherPart");
+		List<String> disposed = new ArrayList<String>();
+		IEclipseContext[] contexts = new IEclipseContext[] {perspective, stack, part, otherPart};
+		for (int i = 0; i < contexts.length; i++) {
+			contexts[i].set(String.class, "context" + i);
+			ContextInjectionFactory.inject(new DisposeRecorder(disposed), contexts[i]);
+		}
+		// a value computed in the subtree that depends on a value of the window
+		part.set("y", new ContextFunction() {
+			public Object compute(IEclipseContext context, String contextKey) {
+				return context.getParent().getParent().getParent().get("x");
+			}
+		});
+		assertEquals("windowX", part.get("y"));
+		part.activateBranch();
+		assertTrue(((EclipseContext) window).getRawListenerNames().contains("x"));
+
+		perspective.dispose();
+		// children are disposed of before their parents
+		assertEquals(4, disposed.size());
+		assertEquals("context1", disposed.get(2));
+		assertEquals("context0", disposed.get(3));
+		assertNull(window.getActiveChild());
+		assertTrue(((EclipseContext) window).getChildren().isEmpty());
+		assertFalse(((EclipseContext) window).getRawListenerNames().contains("x"));
+
+		// disposing again has no effect
+		perspective.dispose();
+		assertEquals(4, disposed.size());
+		window.dispose();
+	}
+
+	public void testDisposeRemovesListenersOutsideSubtree() {
+		IEclipseContext window = EclipseContextFactory.create("window");
+		final IEclipseContext editor = window.createChild("editor");
+		editor.set("x", "editorX");
+		IEclipseContext part = window.createChild("part");
+		// a value computed in the part that depends on a value of a sibling
+		part.set("y", new ContextFunction() {
+			public Object compute(IEclipseContext context, String contextKey) {
+				return editor.get("x");
+			}
+		});
+		assertEquals("editorX", part.get("y"));
+		assertTrue(((EclipseContext) editor).getRawListenerNames().contains("x"));
+
+		part.dispose();
+		// removed right away rather than once the computation is collected
+		assertFalse(((EclipseContext) editor).getRawListenerNames().contains("x"));
+		window.dispose();
+	}
 }
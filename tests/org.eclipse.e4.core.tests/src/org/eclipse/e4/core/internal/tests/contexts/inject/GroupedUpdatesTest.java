@@ -132,4 +132,28 @@ public class GroupedUpdatesTest extends TestCase {
 		assertEquals(target.s1, "delta");
 		assertEquals(target.s2, "z");
 	}
+
+	public void testBatch() {
+		final IEclipseContext context = EclipseContextFactory.create();
+		context.set("string1", "x");
+		context.set("string2", "y");
+
+		InjectTarget target = new InjectTargetImmediate();
+		ContextInjectionFactory.inject(target, context);
+		assertEquals(1, target.countMain);
+
+		target.resetCounters();
+
+		context.batch(new Runnable() {
+			public void run() {
+				context.set("string1", "a");
+				context.set("string2", "b");
+				context.set("string1", "c");
+			}
+		});
+		assertEquals(1, target.countMain);
+		assertEquals(1, target.countSecondary);
+		assertEquals("c", target.s1);
+		assertEquals("b", target.s2);
+	}
 }
@@ -12,6 +12,7 @@
 package org.eclipse.e4.core.internal.tests.contexts.inject;
 
 import java.util.ArrayList;
+import java.util.Hashtable;
 import java.util.List;
 
 import javax.inject.Inject;
@@ -25,9 +26,13 @@ import org.eclipse.e4.core.contexts.RunAndTrack;
 import org.eclipse.e4.core.di.annotations.Optional;
 import org.eclipse.e4.core.internal.tests.CoreTestsActivator;
 import org.eclipse.osgi.service.debug.DebugOptions;
+import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
+import org.osgi.framework.SynchronousBundleListener;
 
 /**
  * Tests for contexts used in OSGi services.
@@ -188,6 +193,97 @@ public class ServiceContextTest extends TestCase {
 		}
 	}
 
+	public void testServiceRanking() {
+		BundleContext bundleContext = CoreTestsActivator.getDefault().getBundleContext();
+		Printer userObject = new Printer();
+		ContextInjectionFactory.inject(userObject, context);
+
+		StringPrintService stringPrint1 = new StringPrintService();
+		ServiceRegistration<?> reg1 = bundleContext.registerService(PrintService.SERVICE_NAME, stringPrint1, null);
+		ensureUnregistered(reg1);
+		assertEquals(stringPrint1, userObject.printer);
+
+		// a service with a higher ranking replaces the current one
+		StringPrintService stringPrint2 = new StringPrintService();
+		Hashtable<String, Object> properties = new Hashtable<String, Object>();
+		properties.put(Constants.SERVICE_RANKING, new Integer(10));
+		ServiceRegistration<?> reg2 = bundleContext.registerService(PrintService.SERVICE_NAME, stringPrint2, properties);
+		ensureUnregistered(reg2);
+		assertEquals(stringPrint2, userObject.printer);
+		assertNull(reg1.getReference().getUsingBundles());
+
+		// a service with a lower ranking does not
+		StringPrintService stringPrint3 = new StringPrintService();
+		properties.put(Constants.SERVICE_RANKING, new Integer(-10));
+		ServiceRegistration<?> reg3 = bundleContext.registerService(PrintService.SERVICE_NAME, stringPrint3, properties);
+		ensureUnregistered(reg3);
+		assertEquals(stringPrint2, userObject.printer);
+
+		// the next best service takes over when the current one goes away
+		reg2.unregister();
+		assertEquals(stringPrint1, userObject.printer);
+		reg1.unregister();
+		assertEquals(stringPrint3, userObject.printer);
+		reg3.unregister();
+		assertNull(userObject.printer);
+	}
+
+	/**
+	 * Tests that services registered while a bundle starts are added once it
+	 * is done starting, and that other changes are applied at once.
+	 */
+	public void testServiceChangesWhileBundleStarts() {
+		BundleContext bundleContext = CoreTestsActivator.getDefault().getBundleContext();
+		Printer userObject = new Printer();
+		ContextInjectionFactory.inject(userObject, context);
+
+		StringPrintService stringPrint1 = new StringPrintService();
+		ServiceRegistration<?> reg1 = bundleContext.registerService(PrintService.SERVICE_NAME, stringPrint1, null);
+		ensureUnregistered(reg1);
+		StringPrintService stringPrint2 = new StringPrintService();
+		ServiceRegistration<?> reg2 = bundleContext.registerService(PrintService.SERVICE_NAME, stringPrint2, null);
+		ensureUnregistered(reg2);
+		ServiceReference<?> ref1 = reg1.getReference();
+		assertEquals(stringPrint1, userObject.printer);
+
+		// the context collects the services registered by the bundle until it has started
+		SynchronousBundleListener listener = (SynchronousBundleListener) context;
+		Bundle bundle = bundleContext.getBundle();
+		listener.bundleChanged(new BundleEvent(BundleEvent.STARTING, bundle));
+		try {
+			// a replacement is applied at once, before the old service is released
+			reg1.unregister();
+			assertEquals(stringPrint2, userObject.printer);
+			assertNull(ref1.getUsingBundles());
+
+			// so is a removal
+			reg2.unregister();
+			assertNull(userObject.printer);
+
+			// an addition waits for the bundle
+			StringPrintService stringPrint3 = new StringPrintService();
+			ServiceRegistration<?> reg3 = bundleContext.registerService(PrintService.SERVICE_NAME, stringPrint3, null);
+			ensureUnregistered(reg3);
+			assertNull(userObject.printer);
+			listener.bundleChanged(new BundleEvent(BundleEvent.STARTED, bundle));
+			assertEquals(stringPrint3, userObject.printer);
+			reg3.unregister();
+			assertNull(userObject.printer);
+
+			// a start that fails ends with the bundle stopping
+			listener.bundleChanged(new BundleEvent(BundleEvent.STARTING, bundle));
+			StringPrintService stringPrint4 = new StringPrintService();
+			ServiceRegistration<?> reg4 = bundleContext.registerService(PrintService.SERVICE_NAME, stringPrint4, null);
+			ensureUnregistered(reg4);
+			assertNull(userObject.printer);
+			listener.bundleChanged(new BundleEvent(BundleEvent.STOPPING, bundle));
+			assertEquals(stringPrint4, userObject.printer);
+		} finally {
+			// does nothing if the start was already reported over
+			listener.bundleChanged(new BundleEvent(BundleEvent.STARTED, bundle));
+		}
+	}
+
 	protected void ensureUnregistered(ServiceRegistration<?> reg) {
 		registrations.add(reg);
 	}
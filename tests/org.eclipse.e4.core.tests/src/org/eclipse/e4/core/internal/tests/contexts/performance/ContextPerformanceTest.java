@@ -11,6 +11,13 @@
 
 package org.eclipse.e4.core.internal.tests.contexts.performance;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
@@ -19,13 +26,24 @@ import org.eclipse.core.runtime.IAdapterManager;
 import org.eclipse.core.runtime.IExtensionRegistry;
 import org.eclipse.core.runtime.preferences.IPreferencesService;
 import org.eclipse.core.tests.harness.PerformanceTestRunner;
+import org.eclipse.e4.core.contexts.Active;
 import org.eclipse.e4.core.contexts.ContextFunction;
+import org.eclipse.e4.core.contexts.ContextInjectionFactory;
+import org.eclipse.e4.core.contexts.ContextKey;
 import org.eclipse.e4.core.contexts.EclipseContextFactory;
 import org.eclipse.e4.core.contexts.IEclipseContext;
 import org.eclipse.e4.core.contexts.RunAndTrack;
+import org.eclipse.e4.core.di.annotations.Creatable;
+import org.eclipse.e4.core.di.annotations.Execute;
+import org.eclipse.e4.core.di.annotations.Optional;
+import org.eclipse.e4.core.internal.contexts.EclipseContext;
 import org.eclipse.e4.core.internal.tests.CoreTestsActivator;
 import org.eclipse.osgi.service.datalocation.Location;
 import org.eclipse.osgi.service.debug.DebugOptions;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceFactory;
+import org.osgi.framework.ServiceRegistration;
 
 /**
  *
@@ -34,6 +52,52 @@ public class ContextPerformanceTest extends TestCase {
 
 	IEclipseContext parentContext, context;
 
+	static class InjectedPart {
+		@Inject @Named("value0")
+		Object value0;
+		@Inject @Named("value1")
+		Object value1;
+		@Inject @Named("value2")
+		Object value2;
+		@Inject @Named("value3")
+		Object value3;
+		@Inject @Named("value4")
+		Object value4;
+		@Inject @Named("value5")
+		Object value5;
+		@Inject @Named("value6")
+		Object value6;
+		@Inject @Named("value7")
+		Object value7;
+		@Inject @Optional @Named("missing0")
+		Object missing0;
+		@Inject @Optional @Named("missing1")
+		Object missing1;
+		@Inject @Active @Named("activeValue0")
+		Object activeValue0;
+		@Inject @Active @Named("activeValue1")
+		Object activeValue1;
+		@Inject @Active @Named("activeValue2")
+		Object activeValue2;
+		@Inject @Active @Optional @Named("missing2")
+		Object missing2;
+	}
+
+	@Creatable @Singleton
+	static class SharedService {
+		// no injected members
+	}
+
+	static class InjectedPartWithSingleton extends InjectedPart {
+		@Inject
+		SharedService service;
+
+		@Execute
+		Object execute(@Named("value0") Object value) {
+			return value;
+		}
+	}
+
 	public static Test suite() {
 		return new TestSuite(ContextPerformanceTest.class);
 		// TestSuite suite = new TestSuite();
@@ -80,6 +144,30 @@ public class ContextPerformanceTest extends TestCase {
 		}.run(this, 10, 600000);
 	}
 
+	public void testLookupByClass() {
+		context.set(ContextPerformanceTest.class, this);
+		final IEclipseContext leaf = context.createChild().createChild().createChild();
+		new PerformanceTestRunner() {
+			protected void test() {
+				leaf.get(ContextPerformanceTest.class);
+			}
+		}.run(this, 10, 600000);
+	}
+
+	/**
+	 * Same as {@link #testLookupByClass()}, with a key kept for the class.
+	 */
+	public void testLookupByKey() {
+		final ContextKey<ContextPerformanceTest> key = ContextKey.forClass(ContextPerformanceTest.class);
+		context.set(key, this);
+		final IEclipseContext leaf = context.createChild().createChild().createChild();
+		new PerformanceTestRunner() {
+			protected void test() {
+				leaf.get(key);
+			}
+		}.run(this, 10, 600000);
+	}
+
 	public void testLookupContextFunction() {
 		context.set("somefunction", new ContextFunction() {
 			public Object compute(IEclipseContext context, String contextKey) {
@@ -137,4 +225,376 @@ public class ContextPerformanceTest extends TestCase {
 		}.run(this, 10, 400);
 	}
 
+	/**
+	 * Looks up local values from several threads at once, optionally while
+	 * another thread keeps setting a value in the same context.
+	 */
+	private void runConcurrentLookup(final boolean withWriter) {
+		final int readerCount = Math.max(2, Runtime.getRuntime().availableProcessors());
+		final int lookups = 200000;
+		final String[] names = new String[100];
+		for (int i = 0; i < names.length; i++)
+			names[i] = "Value-" + i;
+		new PerformanceTestRunner() {
+			volatile boolean done;
+
+			protected void test() {
+				done = false;
+				Thread writer = new Thread("ContextWriter") {
+					public void run() {
+						for (int i = 0; !done; i++)
+							context.set("something", "value-" + i);
+					}
+				};
+				Thread[] readers = new Thread[readerCount];
+				for (int i = 0; i < readers.length; i++) {
+					readers[i] = new Thread("ContextReader-" + i) {
+						public void run() {
+							for (int j = 0; j < lookups; j++) {
+								context.get(names[j % names.length]);
+								context.get("something");
+							}
+						}
+					};
+				}
+				if (withWriter)
+					writer.start();
+				for (int i = 0; i < readers.length; i++)
+					readers[i].start();
+				try {
+					for (int i = 0; i < readers.length; i++)
+						readers[i].join();
+					done = true;
+					if (withWriter)
+						writer.join();
+				} catch (InterruptedException e) {
+					fail("Interrupted while waiting for context threads");
+				}
+			}
+		}.run(this, 10, 1);
+	}
+
+	/**
+	 * Tests looking up values from several threads at once.
+	 */
+	public void testConcurrentLookup() {
+		runConcurrentLookup(false);
+	}
+
+	/**
+	 * Tests looking up values from several threads at once while another
+	 * thread keeps modifying the context.
+	 */
+	public void testConcurrentLookupAndSet() {
+		runConcurrentLookup(true);
+	}
+
+	private void createTree(IEclipseContext parent, int depth, List<IEclipseContext> leaves) {
+		if (depth == 0) {
+			leaves.add(parent);
+			return;
+		}
+		for (int i = 0; i < 4; i++) {
+			IEclipseContext child = parent.createChild();
+			child.set("Local-" + depth, new Integer(i));
+			createTree(child, depth - 1, leaves);
+		}
+	}
+
+	/**
+	 * Looks up values set in the root of a tree of about 5000 contexts from
+	 * each of its leaves, six levels below the root.
+	 */
+	private void runTreeLookup(boolean cached) {
+		IEclipseContext root = EclipseContextFactory.create(getName());
+		((EclipseContext) root).setLookupCacheEnabled(cached);
+		final String[] names = new String[20];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = "Service-" + i;
+			root.set(names[i], new Integer(i));
+		}
+		final List<IEclipseContext> leaves = new ArrayList<IEclipseContext>();
+		createTree(root, 6, leaves);
+		new PerformanceTestRunner() {
+			protected void test() {
+				for (IEclipseContext leaf : leaves)
+					for (int i = 0; i < names.length; i++)
+						leaf.get(names[i]);
+			}
+		}.run(this, 10, 10);
+		root.dispose();
+	}
+
+	public void testTreeLookup() {
+		runTreeLookup(false);
+	}
+
+	public void testTreeLookupCached() {
+		runTreeLookup(true);
+	}
+
+	/**
+	 * Sets values in the root of a tree of about 5000 contexts, where only a
+	 * few leaves track one of the values.
+	 */
+	public void testSetInTree() {
+		final IEclipseContext root = EclipseContextFactory.create(getName());
+		List<IEclipseContext> leaves = new ArrayList<IEclipseContext>();
+		createTree(root, 6, leaves);
+		for (int i = 0; i < leaves.size(); i += 500) {
+			leaves.get(i).runAndTrack(new RunAndTrack() {
+				public boolean changed(IEclipseContext context) {
+					context.get("Tracked");
+					return true;
+				}
+			});
+		}
+		new PerformanceTestRunner() {
+			int counter = 0;
+
+			protected void test() {
+				for (int i = 0; i < 100; i++) {
+					root.set("Tracked", new Integer(counter));
+					root.set("Untracked", new Integer(counter++));
+				}
+			}
+		}.run(this, 10, 10);
+		root.dispose();
+	}
+
+	/**
+	 * Creates a tree of 100000 leaf contexts, half of them holding a value. Each
+	 * tree is kept until the next one is created so that the heap dimension
+	 * reflects its footprint.
+	 */
+	public void testCreateContexts() {
+		final List<IEclipseContext> contexts = new ArrayList<IEclipseContext>();
+		new PerformanceTestRunner() {
+			protected void test() {
+				contexts.clear();
+				IEclipseContext root = EclipseContextFactory.create(getName());
+				IEclipseContext[] parents = new IEclipseContext[1000];
+				for (int i = 0; i < parents.length; i++)
+					parents[i] = root.createChild();
+				for (int i = 0; i < 100000; i++) {
+					IEclipseContext context = parents[i % parents.length].createChild();
+					if (i % 2 == 0)
+						context.set("Value", Boolean.TRUE);
+					contexts.add(context);
+				}
+			}
+		}.run(this, 5, 1);
+	}
+
+	/**
+	 * Injects and uninjects an object with many fields whose values are set
+	 * far up the context hierarchy, some of them from the active leaf and some
+	 * not set at all.
+	 */
+	public void testInjectManyFields() {
+		IEclipseContext root = EclipseContextFactory.create(getName());
+		final IEclipseContext part = createPartContext(root);
+		new PerformanceTestRunner() {
+			protected void test() {
+				for (int i = 0; i < 1000; i++) {
+					InjectedPart object = new InjectedPart();
+					ContextInjectionFactory.inject(object, part);
+					ContextInjectionFactory.uninject(object, part);
+				}
+			}
+		}.run(this, 10, 10);
+		root.dispose();
+	}
+
+	/**
+	 * Same as {@link #testInjectManyFields()}, but the injector creates the
+	 * objects.
+	 */
+	public void testMakeManyFields() {
+		IEclipseContext root = EclipseContextFactory.create(getName());
+		final IEclipseContext part = createPartContext(root);
+		new PerformanceTestRunner() {
+			protected void test() {
+				for (int i = 0; i < 1000; i++) {
+					InjectedPart object = ContextInjectionFactory.make(InjectedPart.class, part);
+					ContextInjectionFactory.uninject(object, part);
+				}
+			}
+		}.run(this, 10, 10);
+		root.dispose();
+	}
+
+	/**
+	 * Makes, invokes and uninjects objects from several threads at once, each
+	 * thread with its own part context, the objects sharing a singleton.
+	 */
+	public void testConcurrentMake() {
+		final int threadCount = Math.max(2, Runtime.getRuntime().availableProcessors());
+		final IEclipseContext root = EclipseContextFactory.create(getName());
+		final IEclipseContext[] parts = new IEclipseContext[threadCount];
+		for (int i = 0; i < parts.length; i++)
+			parts[i] = createPartContext(root.createChild("window" + i));
+		new PerformanceTestRunner() {
+			protected void test() {
+				Thread[] threads = new Thread[threadCount];
+				for (int i = 0; i < threads.length; i++) {
+					final IEclipseContext part = parts[i];
+					threads[i] = new Thread("Injector-" + i) {
+						public void run() {
+							for (int j = 0; j < 1000; j++) {
+								InjectedPartWithSingleton object = ContextInjectionFactory.make(InjectedPartWithSingleton.class, part);
+								ContextInjectionFactory.invoke(object, Execute.class, part);
+								ContextInjectionFactory.uninject(object, part);
+							}
+						}
+					};
+				}
+				for (int i = 0; i < threads.length; i++)
+					threads[i].start();
+				try {
+					for (int i = 0; i < threads.length; i++)
+						threads[i].join();
+				} catch (InterruptedException e) {
+					fail("Interrupted while waiting for injector threads");
+				}
+			}
+		}.run(this, 10, 1);
+		root.dispose();
+	}
+
+	/**
+	 * Returns a context 8 levels below the given root, with 4 levels of active
+	 * children, for the values injected into {@link InjectedPart}.
+	 */
+	private IEclipseContext createPartContext(IEclipseContext root) {
+		for (int i = 0; i < 8; i++)
+			root.set("value" + i, "value" + i);
+		for (int i = 0; i < 3; i++)
+			root.set("activeValue" + i, "activeValue" + i);
+		IEclipseContext current = root;
+		for (int i = 0; i < 8; i++)
+			current = current.createChild("level" + i);
+		IEclipseContext leaf = current;
+		for (int i = 0; i < 4; i++) {
+			leaf = leaf.createChild("active" + i);
+			leaf.activate();
+		}
+		return current;
+	}
+
+	/**
+	 * Disposes of a perspective with 50 stacks of 40 parts, each with a
+	 * computed value and a RunAndTrack depending on the window.
+	 */
+	public void testDisposeSubtree() {
+		final IEclipseContext window = EclipseContextFactory.create(getName());
+		window.set("selection", "selection");
+		final ContextFunction title = new ContextFunction() {
+			public Object compute(IEclipseContext context, String contextKey) {
+				return context.get("label") + "*";
+			}
+		};
+		final RunAndTrack tracker = new RunAndTrack() {
+			public boolean changed(IEclipseContext context) {
+				context.get("selection");
+				return true;
+			}
+		};
+		final IEclipseContext[] perspective = new IEclipseContext[1];
+		new PerformanceTestRunner() {
+			protected void setUp() {
+				perspective[0] = window.createChild("perspective");
+				for (int i = 0; i < 50; i++) {
+					IEclipseContext stack = perspective[0].createChild("stack" + i);
+					for (int j = 0; j < 40; j++) {
+						IEclipseContext part = stack.createChild("part" + j);
+						part.set("label", "part" + j);
+						part.set("title", title);
+						part.get("title");
+						part.runAndTrack(tracker);
+					}
+				}
+				perspective[0].activateBranch();
+			}
+
+			protected void test() {
+				perspective[0].dispose();
+			}
+		}.run(this, 10, 1);
+		window.dispose();
+	}
+
+	/**
+	 * Switches between the parts of a window while handlers look up the
+	 * active part and the active leaf after every switch.
+	 */
+	public void testActivePartSwitching() {
+		IEclipseContext root = EclipseContextFactory.create(getName());
+		final IEclipseContext window = root.createChild("window");
+		final IEclipseContext[] parts = new IEclipseContext[20];
+		for (int i = 0; i < parts.length; i++) {
+			IEclipseContext stack = window.createChild("stack" + i);
+			parts[i] = stack.createChild("part" + i);
+			parts[i].set("activePart", "part" + i);
+		}
+		window.runAndTrack(new RunAndTrack() {
+			public boolean changed(IEclipseContext context) {
+				context.getActive("activePart");
+				return true;
+			}
+		});
+		new PerformanceTestRunner() {
+			protected void test() {
+				for (int i = 0; i < 1000; i++) {
+					parts[i % parts.length].activateBranch();
+					for (int j = 0; j < 100; j++) {
+						window.getActive("activePart");
+						window.getActiveLeaf();
+					}
+				}
+			}
+		}.run(this, 10, 10);
+		root.dispose();
+	}
+
+	/**
+	 * Registers and unregisters 10000 services while the service context tracks
+	 * a few other names. Most service events are of no interest to the context.
+	 */
+	public void testServiceRegistrations() {
+		final BundleContext bundleContext = CoreTestsActivator.getDefault().getBundleContext();
+		parentContext.runAndTrack(new RunAndTrack() {
+			public boolean changed(IEclipseContext context) {
+				context.get(Runnable.class.getName());
+				return true;
+			}
+		});
+		// the factory is never asked for a service, so it may use any name
+		final ServiceFactory<Object> factory = new ServiceFactory<Object>() {
+			public Object getService(Bundle bundle, ServiceRegistration<Object> registration) {
+				return null;
+			}
+
+			public void ungetService(Bundle bundle, ServiceRegistration<Object> registration, Object service) {
+				// nothing to do
+			}
+		};
+		final Runnable runnable = new Runnable() {
+			public void run() {
+				// nothing to do
+			}
+		};
+		new PerformanceTestRunner() {
+			protected void test() {
+				List<ServiceRegistration<?>> registrations = new ArrayList<ServiceRegistration<?>>();
+				for (int i = 0; i < 10000; i++) {
+					registrations.add(bundleContext.registerService("Service-" + i, factory, null));
+					if (i % 100 == 0)
+						registrations.add(bundleContext.registerService(Runnable.class.getName(), runnable, null));
+				}
+				for (ServiceRegistration<?> registration : registrations)
+					registration.unregister();
+			}
+		}.run(this, 5, 1);
+	}
 }
@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.e4.core.internal.tests.di;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import junit.framework.TestCase;
+
+import org.eclipse.e4.core.contexts.ContextInjectionFactory;
+import org.eclipse.e4.core.contexts.EclipseContextFactory;
+import org.eclipse.e4.core.contexts.IEclipseContext;
+import org.eclipse.e4.core.internal.di.InjectionPlan;
+
+/**
+ * Checks that the injector does not keep the classes it injected from being
+ * collected. Their cached plans refer to them and are only held softly, so
+ * the plans are flushed as they are when bundles are refreshed.
+ */
+public class ClassUnloadingTest extends TestCase {
+
+	static public class Target {
+		@Inject
+		@Named("value")
+		public String value;
+
+		public int postConstruct;
+
+		@PostConstruct
+		void postConstruct() {
+			postConstruct++;
+		}
+	}
+
+	/**
+	 * Defines its own copy of a class, which can be collected along with the
+	 * loader.
+	 */
+	static class CopyLoader extends ClassLoader {
+
+		final private Class<?> original;
+
+		CopyLoader(Class<?> original) {
+			super(original.getClassLoader());
+			this.original = original;
+		}
+
+		protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (!name.equals(original.getName()))
+				return super.loadClass(name, resolve);
+			Class<?> result = findLoadedClass(name);
+			if (result == null) {
+				byte[] bytes;
+				try {
+					bytes = readClass();
+				} catch (IOException e) {
+					throw new ClassNotFoundException(name, e);
+				}
+				result = defineClass(name, bytes, 0, bytes.length);
+			}
+			if (resolve)
+				resolveClass(result);
+			return result;
+		}
+
+		private byte[] readClass() throws IOException {
+			InputStream input = original.getClassLoader().getResourceAsStream(original.getName().replace('.', '/') + ".class");
+			try {
+				ByteArrayOutputStream output = new ByteArrayOutputStream();
+				byte[] buffer = new byte[4096];
+				for (int read = input.read(buffer); read != -1; read = input.read(buffer))
+					output.write(buffer, 0, read);
+				return output.toByteArray();
+			} finally {
+				input.close();
+			}
+		}
+	}
+
+	public void testFlushedClassIsCollected() throws Exception {
+		WeakReference<Class<?>> ref = injectCopy();
+		InjectionPlan.flush();
+		for (int i = 0; i < 100 && ref.get() != null; i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		assertNull(ref.get());
+	}
+
+	/**
+	 * Injects an instance of a copy of the target class, and returns the copy
+	 * without any other reference to it.
+	 */
+	private WeakReference<Class<?>> injectCopy() throws Exception {
+		Class<?> copy = new CopyLoader(Target.class).loadClass(Target.class.getName());
+		assertNotSame(Target.class, copy);
+		IEclipseContext context = EclipseContextFactory.create();
+		context.set("value", "a");
+		Object target = ContextInjectionFactory.make(copy, context);
+		assertEquals("a", copy.getField("value").get(target));
+		assertEquals(Integer.valueOf(1), copy.getField("postConstruct").get(target));
+		context.set("value", "b");
+		assertEquals("b", copy.getField("value").get(target));
+		context.dispose();
+		return new WeakReference<Class<?>>(copy);
+	}
+}
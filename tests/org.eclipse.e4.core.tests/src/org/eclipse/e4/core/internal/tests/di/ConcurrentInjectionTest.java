@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.e4.core.internal.tests.di;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import junit.framework.TestCase;
+
+import org.eclipse.e4.core.contexts.EclipseContextFactory;
+import org.eclipse.e4.core.contexts.IEclipseContext;
+import org.eclipse.e4.core.di.IInjector;
+import org.eclipse.e4.core.di.InjectorFactory;
+import org.eclipse.e4.core.di.suppliers.PrimaryObjectSupplier;
+import org.eclipse.e4.core.internal.contexts.ContextObjectSupplier;
+
+/**
+ * Checks that objects made from several threads at once are injected as
+ * they would be from a single thread.
+ */
+public class ConcurrentInjectionTest extends TestCase {
+
+	static final int THREADS = 8;
+
+	@Singleton
+	static public class SlowSingleton {
+		static int created;
+
+		@Inject
+		public SlowSingleton() {
+			synchronized (SlowSingleton.class) {
+				created++;
+			}
+			// give the other threads time to ask for the singleton
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				// continue
+			}
+		}
+	}
+
+	static public class StaticTarget {
+		static int injected;
+
+		@Inject
+		static public void injectStatic() {
+			synchronized (StaticTarget.class) {
+				injected++;
+			}
+		}
+	}
+
+	/**
+	 * Makes an object of the class from each thread with a new injector and
+	 * returns them.
+	 */
+	private Object[] makeConcurrently(final Class<?> clazz) {
+		IEclipseContext context = EclipseContextFactory.create(getName());
+		final IInjector injector = InjectorFactory.makeInjector();
+		final PrimaryObjectSupplier supplier = ContextObjectSupplier.getObjectSupplier(context, injector);
+		final Object[] results = new Object[THREADS];
+		final Throwable[] errors = new Throwable[THREADS];
+		Thread[] threads = new Thread[THREADS];
+		for (int i = 0; i < threads.length; i++) {
+			final int index = i;
+			threads[i] = new Thread("Injector-" + i) {
+				public void run() {
+					try {
+						results[index] = injector.make(clazz, supplier);
+					} catch (Throwable e) {
+						errors[index] = e;
+					}
+				}
+			};
+		}
+		for (int i = 0; i < threads.length; i++)
+			threads[i].start();
+		try {
+			for (int i = 0; i < threads.length; i++)
+				threads[i].join();
+		} catch (InterruptedException e) {
+			fail("Interrupted while waiting for injector threads");
+		}
+		for (int i = 0; i < errors.length; i++) {
+			if (errors[i] != null)
+				fail(errors[i].toString());
+		}
+		context.dispose();
+		return results;
+	}
+
+	public void testSingletonMadeOnce() {
+		SlowSingleton.created = 0;
+		Object[] results = makeConcurrently(SlowSingleton.class);
+		assertEquals(1, SlowSingleton.created);
+		for (int i = 0; i < results.length; i++)
+			assertSame(results[0], results[i]);
+	}
+
+	public void testStaticInjectedOnce() {
+		StaticTarget.injected = 0;
+		Object[] results = makeConcurrently(StaticTarget.class);
+		assertEquals(1, StaticTarget.injected);
+		for (int i = 0; i < results.length; i++)
+			assertNotNull(results[i]);
+	}
+}
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.e4.core.internal.tests.di;
+
+import junit.framework.TestCase;
+
+import org.eclipse.e4.core.contexts.ContextInjectionFactory;
+import org.eclipse.e4.core.contexts.EclipseContextFactory;
+import org.eclipse.e4.core.contexts.IEclipseContext;
+import org.eclipse.e4.core.di.InjectionException;
+
+/**
+ * Checks that the injector uses the generated injector of a class when there
+ * is one, and reflection for the members that it cannot access.
+ */
+public class GeneratedInjectorTest extends TestCase {
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		GeneratedTarget_Injector.accessed.clear();
+	}
+
+	public void testMake() {
+		IEclipseContext context = EclipseContextFactory.create();
+		context.set("a", "A");
+		context.set("b", "B");
+		GeneratedTarget target = ContextInjectionFactory.make(GeneratedTarget.class, context);
+
+		assertEquals("A", target.constructor);
+		assertEquals("A", target.field);
+		assertEquals("B", target.getPrivateField());
+		assertEquals("Anull", target.method);
+		assertEquals(1, target.postConstruct);
+		assertTrue(GeneratedTarget_Injector.accessed.contains("new GeneratedTarget(String)"));
+		assertTrue(GeneratedTarget_Injector.accessed.contains("set field"));
+		assertTrue(GeneratedTarget_Injector.accessed.contains("invoke setMethod"));
+		assertTrue(GeneratedTarget_Injector.accessed.contains("invoke postConstruct"));
+
+		context.dispose();
+		assertEquals(1, target.preDestroy);
+		assertTrue(GeneratedTarget_Injector.accessed.contains("invoke preDestroy"));
+	}
+
+	public void testTargetException() {
+		IEclipseContext context = EclipseContextFactory.create();
+		context.set("a", GeneratedTarget.FAIL);
+		try {
+			ContextInjectionFactory.make(GeneratedTarget.class, context);
+			fail();
+		} catch (InjectionException e) {
+			// reported as if the constructor had been called with reflection
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		assertTrue(GeneratedTarget_Injector.accessed.contains("new GeneratedTarget(String)"));
+		context.dispose();
+	}
+
+	public void testUpdate() {
+		IEclipseContext context = EclipseContextFactory.create();
+		context.set("a", "A");
+		GeneratedTarget target = new GeneratedTarget();
+		ContextInjectionFactory.inject(target, context);
+		assertEquals("A", target.field);
+		assertNull(target.getPrivateField());
+
+		context.set("a", "A2");
+		context.set("b", "B2");
+		assertEquals("A2", target.field);
+		assertEquals("B2", target.getPrivateField());
+		assertEquals("A2null", target.method);
+
+		ContextInjectionFactory.uninject(target, context);
+		assertEquals(1, target.preDestroy);
+		assertTrue(GeneratedTarget_Injector.accessed.contains("invoke preDestroy"));
+		context.dispose();
+	}
+
+	public void testOptionalQualifier() {
+		IEclipseContext context = EclipseContextFactory.create();
+		context.set("a", "A");
+		context.set("missing", "M");
+		GeneratedTarget target = ContextInjectionFactory.make(GeneratedTarget.class, context);
+		assertEquals("AM", target.method);
+
+		// the optional parameter is described by the generated injector
+		context.remove("missing");
+		assertEquals("Anull", target.method);
+		context.dispose();
+	}
+}
@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.e4.core.internal.tests.di;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.eclipse.e4.core.di.annotations.Optional;
+
+/**
+ * A class injected through the hand-written {@link GeneratedTarget_Injector}.
+ */
+public class GeneratedTarget {
+
+	/**
+	 * The value that makes the injected constructor fail.
+	 */
+	static final String FAIL = "fail";
+
+	@Inject @Named("a")
+	public String field;
+
+	@Inject @Optional @Named("b")
+	private String privateField;
+
+	public String method;
+	public String constructor;
+	public int postConstruct;
+	public int preDestroy;
+
+	public GeneratedTarget() {
+		// used when the injector cannot call the other constructor
+	}
+
+	@Inject
+	public GeneratedTarget(@Named("a") String a) {
+		if (FAIL.equals(a))
+			throw new IllegalStateException(a);
+		constructor = a;
+	}
+
+	@Inject
+	void setMethod(@Named("a") String a, @Optional @Named("missing") String missing) {
+		method = a + missing;
+	}
+
+	@PostConstruct
+	void postConstruct() {
+		postConstruct++;
+	}
+
+	@PreDestroy
+	void preDestroy() {
+		preDestroy++;
+	}
+
+	public String getPrivateField() {
+		return privateField;
+	}
+}
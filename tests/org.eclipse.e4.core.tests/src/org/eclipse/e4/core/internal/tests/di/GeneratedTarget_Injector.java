@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.e4.core.internal.tests.di;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.e4.core.di.GeneratedInjector;
+
+/**
+ * The injector that the annotation processor would generate for
+ * {@link GeneratedTarget}, recording the members it accesses.
+ */
+public final class GeneratedTarget_Injector extends GeneratedInjector {
+
+	static public List<String> accessed = new ArrayList<String>();
+
+	public String[] getFields() {
+		return new String[] {"field", "privateField"};
+	}
+
+	public int[] getFieldFlags() {
+		return new int[] {0, OPTIONAL};
+	}
+
+	public String[] getFieldQualifiers() {
+		return new String[] {"a", "b"};
+	}
+
+	public String[] getMethods() {
+		return new String[] {"setMethod", "postConstruct", "preDestroy"};
+	}
+
+	public Class<?>[][] getMethodParameters() {
+		return new Class<?>[][] { {String.class, String.class}, {}, {}};
+	}
+
+	public int[] getMethodFlags() {
+		return new int[] {INJECT, POST_CONSTRUCT, PRE_DESTROY};
+	}
+
+	public int[][] getMethodParameterFlags() {
+		return new int[][] { {0, OPTIONAL}, {}, {}};
+	}
+
+	public String[][] getMethodParameterQualifiers() {
+		return new String[][] { {"a", "missing"}, {}, {}};
+	}
+
+	public Class<?>[][] getConstructors() {
+		return new Class<?>[][] { {}, {String.class}};
+	}
+
+	public int[][] getConstructorParameterFlags() {
+		return new int[][] { {}, {0}};
+	}
+
+	public String[][] getConstructorParameterQualifiers() {
+		return new String[][] { {}, {"a"}};
+	}
+
+	public boolean set(Object object, int field, Object value) {
+		switch (field) {
+			case 0 :
+				accessed.add("set field");
+				((GeneratedTarget) object).field = (String) value;
+				return true;
+		}
+		return false; // private fields are set with reflection
+	}
+
+	public Object invoke(Object object, int method, Object[] args) throws InvocationTargetException {
+		switch (method) {
+			case 0 : {
+				GeneratedTarget target = (GeneratedTarget) object;
+				String arg0 = (String) args[0];
+				String arg1 = (String) args[1];
+				accessed.add("invoke setMethod");
+				try {
+					target.setMethod(arg0, arg1);
+				} catch (Exception e) {
+					throw new InvocationTargetException(e);
+				}
+				return null;
+			}
+			case 1 : {
+				GeneratedTarget target = (GeneratedTarget) object;
+				accessed.add("invoke postConstruct");
+				try {
+					target.postConstruct();
+				} catch (Exception e) {
+					throw new InvocationTargetException(e);
+				}
+				return null;
+			}
+			case 2 : {
+				GeneratedTarget target = (GeneratedTarget) object;
+				accessed.add("invoke preDestroy");
+				try {
+					target.preDestroy();
+				} catch (Exception e) {
+					throw new InvocationTargetException(e);
+				}
+				return null;
+			}
+		}
+		return INDIRECT;
+	}
+
+	public Object newInstance(int constructor, Object[] args) throws InvocationTargetException {
+		switch (constructor) {
+			case 1 : {
+				String arg0 = (String) args[0];
+				accessed.add("new GeneratedTarget(String)");
+				try {
+					return new GeneratedTarget(arg0);
+				} catch (Exception e) {
+					throw new InvocationTargetException(e);
+				}
+			}
+		}
+		return INDIRECT;
+	}
+}
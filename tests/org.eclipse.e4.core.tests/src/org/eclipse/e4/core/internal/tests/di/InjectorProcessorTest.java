@@ -0,0 +1,350 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.e4.core.internal.tests.di;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Qualifier;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import junit.framework.TestCase;
+
+import org.eclipse.e4.core.di.GeneratedInjector;
+import org.eclipse.e4.core.di.annotations.GroupUpdates;
+import org.eclipse.e4.core.di.annotations.Optional;
+import org.eclipse.e4.core.di.internal.processor.InjectorProcessor;
+import org.eclipse.e4.core.internal.tests.CoreTestsActivator;
+
+/**
+ * Runs the annotation processor on {@link GeneratedTarget} and checks that the
+ * injector it generates describes the same members as the hand-written
+ * {@link GeneratedTarget_Injector} that the other tests rely on.
+ */
+public class InjectorProcessorTest extends TestCase {
+
+	static final String PACKAGE = GeneratedTarget.class.getPackage().getName();
+
+	/**
+	 * A source file held in memory.
+	 */
+	static class Source extends SimpleJavaFileObject {
+
+		final private String content;
+
+		Source(String className, String content) {
+			super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+			this.content = content;
+		}
+
+		public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+			return content;
+		}
+	}
+
+	/**
+	 * The class file of a class loaded by the framework, read from its class loader.
+	 */
+	static class ClassFile extends SimpleJavaFileObject {
+
+		final Class<?> clazz;
+
+		ClassFile(Class<?> clazz) {
+			super(URI.create("bundle:///" + clazz.getName().replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+			this.clazz = clazz;
+		}
+
+		public InputStream openInputStream() throws IOException {
+			return clazz.getClassLoader().getResourceAsStream(clazz.getName().replace('.', '/') + Kind.CLASS.extension);
+		}
+	}
+
+	/**
+	 * A file written by the compiler, held in memory.
+	 */
+	static class Output extends SimpleJavaFileObject {
+
+		final ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+		Output(String className, Kind kind) {
+			super(URI.create("string:///" + className.replace('.', '/') + kind.extension), kind);
+		}
+
+		public OutputStream openOutputStream() {
+			return content;
+		}
+
+		public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+			return new String(content.toByteArray());
+		}
+	}
+
+	/**
+	 * Gives the compiler the classes the sources refer to, as the bundles are not
+	 * on a class path of files, and keeps the files it writes.
+	 */
+	static class FileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+		final Map<String, List<JavaFileObject>> classPath = new HashMap<String, List<JavaFileObject>>();
+
+		final Map<String, Output> sources = new HashMap<String, Output>();
+
+		final Map<String, Output> classes = new HashMap<String, Output>();
+
+		FileManager(StandardJavaFileManager fileManager, Class<?>[] classes) {
+			super(fileManager);
+			for (int i = 0; i < classes.length; i++) {
+				if (classes[i].getClassLoader() == null)
+					continue; // on the platform class path
+				String packageName = classes[i].getPackage().getName();
+				List<JavaFileObject> files = classPath.get(packageName);
+				if (files == null) {
+					files = new ArrayList<JavaFileObject>();
+					classPath.put(packageName, files);
+				}
+				files.add(new ClassFile(classes[i]));
+			}
+		}
+
+		public Iterable<JavaFileObject> list(Location location, String packageName, Set<Kind> kinds, boolean recurse) throws IOException {
+			if (location != StandardLocation.CLASS_PATH)
+				return super.list(location, packageName, kinds, recurse);
+			List<JavaFileObject> files = classPath.get(packageName);
+			if (files == null || !kinds.contains(Kind.CLASS))
+				return Collections.emptyList();
+			return files;
+		}
+
+		public String inferBinaryName(Location location, JavaFileObject file) {
+			if (file instanceof ClassFile)
+				return ((ClassFile) file).clazz.getName();
+			return super.inferBinaryName(location, file);
+		}
+
+		public JavaFileObject getJavaFileForOutput(Location location, String className, Kind kind, FileObject sibling) {
+			Output output = new Output(className, kind);
+			if (kind == Kind.SOURCE)
+				sources.put(className, output);
+			else
+				classes.put(className, output);
+			return output;
+		}
+	}
+
+	/**
+	 * Defines the compiled classes, and leaves the other classes to the class
+	 * loader of the tests.
+	 */
+	static class CompiledClassLoader extends ClassLoader {
+
+		final private Map<String, Output> classes;
+
+		CompiledClassLoader(Map<String, Output> classes) {
+			super(InjectorProcessorTest.class.getClassLoader());
+			this.classes = classes;
+		}
+
+		protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			Output output = classes.get(name);
+			if (output == null)
+				return super.loadClass(name, resolve);
+			Class<?> result = findLoadedClass(name);
+			if (result == null) {
+				byte[] bytes = output.content.toByteArray();
+				result = defineClass(name, bytes, 0, bytes.length);
+			}
+			if (resolve)
+				resolveClass(result);
+			return result;
+		}
+	}
+
+	/**
+	 * A generic class and a nested class, whose generated injectors use raw
+	 * types and casts that may be redundant.
+	 */
+	static final String GENERIC_SOURCE = "package " + PACKAGE + ";\n" //
+			+ "import java.util.List;\n" //
+			+ "import java.util.Map;\n" //
+			+ "import javax.inject.Inject;\n" //
+			+ "import javax.inject.Named;\n" //
+			+ "public class GenericTarget<T> {\n" //
+			+ "	@Inject @Named(\"list\") public List<T> list;\n" //
+			+ "	@Inject public GenericTarget(@Named(\"map\") Map<String, T> map) {}\n" //
+			+ "	@Inject public void set(@Named(\"value\") T value, Object object, int count) {}\n" //
+			+ "	public static class Nested<E extends Number> {\n" //
+			+ "		@Inject public E number;\n" //
+			+ "		@Inject public Nested(Object object) {}\n" //
+			+ "	}\n" //
+			+ "}\n";
+
+	private FileManager fileManager;
+
+	private ClassLoader loader;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		String className = GeneratedTarget.class.getName();
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+		fileManager = compile(new Source(className, readSource(className)), Collections.<String> emptyList(), diagnostics);
+		loader = new CompiledClassLoader(fileManager.classes);
+	}
+
+	/**
+	 * Compiles the given source with the processor, and fails on errors.
+	 */
+	private FileManager compile(JavaFileObject source, List<String> options, DiagnosticCollector<JavaFileObject> diagnostics) {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		assertNotNull("The tests must run on a JDK", compiler);
+		Class<?>[] classPath = new Class<?>[] {Inject.class, Named.class, Qualifier.class, PostConstruct.class, PreDestroy.class, Optional.class, GroupUpdates.class, GeneratedInjector.class};
+		FileManager result = new FileManager(compiler.getStandardFileManager(null, null, null), classPath);
+		JavaCompiler.CompilationTask task = compiler.getTask(null, result, diagnostics, options, null, Collections.singletonList(source));
+		task.setProcessors(Collections.singletonList(new InjectorProcessor()));
+		boolean success = task.call().booleanValue();
+		for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+			if (diagnostic.getKind() == Diagnostic.Kind.ERROR)
+				fail(diagnostic.toString());
+		}
+		assertTrue(success);
+		return result;
+	}
+
+	protected void tearDown() throws Exception {
+		fileManager.close();
+		fileManager = null;
+		loader = null;
+		super.tearDown();
+	}
+
+	/**
+	 * Reads the source of the given class, which the bundle includes for this test.
+	 */
+	private String readSource(String className) throws IOException {
+		URL url = CoreTestsActivator.getDefault().getBundleContext().getBundle().getEntry("src/" + className.replace('.', '/') + Kind.SOURCE.extension);
+		assertNotNull("Source of " + className, url);
+		Reader reader = new InputStreamReader(url.openStream(), "UTF-8");
+		try {
+			StringBuffer result = new StringBuffer();
+			char[] buffer = new char[4096];
+			for (int read = reader.read(buffer); read != -1; read = reader.read(buffer))
+				result.append(buffer, 0, read);
+			return result.toString();
+		} finally {
+			reader.close();
+		}
+	}
+
+	public void testGeneratedFiles() {
+		assertTrue(fileManager.sources.containsKey(GeneratedTarget.class.getName() + GeneratedInjector.SUFFIX));
+		assertTrue(fileManager.sources.containsKey(PACKAGE + '.' + GeneratedInjector.PACKAGE_MARKER));
+		assertEquals(2, fileManager.sources.size());
+	}
+
+	public void testMatchesFixture() throws Exception {
+		GeneratedInjector generated = (GeneratedInjector) loader.loadClass(GeneratedTarget.class.getName() + GeneratedInjector.SUFFIX).getDeclaredConstructor().newInstance();
+		GeneratedInjector fixture = new GeneratedTarget_Injector();
+
+		assertEquals(Arrays.asList(fixture.getFields()), Arrays.asList(generated.getFields()));
+		assertTrue(Arrays.equals(fixture.getFieldFlags(), generated.getFieldFlags()));
+		assertEquals(Arrays.asList(fixture.getFieldQualifiers()), Arrays.asList(generated.getFieldQualifiers()));
+
+		assertEquals(Arrays.asList(fixture.getMethods()), Arrays.asList(generated.getMethods()));
+		assertTrue(Arrays.deepEquals(fixture.getMethodParameters(), generated.getMethodParameters()));
+		assertTrue(Arrays.equals(fixture.getMethodFlags(), generated.getMethodFlags()));
+		assertTrue(Arrays.deepEquals(fixture.getMethodParameterFlags(), generated.getMethodParameterFlags()));
+		assertTrue(Arrays.deepEquals(fixture.getMethodParameterQualifiers(), generated.getMethodParameterQualifiers()));
+
+		assertTrue(Arrays.deepEquals(fixture.getConstructors(), generated.getConstructors()));
+		assertTrue(Arrays.deepEquals(fixture.getConstructorParameterFlags(), generated.getConstructorParameterFlags()));
+		assertTrue(Arrays.deepEquals(fixture.getConstructorParameterQualifiers(), generated.getConstructorParameterQualifiers()));
+	}
+
+	public void testNoWarnings() throws IOException {
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+		FileManager generics = compile(new Source(PACKAGE + ".GenericTarget", GENERIC_SOURCE), Collections.singletonList("-Xlint:all"), diagnostics);
+		try {
+			assertTrue(generics.sources.containsKey(PACKAGE + ".GenericTarget" + GeneratedInjector.SUFFIX));
+			assertTrue(generics.sources.containsKey(PACKAGE + ".GenericTarget$Nested" + GeneratedInjector.SUFFIX));
+			for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+				JavaFileObject file = diagnostic.getSource();
+				if (file != null && file.getName().endsWith(GeneratedInjector.SUFFIX + Kind.SOURCE.extension))
+					fail(diagnostic.toString());
+			}
+		} finally {
+			generics.close();
+		}
+	}
+
+	public void testAccess() throws Throwable {
+		Class<?> targetClass = loader.loadClass(GeneratedTarget.class.getName());
+		GeneratedInjector generated = (GeneratedInjector) loader.loadClass(GeneratedTarget.class.getName() + GeneratedInjector.SUFFIX).getDeclaredConstructor().newInstance();
+
+		Object target = generated.newInstance(1, new Object[] {"A"});
+		assertSame(targetClass, target.getClass());
+		assertEquals("A", targetClass.getField("constructor").get(target));
+
+		assertTrue(generated.set(target, 0, "F"));
+		assertEquals("F", targetClass.getField("field").get(target));
+		assertFalse(generated.set(target, 1, "P")); // private fields are set with reflection
+
+		assertNull(generated.invoke(target, 0, new Object[] {"a", "b"}));
+		assertEquals("ab", targetClass.getField("method").get(target));
+		generated.invoke(target, 1, new Object[0]);
+		assertEquals(Integer.valueOf(1), targetClass.getField("postConstruct").get(target));
+		generated.invoke(target, 2, new Object[0]);
+		assertEquals(Integer.valueOf(1), targetClass.getField("preDestroy").get(target));
+	}
+
+	public void testExceptions() throws Exception {
+		GeneratedInjector generated = (GeneratedInjector) loader.loadClass(GeneratedTarget.class.getName() + GeneratedInjector.SUFFIX).getDeclaredConstructor().newInstance();
+		try {
+			generated.newInstance(1, new Object[] {GeneratedTarget.FAIL});
+			fail();
+		} catch (InvocationTargetException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		Object target = generated.newInstance(1, new Object[] {"A"});
+		try {
+			generated.invoke(target, 0, new Object[] {Integer.valueOf(1), "b"});
+			fail();
+		} catch (ClassCastException e) {
+			// not thrown by the method, so not wrapped
+		}
+	}
+}
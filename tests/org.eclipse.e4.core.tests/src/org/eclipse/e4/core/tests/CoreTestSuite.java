@@ -15,9 +15,12 @@ import junit.framework.Test;
 import junit.framework.TestSuite;
 
 import org.eclipse.e4.core.internal.tests.contexts.ActivationTest;
+import org.eclipse.e4.core.internal.tests.contexts.CompactMapTest;
 import org.eclipse.e4.core.internal.tests.contexts.ContextDynamicTest;
+import org.eclipse.e4.core.internal.tests.contexts.ContextStatisticsTest;
 import org.eclipse.e4.core.internal.tests.contexts.DependenciesLeakTest;
 import org.eclipse.e4.core.internal.tests.contexts.EclipseContextTest;
+import org.eclipse.e4.core.internal.tests.contexts.LookupCacheTest;
 import org.eclipse.e4.core.internal.tests.contexts.ReparentingTest;
 import org.eclipse.e4.core.internal.tests.contexts.RunAndTrackTest;
 import org.eclipse.e4.core.internal.tests.contexts.inject.ActivationInjectionTest;
@@ -42,10 +45,14 @@ import org.eclipse.e4.core.internal.tests.contexts.inject.TestConstructorInjecti
 import org.eclipse.e4.core.internal.tests.di.AtInjectTest;
 import org.eclipse.e4.core.internal.tests.di.AutoConstructTest;
 import org.eclipse.e4.core.internal.tests.di.DisposeClassLinkTest;
+import org.eclipse.e4.core.internal.tests.di.ClassUnloadingTest;
+import org.eclipse.e4.core.internal.tests.di.ConcurrentInjectionTest;
+import org.eclipse.e4.core.internal.tests.di.GeneratedInjectorTest;
 import org.eclipse.e4.core.internal.tests.di.InjectArraysTest;
 import org.eclipse.e4.core.internal.tests.di.InjectBaseTypeTest;
 import org.eclipse.e4.core.internal.tests.di.InjectionOrderTest;
 import org.eclipse.e4.core.internal.tests.di.InjectionResultLeakTest;
+import org.eclipse.e4.core.internal.tests.di.InjectorProcessorTest;
 import org.eclipse.e4.core.internal.tests.di.InvokeTest;
 import org.eclipse.e4.core.internal.tests.di.RecursiveObjectCreationTest;
 import org.eclipse.e4.core.internal.tests.di.extensions.InjectionEventTest;
@@ -72,6 +79,9 @@ public class CoreTestSuite extends TestSuite {
 
 		// Contexts
 		addTestSuite(EclipseContextTest.class);
+		addTestSuite(LookupCacheTest.class);
+		addTestSuite(CompactMapTest.class);
+		addTestSuite(ContextStatisticsTest.class);
 		addTestSuite(ContextInjectionTest.class);
 		addTestSuite(ContextInjectionDisposeTest.class);
 		addTestSuite(ContextInjectionFactoryTest.class);
@@ -102,5 +112,9 @@ public class CoreTestSuite extends TestSuite {
 		addTestSuite(ActivationInjectionTest.class);
 		addTestSuite(GenericsInjectionTest.class);
 		addTestSuite(RecursiveObjectCreationTest.class);
+		addTestSuite(GeneratedInjectorTest.class);
+		addTestSuite(InjectorProcessorTest.class);
+		addTestSuite(ConcurrentInjectionTest.class);
+		addTestSuite(ClassUnloadingTest.class);
 	}
 }